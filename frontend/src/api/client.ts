@@ -53,16 +53,81 @@ export const authApi = {
 export interface QueryRequest {
   connectionId: number;
   question: string;
+  timeoutSeconds?: number;
+  queryId?: string;
 }
 
 export interface QueryResponse {
   sql: string;
   result: Record<string, unknown>[];
   safetyCheck: string;
+  cursor: string | null;
+  queryId: string | null;
+  warning: string | null;
+}
+
+export interface QueryProgressHandlers {
+  onQueryId?: (queryId: string) => void;
+  onSqlDelta?: (delta: string) => void;
+  onSql?: (sql: string) => void;
+}
+
+// Server-sent events are read with fetch because EventSource cannot POST or send headers
+async function askEvents(data: QueryRequest, handlers: QueryProgressHandlers): Promise<QueryResponse> {
+  const token = localStorage.getItem('token');
+  const res = await fetch('/api/v1/query/ask/events', {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+      Accept: 'text/event-stream',
+      ...(token ? { Authorization: `Bearer ${token}` } : {}),
+    },
+    body: JSON.stringify(data),
+  });
+  if (!res.ok || !res.body) {
+    const body = await res.json().catch(() => ({}));
+    throw { response: { status: res.status, data: body } };
+  }
+
+  const reader = res.body.getReader();
+  const decoder = new TextDecoder();
+  let buffer = '';
+  for (;;) {
+    const { done, value } = await reader.read();
+    if (done) break;
+    buffer += decoder.decode(value, { stream: true });
+    let end;
+    while ((end = buffer.indexOf('\n\n')) >= 0) {
+      const block = buffer.slice(0, end);
+      buffer = buffer.slice(end + 2);
+      let event = 'message';
+      const lines: string[] = [];
+      for (const line of block.split('\n')) {
+        if (line.startsWith('event:')) event = line.slice(6).trim();
+        else if (line.startsWith('data:')) lines.push(line.slice(5));
+      }
+      const payload = lines.length ? JSON.parse(lines.join('\n')) : undefined;
+      if (event === 'query') handlers.onQueryId?.(payload.queryId);
+      else if (event === 'sql-delta') handlers.onSqlDelta?.(payload.delta);
+      else if (event === 'sql') handlers.onSql?.(payload.sql);
+      else if (event === 'result') return payload as QueryResponse;
+      else if (event === 'error') throw { response: { data: payload } };
+    }
+  }
+  throw new Error('Query stream ended without a result');
 }
 
 export const queryApi = {
   ask: (data: QueryRequest) => apiClient.post<QueryResponse>('/query/ask', data),
+  askEvents,
+  page: (cursor: string, size = 100) =>
+    apiClient.get<QueryResponse>('/query/page', { params: { cursor, size } }),
+  exportCsv: (queryId: string) =>
+    apiClient.get<Blob>(`/query/${encodeURIComponent(queryId)}/export`, {
+      params: { format: 'CSV', compression: 'NONE' },
+      responseType: 'blob',
+    }),
+  cancel: (queryId: string) => apiClient.delete(`/query/${encodeURIComponent(queryId)}`),
   getMyConnections: () => apiClient.get<ConnectionInfo[]>('/query/connections'),
 };
 
@@ -73,8 +138,13 @@ export interface ConnectionInfo {
   type: 'MYSQL' | 'POSTGRESQL' | 'H2';
   url: string;
   username: string;
-  encryptedPassword?: string;
-  schemaDdl?: string;
+  schemaVersion?: number | null;
+  tableCount?: number;
+}
+
+export interface TableInfo {
+  name: string;
+  columns: { name: string; type: string; nullable: boolean }[];
 }
 
 export interface ConnectionRequest {
@@ -91,6 +161,7 @@ export const connectionsApi = {
   create: (data: ConnectionRequest) => apiClient.post<ConnectionInfo>('/admin/connections', data),
   remove: (id: number) => apiClient.delete(`/admin/connections/${id}`),
   refreshSchema: (id: number) => apiClient.post<ConnectionInfo>(`/admin/connections/${id}/refresh-schema`),
+  tables: (id: number) => apiClient.get<TableInfo[]>(`/admin/connections/${id}/tables`),
 };
 
 // ---------- Admin Permissions API ----------
@@ -138,12 +138,12 @@ const ConnectionsTab: React.FC = () => {
     { title: 'Username', dataIndex: 'username', key: 'username', width: 120 },
     {
       title: 'Schema',
-      dataIndex: 'schemaDdl',
-      key: 'schemaDdl',
+      dataIndex: 'schemaVersion',
+      key: 'schemaVersion',
       width: 100,
-      render: (ddl: string | null) =>
-        ddl ? (
-          <Tooltip title={ddl.substring(0, 500)}>
+      render: (version: number | null, record: ConnectionInfo) =>
+        version ? (
+          <Tooltip title={`${record.tableCount ?? 0} tables, version ${version}`}>
             <Tag color="success">Available</Tag>
           </Tooltip>
         ) : (
@@ -33,6 +33,10 @@ const QueryPage: React.FC = () => {
   const [connectionsLoading, setConnectionsLoading] = useState(true);
   const [response, setResponse] = useState<QueryResponse | null>(null);
   const [error, setError] = useState<string | null>(null);
+  const [pendingSql, setPendingSql] = useState('');
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [exporting, setExporting] = useState(false);
+  const [runningQueryId, setRunningQueryId] = useState<string | null>(null);
 
   useEffect(() => {
     loadConnections();
@@ -62,12 +66,17 @@ const QueryPage: React.FC = () => {
     setLoading(true);
     setError(null);
     setResponse(null);
+    setPendingSql('');
 
     try {
-      const { data } = await queryApi.ask({
-        connectionId: selectedConnection,
-        question: question.trim(),
-      });
+      const data = await queryApi.askEvents(
+        { connectionId: selectedConnection, question: question.trim() },
+        {
+          onQueryId: setRunningQueryId,
+          onSqlDelta: (delta) => setPendingSql((sql) => sql + delta),
+          onSql: (sql) => setPendingSql(sql),
+        },
+      );
       setResponse(data);
     } catch (err: unknown) {
       const msg =
@@ -76,6 +85,53 @@ const QueryPage: React.FC = () => {
       setError(msg);
     } finally {
       setLoading(false);
+      setRunningQueryId(null);
+    }
+  };
+
+  // The pending askEvents call then fails with the cancellation message
+  const handleCancel = async () => {
+    if (!runningQueryId) return;
+    try {
+      await queryApi.cancel(runningQueryId);
+    } catch {
+      // The query finished in the meantime
+    }
+  };
+
+  const handleLoadMore = async () => {
+    if (!response?.cursor) return;
+
+    setLoadingMore(true);
+    try {
+      const { data } = await queryApi.page(response.cursor);
+      setResponse({ ...response, result: [...response.result, ...data.result], cursor: data.cursor });
+    } catch (err: unknown) {
+      const msg =
+        (err as { response?: { data?: { message?: string } } })?.response?.data?.message ||
+        'Could not load more rows.';
+      setError(msg);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  const handleExport = async () => {
+    if (!response?.queryId) return;
+
+    setExporting(true);
+    try {
+      const { data } = await queryApi.exportCsv(response.queryId);
+      const url = URL.createObjectURL(data);
+      const link = document.createElement('a');
+      link.href = url;
+      link.download = `query-${response.queryId}.csv`;
+      link.click();
+      URL.revokeObjectURL(url);
+    } catch {
+      setError('Could not export the result. Please ask the question again.');
+    } finally {
+      setExporting(false);
     }
   };
 
@@ -190,6 +246,27 @@ const QueryPage: React.FC = () => {
           <Paragraph style={{ marginTop: 16 }}>
             Generating SQL and executing query...
           </Paragraph>
+          {pendingSql && (
+            <pre
+              style={{
+                background: '#f6f8fa',
+                padding: 16,
+                borderRadius: 8,
+                overflow: 'auto',
+                margin: 0,
+                textAlign: 'left',
+                fontSize: 14,
+                fontFamily: "'SF Mono', 'Fira Code', monospace",
+              }}
+            >
+              {pendingSql}
+            </pre>
+          )}
+          {runningQueryId && (
+            <Button danger onClick={handleCancel} style={{ marginTop: 16 }}>
+              Cancel
+            </Button>
+          )}
         </Card>
       )}
 
@@ -222,6 +299,9 @@ const QueryPage: React.FC = () => {
             >
               {response.sql}
             </pre>
+            {response.warning && (
+              <Alert type="warning" showIcon message={response.warning} style={{ marginTop: 16 }} />
+            )}
           </Card>
 
           {/* Result Table */}
@@ -233,6 +313,20 @@ const QueryPage: React.FC = () => {
                 <Tag>{response.result?.length ?? 0} rows</Tag>
               </Space>
             }
+            extra={
+              <Space>
+                {response.queryId && (
+                  <Button onClick={handleExport} loading={exporting}>
+                    Export CSV
+                  </Button>
+                )}
+                {response.cursor && (
+                  <Button onClick={handleLoadMore} loading={loadingMore}>
+                    Load more rows
+                  </Button>
+                )}
+              </Space>
+            }
           >
             {response.result && response.result.length > 0 ? (
               <Table
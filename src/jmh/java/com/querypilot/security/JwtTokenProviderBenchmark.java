@@ -0,0 +1,60 @@
+package com.querypilot.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token handling done by JwtAuthenticationFilter on every API request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    // 0 measures a full signature check per request, a positive size the verified-token cache
+    @Param({"0", "10000"})
+    public long cacheSize;
+
+    private JwtTokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = new JwtTokenProvider(
+                "BenchmarkSecretKeyThatIsLongEnoughForHMACSHA256Algorithm!!Benchmark", 86400000L, cacheSize);
+        token = tokenProvider.generateToken(42L, "analyst", "ANALYST");
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return tokenProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public Optional<JwtPrincipal> authenticate() {
+        return tokenProvider.authenticate(token);
+    }
+
+    @Benchmark
+    public void claimGetters(Blackhole blackhole) {
+        blackhole.consume(tokenProvider.getUsernameFromToken(token));
+        blackhole.consume(tokenProvider.getUserIdFromToken(token));
+        blackhole.consume(tokenProvider.getRoleFromToken(token));
+    }
+}
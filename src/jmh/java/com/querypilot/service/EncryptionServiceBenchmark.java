@@ -0,0 +1,42 @@
+package com.querypilot.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EncryptionService.decrypt as used when a connection pool is created.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionServiceBenchmark {
+
+    private final EncryptionService encryptionService = new EncryptionService();
+    private String cipherText;
+
+    @Setup
+    public void setUp() {
+        ReflectionTestUtils.setField(encryptionService, "encryptionKey", "BenchmarkEncryptionKey32Chars!12");
+        encryptionService.init();
+        cipherText = encryptionService.encrypt("s3cr3t-database-password");
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionService.decrypt(cipherText);
+    }
+}
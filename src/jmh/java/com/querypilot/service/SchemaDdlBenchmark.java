@@ -0,0 +1,58 @@
+package com.querypilot.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schema DDL building in SchemaExtractorService over synthetic schemas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaDdlBenchmark {
+
+    private static final int COLUMNS_PER_TABLE = 15;
+    private static final String[] TYPES = {"INTEGER", "BIGINT", "VARCHAR", "DECIMAL", "DATE", "TIMESTAMP", "BOOLEAN"};
+
+    @Param({"50", "500", "5000"})
+    public int tables;
+
+    private final SchemaExtractorService extractor = new SchemaExtractorService(Runnable::run, 1, 50);
+    private List<TableMetadata> metadata;
+
+    @Setup
+    public void setUp() {
+        metadata = new ArrayList<>(tables);
+        for (int t = 0; t < tables; t++) {
+            List<TableMetadata.Column> columns = new ArrayList<>(COLUMNS_PER_TABLE);
+            for (int c = 0; c < COLUMNS_PER_TABLE; c++) {
+                columns.add(new TableMetadata.Column(c == 0 ? "id" : "column_" + c, TYPES[c % TYPES.length], c != 0));
+            }
+            List<TableMetadata.ForeignKey> foreignKeys = t == 0 ? List.of()
+                    : List.of(new TableMetadata.ForeignKey(List.of("column_1"), "table_" + (t - 1), List.of("id")));
+            List<TableMetadata.Index> indexes = List.of(new TableMetadata.Index("idx_" + t, false, List.of("column_2")));
+            metadata.add(new TableMetadata("table_" + t, columns, List.of("id"), foreignKeys, indexes, 1000L * t));
+        }
+    }
+
+    @Benchmark
+    public String buildDdl() {
+        return extractor.buildDdl(metadata);
+    }
+}
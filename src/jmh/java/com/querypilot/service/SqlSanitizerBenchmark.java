@@ -0,0 +1,76 @@
+package com.querypilot.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SqlSanitizer.sanitize over the kinds of SQL DeepSeek typically generates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlSanitizerBenchmark {
+
+    private static final Map<String, String> CORPUS = Map.of(
+            "simple", "SELECT id, name, email FROM users WHERE registration_date >= DATEADD('DAY', -7, CURRENT_DATE)",
+            "join", """
+                    SELECT u.name, p.title, SUM(oi.quantity * oi.unit_price) AS revenue
+                    FROM users u
+                    JOIN orders o ON o.user_id = u.id
+                    JOIN order_items oi ON oi.order_id = o.id
+                    JOIN products p ON p.id = oi.product_id
+                    LEFT JOIN categories c ON c.id = p.category_id
+                    WHERE o.order_date BETWEEN '2024-01-01' AND '2024-12-31' AND c.name <> 'Internal'
+                    GROUP BY u.name, p.title
+                    HAVING SUM(oi.quantity) > 10
+                    ORDER BY revenue DESC
+                    """,
+            "cte", """
+                    WITH monthly AS (
+                        SELECT user_id, DATE_TRUNC('month', order_date) AS month, SUM(amount) AS total
+                        FROM orders GROUP BY user_id, DATE_TRUNC('month', order_date)
+                    ), ranked AS (
+                        SELECT user_id, month, total FROM monthly WHERE total > (SELECT AVG(total) FROM monthly)
+                    )
+                    SELECT u.name, r.month, r.total FROM ranked r JOIN users u ON u.id = r.user_id ORDER BY r.month
+                    """,
+            "window", """
+                    SELECT user_id, order_date, amount,
+                           SUM(amount) OVER (PARTITION BY user_id ORDER BY order_date) AS running_total,
+                           ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY amount DESC) AS rank_in_user,
+                           LAG(amount) OVER (PARTITION BY user_id ORDER BY order_date) AS previous_amount
+                    FROM orders
+                    WHERE amount > 0
+                    """);
+
+    @Param({"simple", "join", "cte", "window"})
+    public String query;
+
+    private final SqlSanitizer sanitizer = new SqlSanitizer();
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        sql = CORPUS.get(query);
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return sanitizer.sanitize(sql);
+    }
+}
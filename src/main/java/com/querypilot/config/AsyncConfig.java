@@ -0,0 +1,21 @@
+package com.querypilot.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor for the /ask pipeline. Each question runs on its own virtual thread, so blocking
+ * on DeepSeek or JDBC parks a cheap continuation instead of holding a Tomcat worker.
+ * How many of them reach a target database at once is bounded by ConnectionLimiter.
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService queryExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("qp-query-", 0).factory());
+    }
+}
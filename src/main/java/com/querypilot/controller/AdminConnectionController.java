@@ -1,6 +1,11 @@
 package com.querypilot.controller;
 
 import com.querypilot.model.dto.ConnectionRequest;
+import com.querypilot.model.dto.ConnectionSummary;
+import com.querypilot.model.dto.CostLimitsRequest;
+import com.querypilot.model.dto.PoolSettingsRequest;
+import com.querypilot.model.dto.ResultCacheRequest;
+import com.querypilot.model.dto.TableSummary;
 import com.querypilot.model.entity.DataSourceConfig;
 import com.querypilot.service.ConnectionManagerService;
 import jakarta.validation.Valid;
@@ -26,8 +31,8 @@ public class AdminConnectionController {
     }
 
     @GetMapping
-    public ResponseEntity<List<DataSourceConfig>> listConnections() {
-        return ResponseEntity.ok(connectionManagerService.listConnections());
+    public ResponseEntity<List<ConnectionSummary>> listConnections() {
+        return ResponseEntity.ok(connectionManagerService.summarize(connectionManagerService.listConnections()));
     }
 
     @GetMapping("/{id}")
@@ -35,6 +40,11 @@ public class AdminConnectionController {
         return ResponseEntity.ok(connectionManagerService.getConnection(id));
     }
 
+    @GetMapping("/{id}/tables")
+    public ResponseEntity<List<TableSummary>> listTables(@PathVariable Long id) {
+        return ResponseEntity.ok(connectionManagerService.listTables(id));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteConnection(@PathVariable Long id) {
         connectionManagerService.deleteConnection(id);
@@ -42,7 +52,32 @@ public class AdminConnectionController {
     }
 
     @PostMapping("/{id}/refresh-schema")
-    public ResponseEntity<DataSourceConfig> refreshSchema(@PathVariable Long id) {
-        return ResponseEntity.ok(connectionManagerService.refreshSchema(id));
+    public ResponseEntity<DataSourceConfig> refreshSchema(@PathVariable Long id,
+                                                          @RequestParam(defaultValue = "false") boolean full) {
+        return ResponseEntity.ok(connectionManagerService.refreshSchema(id, full));
+    }
+
+    @PutMapping("/{id}/result-cache")
+    public ResponseEntity<DataSourceConfig> updateResultCache(@PathVariable Long id,
+                                                              @Valid @RequestBody ResultCacheRequest request) {
+        return ResponseEntity.ok(connectionManagerService.updateResultCacheTtl(id, request.getTtlSeconds()));
+    }
+
+    @PutMapping("/{id}/pool")
+    public ResponseEntity<DataSourceConfig> updatePoolSettings(@PathVariable Long id,
+                                                               @Valid @RequestBody PoolSettingsRequest request) {
+        return ResponseEntity.ok(connectionManagerService.updatePoolSettings(id, request));
+    }
+
+    @PutMapping("/{id}/cost-limits")
+    public ResponseEntity<DataSourceConfig> updateCostLimits(@PathVariable Long id,
+                                                             @Valid @RequestBody CostLimitsRequest request) {
+        return ResponseEntity.ok(connectionManagerService.updateCostLimits(id, request));
+    }
+
+    @DeleteMapping("/{id}/result-cache")
+    public ResponseEntity<Void> flushResultCache(@PathVariable Long id) {
+        connectionManagerService.flushResultCache(id);
+        return ResponseEntity.noContent().build();
     }
 }
@@ -1,39 +1,94 @@
 package com.querypilot.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querypilot.model.dto.ColumnarQueryResponse;
+import com.querypilot.model.dto.ConnectionSummary;
+import com.querypilot.model.dto.ErrorResponse;
 import com.querypilot.model.dto.QueryRequest;
 import com.querypilot.model.dto.QueryResponse;
 import com.querypilot.model.entity.DataSourceConfig;
-import com.querypilot.model.entity.Permission;
-import com.querypilot.model.entity.User;
-import com.querypilot.model.enums.UserRole;
+import com.querypilot.model.enums.ExportCompression;
+import com.querypilot.model.enums.ExportFormat;
+import com.querypilot.exception.QueryCancelledException;
 import com.querypilot.repository.DataSourceConfigRepository;
-import com.querypilot.repository.PermissionRepository;
-import com.querypilot.repository.UserRepository;
 import com.querypilot.service.AiQueryService;
+import com.querypilot.service.ColumnarResultEncoder;
+import com.querypilot.service.ConnectionManagerService;
+import com.querypilot.service.NdjsonRowWriter;
+import com.querypilot.service.PermissionService;
+import com.querypilot.service.QueryExporter;
+import com.querypilot.service.QueryProgressListener;
+import com.querypilot.service.ResultPager;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
 
 @RestController
 @RequestMapping("/api/v1/query")
 public class QueryController {
 
+    private static final Logger log = LoggerFactory.getLogger(QueryController.class);
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final MediaType COLUMNAR_JSON = MediaType.parseMediaType("application/vnd.querypilot.columnar+json");
+    private static final MediaType COLUMNAR_BINARY = MediaType.parseMediaType(ColumnarResultEncoder.MEDIA_TYPE);
+
     private final AiQueryService aiQueryService;
-    private final PermissionRepository permissionRepository;
+    private final PermissionService permissionService;
     private final DataSourceConfigRepository dataSourceConfigRepository;
-    private final UserRepository userRepository;
+    private final ConnectionManagerService connectionManagerService;
+    private final ResultPager resultPager;
+    private final QueryExporter queryExporter;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    private final Duration heartbeatInterval;
 
     public QueryController(AiQueryService aiQueryService,
-                           PermissionRepository permissionRepository,
+                           PermissionService permissionService,
                            DataSourceConfigRepository dataSourceConfigRepository,
-                           UserRepository userRepository) {
+                           ConnectionManagerService connectionManagerService,
+                           ResultPager resultPager,
+                           QueryExporter queryExporter,
+                           ObjectMapper objectMapper,
+                           TaskScheduler taskScheduler,
+                           @Value("${app.query.execution.heartbeat-ms:5000}") long heartbeatMs) {
         this.aiQueryService = aiQueryService;
-        this.permissionRepository = permissionRepository;
+        this.permissionService = permissionService;
         this.dataSourceConfigRepository = dataSourceConfigRepository;
-        this.userRepository = userRepository;
+        this.connectionManagerService = connectionManagerService;
+        this.resultPager = resultPager;
+        this.queryExporter = queryExporter;
+        this.objectMapper = objectMapper;
+        this.taskScheduler = taskScheduler;
+        this.heartbeatInterval = Duration.ofMillis(heartbeatMs);
     }
 
     /**
@@ -41,37 +96,262 @@ public class QueryController {
      * ADMINs see all connections; ANALYSTs see only their permitted connections.
      */
     @GetMapping("/connections")
-    public ResponseEntity<List<DataSourceConfig>> getMyConnections(Authentication authentication) {
+    public ResponseEntity<List<ConnectionSummary>> getMyConnections(Authentication authentication) {
         Long userId = (Long) authentication.getCredentials();
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<DataSourceConfig> connections;
-        if (user.getRole() == UserRole.ADMIN) {
-            connections = dataSourceConfigRepository.findAll();
-        } else {
-            List<Long> connectionIds = permissionRepository.findByUserId(userId).stream()
-                    .map(Permission::getConnectionId)
-                    .toList();
-            connections = dataSourceConfigRepository.findAllById(connectionIds);
-        }
-        return ResponseEntity.ok(connections);
+        PermissionService.UserAccess access = permissionService.getAccess(userId);
+
+        List<DataSourceConfig> connections = access.isAdmin()
+                ? dataSourceConfigRepository.findAll()
+                : dataSourceConfigRepository.findAllById(access.getConnectionIds());
+        return ResponseEntity.ok(connectionManagerService.summarize(connections));
     }
 
     /**
      * Main endpoint: Natural language to SQL query execution.
      *
      * The authentication token's credentials hold the userId (set in JwtAuthenticationFilter).
+     * The pipeline runs asynchronously; the servlet thread is returned to Tomcat until it completes.
+     * The query is cancelled when the container reports the connection broken or the async
+     * request times out; a client that wants to cancel earlier sends its own query ID.
+     *
+     * The result is written as row objects unless the Accept header asks for one of the
+     * columnar formats (see {@link #render}).
      */
     @PostMapping("/ask")
-    public ResponseEntity<QueryResponse> askQuery(
+    public DeferredResult<ResponseEntity<?>> askQuery(
             @Valid @RequestBody QueryRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
             Authentication authentication) {
 
         // userId is stored as credentials in the JwtAuthenticationFilter
         Long userId = (Long) authentication.getCredentials();
+        String queryId = assignQueryId(request);
+
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.onTimeout(() -> aiQueryService.cancelQuery(userId, queryId));
+        result.onError(e -> aiQueryService.cancelQuery(userId, queryId));
+        aiQueryService.processQueryAsync(userId, request).whenComplete((response, failure) -> {
+            if (failure == null) {
+                result.setResult(render(response, accept));
+            } else {
+                result.setErrorResult(unwrap(failure));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cancels one of the caller's running queries: a statement that is executing is cancelled
+     * on the database, and a query whose SQL is still being generated fails before it runs.
+     * The cancelled request answers 409.
+     */
+    @DeleteMapping("/{queryId}")
+    public ResponseEntity<?> cancelQuery(@PathVariable String queryId, Authentication authentication) {
+        Long userId = (Long) authentication.getCredentials();
+        if (!aiQueryService.cancelQuery(userId, queryId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(true,
+                    "No running query with ID " + queryId, LocalDateTime.now()));
+        }
+        return ResponseEntity.accepted().body(Map.of("queryId", queryId, "cancelled", true));
+    }
+
+    /**
+     * Next page of an /ask result. The cursor comes from the previous response; the response
+     * carries the cursor of the page after this one, or null at the end of the result.
+     * Pages come in the same formats as /ask.
+     */
+    @GetMapping("/page")
+    public CompletableFuture<ResponseEntity<?>> nextPage(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "100") int size,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getCredentials();
+        return resultPager.nextPageAsync(userId, cursor, size)
+                .thenApply(response -> render(response, accept));
+    }
+
+    /**
+     * Downloads the full result of an earlier /ask query as a file, streamed from the database
+     * as it is read. The generated SQL runs again with the export row cap instead of LIMIT 100.
+     * CSV is compressed as a whole (.csv.gz, .csv.zst), Parquet page by page.
+     */
+    @GetMapping("/{queryId}/export")
+    public ResponseEntity<StreamingResponseBody> exportQuery(
+            @PathVariable String queryId,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(defaultValue = "GZIP") ExportCompression compression,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getCredentials();
+        QueryExporter.Export export = queryExporter.prepare(userId, queryId);
 
-        QueryResponse response = aiQueryService.processQuery(userId, request);
+        StreamingResponseBody body = outputStream -> {
+            long rows = queryExporter.write(export, format, compression, outputStream);
+            log.info("Exported {} rows of query {} as {}", rows, queryId, format);
+        };
+
+        String fileName = "query-" + queryId + (format == ExportFormat.PARQUET ? ".parquet" : ".csv");
+        MediaType contentType = MediaType.parseMediaType("text/csv;charset=UTF-8");
+        if (format == ExportFormat.PARQUET) {
+            contentType = MediaType.parseMediaType("application/vnd.apache.parquet");
+        } else if (compression == ExportCompression.GZIP) {
+            fileName += ".gz";
+            contentType = MediaType.parseMediaType("application/gzip");
+        } else if (compression == ExportCompression.ZSTD) {
+            fileName += ".zst";
+            contentType = MediaType.parseMediaType("application/zstd");
+        }
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Variant of /ask that reports progress as server-sent events: "sql-delta" events carry
+     * the SQL as the model writes it, "sql" carries the sanitized SQL once it is about to run,
+     * and the stream ends with a "result" event holding the regular /ask response or an
+     * "error" event. A "query" event carrying the query ID comes first.
+     *
+     * Comment lines are sent as heartbeats while the pipeline runs; when one of them (or any
+     * event) cannot be written because the client went away, the query is cancelled.
+     */
+    @PostMapping(value = "/ask/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter askQueryEvents(
+            @Valid @RequestBody QueryRequest request,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getCredentials();
+        String queryId = assignQueryId(request);
+        // The pipeline's own timeouts bound the request
+        SseEmitter emitter = new SseEmitter(0L);
+        Runnable cancel = () -> aiQueryService.cancelQuery(userId, queryId);
+        emitter.onError(e -> cancel.run());
+
+        QueryProgressListener listener = new QueryProgressListener() {
+            @Override
+            public void onSqlDelta(String delta) {
+                send(emitter, "sql-delta", Map.of("delta", delta), cancel);
+            }
+
+            @Override
+            public void onSql(String sanitizedSql) {
+                send(emitter, "sql", Map.of("sql", sanitizedSql), cancel);
+            }
+        };
+
+        send(emitter, "query", Map.of("queryId", queryId), cancel);
+        ScheduledFuture<?> heartbeat = taskScheduler.scheduleAtFixedRate(() -> {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Client of query {} went away: {}", queryId, e.getMessage());
+                cancel.run();
+            }
+        }, Instant.now().plus(heartbeatInterval), heartbeatInterval);
+
+        aiQueryService.processQueryAsync(userId, request, listener).whenComplete((response, failure) -> {
+            heartbeat.cancel(false);
+            if (failure == null) {
+                send(emitter, "result", response, cancel);
+            } else {
+                Throwable cause = unwrap(failure);
+                log.warn("Query failed: {}", cause.getMessage());
+                send(emitter, "error", new ErrorResponse(true, cause.getMessage(), LocalDateTime.now()), cancel);
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /**
+     * Streaming variant of /ask: responds with NDJSON where the first line holds the
+     * sanitized SQL and every following line is one result row, written as it is read
+     * from the database so memory stays flat regardless of the result size. The SQL is
+     * prepared on the query executor, so the servlet thread is released meanwhile.
+     *
+     * Permission, SQL generation and sanitization errors are reported as regular error
+     * responses; a failure after streaming has started is written as a final error line.
+     */
+    @PostMapping(value = "/ask/stream", produces = NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> askQueryStream(
+            @Valid @RequestBody QueryRequest request,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getCredentials();
+        assignQueryId(request);
+        return aiQueryService.prepareQueryAsync(userId, request)
+                .thenApply(sanitizedSql -> streamRows(userId, request, sanitizedSql));
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamRows(Long userId, QueryRequest request, String sanitizedSql) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                NdjsonRowWriter writer = new NdjsonRowWriter(generator);
+                writer.writeHeader(sanitizedSql);
+                try {
+                    // A write failing because the client went away cancels the statement
+                    aiQueryService.streamQuery(userId, request, sanitizedSql, writer);
+                } catch (DataAccessException | QueryCancelledException e) {
+                    log.error("Streaming query failed after {} rows: {}", writer.getRowCount(), e.getMessage());
+                    writer.writeError("Query execution failed: " + e.getMessage());
+                }
+                writer.finish();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Writes the response in the format the client prefers: the columnar JSON format (column
+     * header plus row arrays), the binary columnar format of {@link ColumnarResultEncoder}, or
+     * otherwise the regular JSON with one object per row.
+     */
+    private static ResponseEntity<?> render(QueryResponse response, String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return ResponseEntity.ok(response);
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : accepted) {
+            if (type.equalsTypeAndSubtype(COLUMNAR_BINARY)) {
+                return ResponseEntity.ok().contentType(COLUMNAR_BINARY).body(ColumnarResultEncoder.encode(response));
+            }
+            if (type.equalsTypeAndSubtype(COLUMNAR_JSON)) {
+                return ResponseEntity.ok().contentType(COLUMNAR_JSON).body(ColumnarQueryResponse.from(response));
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                break;
+            }
+        }
         return ResponseEntity.ok(response);
     }
+
+    private String assignQueryId(QueryRequest request) {
+        if (request.getQueryId() == null) {
+            request.setQueryId(UUID.randomUUID().toString());
+        }
+        return request.getQueryId();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private void send(SseEmitter emitter, String name, Object data, Runnable cancel) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; nobody is left to read the result
+            log.debug("Could not send {} event: {}", name, e.getMessage());
+            cancel.run();
+        }
+    }
 }
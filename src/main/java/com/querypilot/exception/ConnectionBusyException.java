@@ -0,0 +1,12 @@
+package com.querypilot.exception;
+
+public class ConnectionBusyException extends RuntimeException {
+
+    public ConnectionBusyException(String message) {
+        super(message);
+    }
+
+    public ConnectionBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,15 @@
+package com.querypilot.exception;
+
+public class QueryCancelledException extends RuntimeException {
+
+    private final String queryId;
+
+    public QueryCancelledException(String queryId) {
+        super("Query " + queryId + " was cancelled");
+        this.queryId = queryId;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+}
@@ -0,0 +1,8 @@
+package com.querypilot.exception;
+
+public class QueryNotFoundException extends RuntimeException {
+
+    public QueryNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.querypilot.exception;
+
+public class QueryTooExpensiveException extends RuntimeException {
+
+    public QueryTooExpensiveException(String message) {
+        super(message);
+    }
+}
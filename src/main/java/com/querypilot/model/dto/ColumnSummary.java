@@ -0,0 +1,20 @@
+package com.querypilot.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnSummary {
+
+    private String name;
+    private String type;
+    private boolean nullable;
+
+    public String getName() { return name; }
+    public String getType() { return type; }
+    public boolean isNullable() { return nullable; }
+    public void setName(String name) { this.name = name; }
+    public void setType(String type) { this.type = type; }
+    public void setNullable(boolean nullable) { this.nullable = nullable; }
+}
@@ -0,0 +1,46 @@
+package com.querypilot.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * {@link QueryResponse} in the columnar JSON format: the result's column header (name and SQL
+ * type) once, followed by the rows as arrays of values in column order.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnarQueryResponse {
+
+    private String sql;
+    private List<ResultTable.Column> columns;
+    private List<Object[]> rows;
+    private String safetyCheck;
+    private String cursor;
+    private String queryId;
+    private String warning;
+
+    public static ColumnarQueryResponse from(QueryResponse response) {
+        ResultTable result = response.getResult();
+        return new ColumnarQueryResponse(response.getSql(),
+                result != null ? result.getColumns() : List.of(),
+                result != null ? result.getRows() : List.of(),
+                response.getSafetyCheck(), response.getCursor(), response.getQueryId(), response.getWarning());
+    }
+
+    public String getSql() { return sql; }
+    public List<ResultTable.Column> getColumns() { return columns; }
+    public List<Object[]> getRows() { return rows; }
+    public String getSafetyCheck() { return safetyCheck; }
+    public String getCursor() { return cursor; }
+    public String getQueryId() { return queryId; }
+    public String getWarning() { return warning; }
+    public void setSql(String sql) { this.sql = sql; }
+    public void setColumns(List<ResultTable.Column> columns) { this.columns = columns; }
+    public void setRows(List<Object[]> rows) { this.rows = rows; }
+    public void setSafetyCheck(String safetyCheck) { this.safetyCheck = safetyCheck; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+    public void setQueryId(String queryId) { this.queryId = queryId; }
+    public void setWarning(String warning) { this.warning = warning; }
+}
@@ -4,6 +4,7 @@ import com.querypilot.model.enums.DatabaseType;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
@@ -26,14 +27,19 @@ public class ConnectionRequest {
     @NotBlank(message = "Password is required")
     private String password;
 
+    @PositiveOrZero(message = "Result cache TTL must not be negative")
+    private Integer resultCacheTtlSeconds;
+
     public String getName() { return name; }
     public DatabaseType getType() { return type; }
     public String getUrl() { return url; }
     public String getUsername() { return username; }
     public String getPassword() { return password; }
+    public Integer getResultCacheTtlSeconds() { return resultCacheTtlSeconds; }
     public void setName(String name) { this.name = name; }
     public void setType(DatabaseType type) { this.type = type; }
     public void setUrl(String url) { this.url = url; }
     public void setUsername(String username) { this.username = username; }
     public void setPassword(String password) { this.password = password; }
+    public void setResultCacheTtlSeconds(Integer resultCacheTtlSeconds) { this.resultCacheTtlSeconds = resultCacheTtlSeconds; }
 }
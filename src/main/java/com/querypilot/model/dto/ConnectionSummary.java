@@ -0,0 +1,42 @@
+package com.querypilot.model.dto;
+
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.DatabaseType;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Connection as shown in connection lists: no credentials and no schema.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConnectionSummary {
+
+    private Long id;
+    private String name;
+    private DatabaseType type;
+    private String url;
+    private String username;
+    private Long schemaVersion;
+    private long tableCount;
+
+    public static ConnectionSummary of(DataSourceConfig config, long tableCount) {
+        return new ConnectionSummary(config.getId(), config.getName(), config.getType(), config.getUrl(),
+                config.getUsername(), config.getSchemaVersion(), tableCount);
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public DatabaseType getType() { return type; }
+    public String getUrl() { return url; }
+    public String getUsername() { return username; }
+    public Long getSchemaVersion() { return schemaVersion; }
+    public long getTableCount() { return tableCount; }
+    public void setId(Long id) { this.id = id; }
+    public void setName(String name) { this.name = name; }
+    public void setType(DatabaseType type) { this.type = type; }
+    public void setUrl(String url) { this.url = url; }
+    public void setUsername(String username) { this.username = username; }
+    public void setSchemaVersion(Long schemaVersion) { this.schemaVersion = schemaVersion; }
+    public void setTableCount(long tableCount) { this.tableCount = tableCount; }
+}
@@ -0,0 +1,26 @@
+package com.querypilot.model.dto;
+
+import com.querypilot.model.enums.CostGateAction;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class CostLimitsRequest {
+
+    @Positive(message = "Row limit must be positive")
+    private Long maxEstimatedRows;
+
+    @Positive(message = "Cost limit must be positive")
+    private Double maxEstimatedCost;
+
+    private CostGateAction action;
+
+    public Long getMaxEstimatedRows() { return maxEstimatedRows; }
+    public Double getMaxEstimatedCost() { return maxEstimatedCost; }
+    public CostGateAction getAction() { return action; }
+    public void setMaxEstimatedRows(Long maxEstimatedRows) { this.maxEstimatedRows = maxEstimatedRows; }
+    public void setMaxEstimatedCost(Double maxEstimatedCost) { this.maxEstimatedCost = maxEstimatedCost; }
+    public void setAction(CostGateAction action) { this.action = action; }
+}
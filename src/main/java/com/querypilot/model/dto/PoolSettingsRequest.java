@@ -0,0 +1,52 @@
+package com.querypilot.model.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class PoolSettingsRequest {
+
+    @Min(value = 1, message = "Pool size must be at least 1")
+    @Max(value = 100, message = "Pool size must not exceed 100")
+    private Integer maxSize;
+
+    @PositiveOrZero(message = "Minimum idle must not be negative")
+    private Integer minIdle;
+
+    @Min(value = 250, message = "Connection timeout must be at least 250 ms")
+    private Integer connectionTimeoutMs;
+
+    @PositiveOrZero(message = "Query timeout must not be negative")
+    private Integer queryTimeoutSeconds;
+
+    @PositiveOrZero(message = "Fetch size must not be negative")
+    private Integer fetchSize;
+
+    @PositiveOrZero(message = "Leak detection threshold must not be negative")
+    private Integer leakDetectionThresholdMs;
+
+    private Boolean adaptive;
+
+    private Boolean warmUp;
+
+    public Integer getMaxSize() { return maxSize; }
+    public Integer getMinIdle() { return minIdle; }
+    public Integer getConnectionTimeoutMs() { return connectionTimeoutMs; }
+    public Integer getQueryTimeoutSeconds() { return queryTimeoutSeconds; }
+    public Integer getFetchSize() { return fetchSize; }
+    public Integer getLeakDetectionThresholdMs() { return leakDetectionThresholdMs; }
+    public Boolean getAdaptive() { return adaptive; }
+    public Boolean getWarmUp() { return warmUp; }
+    public void setMaxSize(Integer maxSize) { this.maxSize = maxSize; }
+    public void setMinIdle(Integer minIdle) { this.minIdle = minIdle; }
+    public void setConnectionTimeoutMs(Integer connectionTimeoutMs) { this.connectionTimeoutMs = connectionTimeoutMs; }
+    public void setQueryTimeoutSeconds(Integer queryTimeoutSeconds) { this.queryTimeoutSeconds = queryTimeoutSeconds; }
+    public void setFetchSize(Integer fetchSize) { this.fetchSize = fetchSize; }
+    public void setLeakDetectionThresholdMs(Integer leakDetectionThresholdMs) { this.leakDetectionThresholdMs = leakDetectionThresholdMs; }
+    public void setAdaptive(Boolean adaptive) { this.adaptive = adaptive; }
+    public void setWarmUp(Boolean warmUp) { this.warmUp = warmUp; }
+}
@@ -1,7 +1,9 @@
 package com.querypilot.model.dto;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
@@ -15,8 +17,25 @@ public class QueryRequest {
     @NotBlank(message = "Question is required")
     private String question;
 
+    // Lowers the connection's execution time limit for this request; it can never raise it
+    @Min(value = 1, message = "Timeout must be at least 1 second")
+    private Integer timeoutSeconds;
+
+    // Chosen by the client so it can cancel the query before the response arrives; generated when absent
+    @Pattern(regexp = "[A-Za-z0-9_-]{1,64}", message = "Query ID must be 1-64 letters, digits, '-' or '_'")
+    private String queryId;
+
+    public QueryRequest(Long connectionId, String question) {
+        this.connectionId = connectionId;
+        this.question = question;
+    }
+
     public Long getConnectionId() { return connectionId; }
     public void setConnectionId(Long connectionId) { this.connectionId = connectionId; }
     public String getQuestion() { return question; }
     public void setQuestion(String question) { this.question = question; }
+    public Integer getTimeoutSeconds() { return timeoutSeconds; }
+    public void setTimeoutSeconds(Integer timeoutSeconds) { this.timeoutSeconds = timeoutSeconds; }
+    public String getQueryId() { return queryId; }
+    public void setQueryId(String queryId) { this.queryId = queryId; }
 }
@@ -5,22 +5,31 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-import java.util.Map;
-
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class QueryResponse {
 
     private String sql;
-    private List<Map<String, Object>> result;
+    private ResultTable result;
     private String safetyCheck;
+    // Cursor of the next page of the result, null when there are no more rows
+    private String cursor;
+    // ID the query ran under; null for result pages
+    private String queryId;
+    // Set when the query ran although its estimated cost exceeds the connection's limits
+    private String warning;
 
     public String getSql() { return sql; }
-    public List<Map<String, Object>> getResult() { return result; }
+    public ResultTable getResult() { return result; }
     public String getSafetyCheck() { return safetyCheck; }
+    public String getCursor() { return cursor; }
+    public String getQueryId() { return queryId; }
+    public String getWarning() { return warning; }
     public void setSql(String sql) { this.sql = sql; }
-    public void setResult(List<Map<String, Object>> result) { this.result = result; }
+    public void setResult(ResultTable result) { this.result = result; }
     public void setSafetyCheck(String safetyCheck) { this.safetyCheck = safetyCheck; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+    public void setQueryId(String queryId) { this.queryId = queryId; }
+    public void setWarning(String warning) { this.warning = warning; }
 }
@@ -0,0 +1,16 @@
+package com.querypilot.model.dto;
+
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultCacheRequest {
+
+    @PositiveOrZero(message = "TTL must not be negative")
+    private Integer ttlSeconds;
+
+    public Integer getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Integer ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+}
@@ -0,0 +1,124 @@
+package com.querypilot.model.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a query: the column header once, then every row as an array of values in column
+ * order, so a row costs one array instead of a map repeating every column name.
+ *
+ * In JSON it is still written as an array of row objects (column name to value), the shape
+ * /ask has always returned. Clients that want the header and row arrays ask for the columnar
+ * formats instead (see {@link ColumnarQueryResponse}).
+ */
+@JsonSerialize(using = ResultTable.RowObjectsSerializer.class)
+public final class ResultTable {
+
+    private final List<Column> columns;
+    private final List<Object[]> rows;
+
+    public ResultTable(List<Column> columns, List<Object[]> rows) {
+        this.columns = List.copyOf(columns);
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    public List<Column> getColumns() { return columns; }
+    public List<Object[]> getRows() { return rows; }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Position of the column with the given label, ignoring case like JdbcTemplate's row
+     * maps do, or -1 when there is none.
+     */
+    public int columnIndex(String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).name().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Object get(int row, String column) {
+        int index = columnIndex(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("No column " + column);
+        }
+        return rows.get(row)[index];
+    }
+
+    /**
+     * The first {@code count} rows.
+     */
+    public ResultTable limit(int count) {
+        return count >= rows.size() ? this : new ResultTable(columns, rows.subList(0, count));
+    }
+
+    /**
+     * The table without the named columns (ignoring case).
+     */
+    public ResultTable without(Collection<String> names) {
+        List<Integer> kept = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            String name = columns.get(i).name();
+            if (names.stream().noneMatch(name::equalsIgnoreCase)) {
+                kept.add(i);
+            }
+        }
+        if (kept.size() == columns.size()) {
+            return this;
+        }
+        List<Column> keptColumns = kept.stream().map(columns::get).toList();
+        List<Object[]> keptRows = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Object[] values = new Object[kept.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = row[kept.get(i)];
+            }
+            keptRows.add(values);
+        }
+        return new ResultTable(keptColumns, keptRows);
+    }
+
+    /**
+     * A result column: its label and its SQL type as a {@link java.sql.JDBCType} name
+     * (the driver's own type name for vendor types).
+     */
+    public record Column(String name, String type) {
+    }
+
+    /**
+     * Writes the rows as JSON objects in column order. A label that occurs twice is written
+     * twice; JSON readers keep the last value, as the row maps this replaces did.
+     */
+    static class RowObjectsSerializer extends StdSerializer<ResultTable> {
+
+        RowObjectsSerializer() {
+            super(ResultTable.class);
+        }
+
+        @Override
+        public void serialize(ResultTable table, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(table, table.size());
+            for (Object[] row : table.rows) {
+                gen.writeStartObject();
+                for (int i = 0; i < row.length; i++) {
+                    provider.defaultSerializeField(table.columns.get(i).name(), row[i], gen);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.querypilot.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class TableSummary {
+
+    private String name;
+    private List<ColumnSummary> columns;
+
+    public String getName() { return name; }
+    public List<ColumnSummary> getColumns() { return columns; }
+    public void setName(String name) { this.name = name; }
+    public void setColumns(List<ColumnSummary> columns) { this.columns = columns; }
+}
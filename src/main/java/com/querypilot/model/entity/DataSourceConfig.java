@@ -1,5 +1,6 @@
 package com.querypilot.model.entity;
 
+import com.querypilot.model.enums.CostGateAction;
 import com.querypilot.model.enums.DatabaseType;
 import jakarta.persistence.*;
 import lombok.*;
@@ -31,8 +32,41 @@ public class DataSourceConfig {
     @Column(nullable = false)
     private String encryptedPassword;
 
-    @Column(columnDefinition = "TEXT")
-    private String schemaDdl;
+    // Version of the schema stored in schema_table / schema_column; incremented whenever a
+    // refresh changes it, null until the schema was first stored
+    private Long schemaVersion;
+
+    // Seconds query results stay in the result cache; null or 0 disables caching for this connection
+    private Integer resultCacheTtlSeconds;
+
+    // Target pool settings; null falls back to the defaults in PoolSettings
+    private Integer poolMaxSize;
+    private Integer poolMinIdle;
+    private Integer connectionTimeoutMs;
+    private Integer queryTimeoutSeconds;
+    private Integer fetchSize;
+    private Integer leakDetectionThresholdMs;
+    // Let AdaptivePoolSizer resize the pool between poolMinIdle and poolMaxSize
+    private Boolean poolAdaptive;
+    // Open and prime the pool at startup, and never close it for being idle
+    private Boolean poolWarmUp;
+
+    // Limits on the EXPLAIN estimate of generated SQL; null means no limit
+    private Long maxEstimatedRows;
+    private Double maxEstimatedCost;
+    // What happens above the limits; null means REJECT
+    @Enumerated(EnumType.STRING)
+    private CostGateAction costGateAction;
+
+    public DataSourceConfig(Long id, String name, DatabaseType type, String url, String username,
+                            String encryptedPassword) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.url = url;
+        this.username = username;
+        this.encryptedPassword = encryptedPassword;
+    }
 
     public Long getId() { return id; }
     public String getName() { return name; }
@@ -40,12 +74,36 @@ public class DataSourceConfig {
     public String getUrl() { return url; }
     public String getUsername() { return username; }
     public String getEncryptedPassword() { return encryptedPassword; }
-    public String getSchemaDdl() { return schemaDdl; }
+    public Long getSchemaVersion() { return schemaVersion; }
+    public Integer getResultCacheTtlSeconds() { return resultCacheTtlSeconds; }
+    public Integer getPoolMaxSize() { return poolMaxSize; }
+    public Integer getPoolMinIdle() { return poolMinIdle; }
+    public Integer getConnectionTimeoutMs() { return connectionTimeoutMs; }
+    public Integer getQueryTimeoutSeconds() { return queryTimeoutSeconds; }
+    public Integer getFetchSize() { return fetchSize; }
+    public Integer getLeakDetectionThresholdMs() { return leakDetectionThresholdMs; }
+    public Boolean getPoolAdaptive() { return poolAdaptive; }
+    public Boolean getPoolWarmUp() { return poolWarmUp; }
+    public Long getMaxEstimatedRows() { return maxEstimatedRows; }
+    public Double getMaxEstimatedCost() { return maxEstimatedCost; }
+    public CostGateAction getCostGateAction() { return costGateAction; }
     public void setId(Long id) { this.id = id; }
     public void setName(String name) { this.name = name; }
     public void setType(DatabaseType type) { this.type = type; }
     public void setUrl(String url) { this.url = url; }
     public void setUsername(String username) { this.username = username; }
     public void setEncryptedPassword(String encryptedPassword) { this.encryptedPassword = encryptedPassword; }
-    public void setSchemaDdl(String schemaDdl) { this.schemaDdl = schemaDdl; }
+    public void setSchemaVersion(Long schemaVersion) { this.schemaVersion = schemaVersion; }
+    public void setResultCacheTtlSeconds(Integer resultCacheTtlSeconds) { this.resultCacheTtlSeconds = resultCacheTtlSeconds; }
+    public void setPoolMaxSize(Integer poolMaxSize) { this.poolMaxSize = poolMaxSize; }
+    public void setPoolMinIdle(Integer poolMinIdle) { this.poolMinIdle = poolMinIdle; }
+    public void setConnectionTimeoutMs(Integer connectionTimeoutMs) { this.connectionTimeoutMs = connectionTimeoutMs; }
+    public void setQueryTimeoutSeconds(Integer queryTimeoutSeconds) { this.queryTimeoutSeconds = queryTimeoutSeconds; }
+    public void setFetchSize(Integer fetchSize) { this.fetchSize = fetchSize; }
+    public void setLeakDetectionThresholdMs(Integer leakDetectionThresholdMs) { this.leakDetectionThresholdMs = leakDetectionThresholdMs; }
+    public void setPoolAdaptive(Boolean poolAdaptive) { this.poolAdaptive = poolAdaptive; }
+    public void setPoolWarmUp(Boolean poolWarmUp) { this.poolWarmUp = poolWarmUp; }
+    public void setMaxEstimatedRows(Long maxEstimatedRows) { this.maxEstimatedRows = maxEstimatedRows; }
+    public void setMaxEstimatedCost(Double maxEstimatedCost) { this.maxEstimatedCost = maxEstimatedCost; }
+    public void setCostGateAction(CostGateAction costGateAction) { this.costGateAction = costGateAction; }
 }
@@ -0,0 +1,55 @@
+package com.querypilot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One column of a table in a connection's stored schema.
+ */
+@Entity
+@Table(name = "schema_column", indexes = {
+        @Index(name = "idx_schema_column_connection", columnList = "connection_id"),
+        @Index(name = "idx_schema_column_table", columnList = "table_id")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchemaColumn {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "connection_id", nullable = false)
+    private Long connectionId;
+
+    @Column(name = "table_id", nullable = false)
+    private Long tableId;
+
+    @Column(nullable = false)
+    private Integer position;
+
+    @Column(name = "column_name", nullable = false)
+    private String name;
+
+    @Column(name = "data_type")
+    private String type;
+
+    @Column(nullable = false)
+    private Boolean nullable;
+
+    public Long getId() { return id; }
+    public Long getConnectionId() { return connectionId; }
+    public Long getTableId() { return tableId; }
+    public Integer getPosition() { return position; }
+    public String getName() { return name; }
+    public String getType() { return type; }
+    public Boolean getNullable() { return nullable; }
+    public void setId(Long id) { this.id = id; }
+    public void setConnectionId(Long connectionId) { this.connectionId = connectionId; }
+    public void setTableId(Long tableId) { this.tableId = tableId; }
+    public void setPosition(Integer position) { this.position = position; }
+    public void setName(String name) { this.name = name; }
+    public void setType(String type) { this.type = type; }
+    public void setNullable(Boolean nullable) { this.nullable = nullable; }
+}
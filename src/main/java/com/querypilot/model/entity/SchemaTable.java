@@ -0,0 +1,45 @@
+package com.querypilot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One table of a connection's stored schema: its DDL block and the fingerprint it was
+ * extracted at. Its columns are stored as SchemaColumn rows.
+ */
+@Entity
+@Table(name = "schema_table", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"connection_id", "table_name"})
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchemaTable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "connection_id", nullable = false)
+    private Long connectionId;
+
+    @Column(name = "table_name", nullable = false)
+    private String tableName;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String ddl;
+
+    public Long getId() { return id; }
+    public Long getConnectionId() { return connectionId; }
+    public String getTableName() { return tableName; }
+    public String getFingerprint() { return fingerprint; }
+    public String getDdl() { return ddl; }
+    public void setId(Long id) { this.id = id; }
+    public void setConnectionId(Long connectionId) { this.connectionId = connectionId; }
+    public void setTableName(String tableName) { this.tableName = tableName; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+    public void setDdl(String ddl) { this.ddl = ddl; }
+}
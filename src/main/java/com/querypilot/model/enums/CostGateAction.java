@@ -0,0 +1,11 @@
+package com.querypilot.model.enums;
+
+/**
+ * What happens to a query whose estimated cost exceeds its connection's limits.
+ */
+public enum CostGateAction {
+    // Fail the query before it runs
+    REJECT,
+    // Run it and attach a warning to the response
+    WARN
+}
@@ -0,0 +1,10 @@
+package com.querypilot.model.enums;
+
+/**
+ * Compression of a query export: of the whole file for CSV, of every data page for Parquet.
+ */
+public enum ExportCompression {
+    NONE,
+    GZIP,
+    ZSTD
+}
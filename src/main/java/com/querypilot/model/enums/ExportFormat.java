@@ -0,0 +1,11 @@
+package com.querypilot.model.enums;
+
+/**
+ * File format of a query export.
+ */
+public enum ExportFormat {
+    // RFC 4180 CSV with a header line, UTF-8
+    CSV,
+    // Apache Parquet, one row group per batch of rows
+    PARQUET
+}
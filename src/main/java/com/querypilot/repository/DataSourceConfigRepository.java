@@ -4,6 +4,12 @@ import com.querypilot.model.entity.DataSourceConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DataSourceConfigRepository extends JpaRepository<DataSourceConfig, Long> {
+
+    List<DataSourceConfig> findByPoolWarmUpTrue();
+
+    List<DataSourceConfig> findBySchemaVersionIsNull();
 }
@@ -0,0 +1,18 @@
+package com.querypilot.repository;
+
+import com.querypilot.model.entity.SchemaColumn;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SchemaColumnRepository extends JpaRepository<SchemaColumn, Long> {
+
+    List<SchemaColumn> findByConnectionIdOrderByTableIdAscPositionAsc(Long connectionId);
+
+    void deleteByTableIdIn(Collection<Long> tableIds);
+
+    void deleteByConnectionId(Long connectionId);
+}
@@ -0,0 +1,36 @@
+package com.querypilot.repository;
+
+import com.querypilot.model.entity.SchemaTable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SchemaTableRepository extends JpaRepository<SchemaTable, Long> {
+
+    List<SchemaTable> findByConnectionId(Long connectionId);
+
+    List<SchemaTable> findByConnectionIdAndTableNameIn(Long connectionId, Collection<String> tableNames);
+
+    // Loads only names and fingerprints, not the DDL
+    List<TableHeader> findHeadersByConnectionId(Long connectionId);
+
+    @Query("SELECT t.connectionId AS connectionId, COUNT(t) AS tableCount FROM SchemaTable t GROUP BY t.connectionId")
+    List<TableCount> countTablesByConnection();
+
+    void deleteByConnectionId(Long connectionId);
+
+    interface TableHeader {
+        Long getId();
+        String getTableName();
+        String getFingerprint();
+    }
+
+    interface TableCount {
+        Long getConnectionId();
+        Long getTableCount();
+    }
+}
@@ -0,0 +1,9 @@
+package com.querypilot.security;
+
+import java.time.Instant;
+
+/**
+ * Identity carried by a verified JWT.
+ */
+public record JwtPrincipal(Long userId, String username, String role, Instant expiresAt) {
+}
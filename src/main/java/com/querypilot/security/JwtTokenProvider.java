@@ -1,5 +1,8 @@
 package com.querypilot.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
@@ -9,7 +12,13 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
 
 @Component
 public class JwtTokenProvider {
@@ -18,12 +27,18 @@ public class JwtTokenProvider {
 
     private final SecretKey secretKey;
     private final long expirationMs;
+    private final JwtParser parser;
+    // Verified tokens by SHA-256 digest, each kept until the token itself expires; null when disabled
+    private final Cache<String, JwtPrincipal> verifiedTokens;
 
     public JwtTokenProvider(
             @Value("${app.jwt.secret}") String secret,
-            @Value("${app.jwt.expiration-ms}") long expirationMs) {
+            @Value("${app.jwt.expiration-ms}") long expirationMs,
+            @Value("${app.jwt.cache-size:10000}") long cacheSize) {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.expirationMs = expirationMs;
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.verifiedTokens = cacheSize > 0 ? buildCache(cacheSize) : null;
     }
 
     public String generateToken(Long userId, String username, String role) {
@@ -40,16 +55,42 @@ public class JwtTokenProvider {
                 .compact();
     }
 
+    /**
+     * Verifies the token once and returns its principal, or empty if the token is invalid or expired.
+     * Recently verified tokens are served from a bounded cache without re-checking the signature.
+     */
+    public Optional<JwtPrincipal> authenticate(String token) {
+        String digest = verifiedTokens != null ? digest(token) : null;
+        if (digest != null) {
+            JwtPrincipal cached = verifiedTokens.getIfPresent(digest);
+            if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+                return Optional.of(cached);
+            }
+        }
+
+        try {
+            Claims claims = parseClaims(token);
+            JwtPrincipal principal = new JwtPrincipal(
+                    extractUserId(claims),
+                    claims.getSubject(),
+                    claims.get("role", String.class),
+                    extractExpiration(claims));
+            if (digest != null) {
+                verifiedTokens.put(digest, principal);
+            }
+            return Optional.of(principal);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.error("Invalid JWT token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     public String getUsernameFromToken(String token) {
         return parseClaims(token).getSubject();
     }
 
     public Long getUserIdFromToken(String token) {
-        Object userId = parseClaims(token).get("userId");
-        if (userId instanceof Number) {
-            return ((Number) userId).longValue();
-        }
-        throw new JwtException("Invalid or missing userId claim in token");
+        return extractUserId(parseClaims(token));
     }
 
     public String getRoleFromToken(String token) {
@@ -57,20 +98,58 @@ public class JwtTokenProvider {
     }
 
     public boolean validateToken(String token) {
-        try {
-            parseClaims(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
-            return false;
-        }
+        return authenticate(token).isPresent();
     }
 
     private Claims parseClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    private Long extractUserId(Claims claims) {
+        Object userId = claims.get("userId");
+        if (userId instanceof Number) {
+            return ((Number) userId).longValue();
+        }
+        throw new JwtException("Invalid or missing userId claim in token");
+    }
+
+    // Tokens are only ever issued with an expiry; one without would be valid, and cached, forever
+    private Instant extractExpiration(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            return expiration.toInstant();
+        }
+        throw new JwtException("Missing expiration claim in token");
+    }
+
+    private static Cache<String, JwtPrincipal> buildCache(long cacheSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, JwtPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String key, JwtPrincipal value, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), value.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JwtPrincipal value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JwtPrincipal value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
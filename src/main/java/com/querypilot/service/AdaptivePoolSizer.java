@@ -0,0 +1,61 @@
+package com.querypilot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Periodically resizes pools of connections in adaptive mode. A pool grows by a quarter
+ * (at least one connection) while queries queue for a permit longer than the grow threshold,
+ * and shrinks by one connection while it is mostly idle, always staying between the
+ * connection's minimum idle and maximum pool size.
+ */
+@Service
+public class AdaptivePoolSizer {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    // Below this share of busy connections (and with nobody waiting) a pool gives one back
+    private static final double SHRINK_UTILIZATION = 0.25;
+
+    private final DynamicConnectionFactory connectionFactory;
+    private final ConnectionLimiter connectionLimiter;
+    private final double growWaitMs;
+
+    public AdaptivePoolSizer(DynamicConnectionFactory connectionFactory,
+                             ConnectionLimiter connectionLimiter,
+                             @Value("${app.pool.adaptive.grow-wait-ms:50}") double growWaitMs) {
+        this.connectionFactory = connectionFactory;
+        this.connectionLimiter = connectionLimiter;
+        this.growWaitMs = growWaitMs;
+    }
+
+    @Scheduled(fixedDelayString = "${app.pool.adaptive.interval-ms:30000}",
+            initialDelayString = "${app.pool.adaptive.interval-ms:30000}")
+    public void adjustPools() {
+        for (DynamicConnectionFactory.PoolUsage usage : connectionFactory.adaptivePools()) {
+            ConnectionLimiter.WaitStats wait = connectionLimiter.drainWaitStats(usage.connectionId());
+            int next = nextSize(usage.currentSize(), usage.settings().minSize(), usage.settings().maxSize(),
+                    usage.activeConnections(), wait);
+            if (next != usage.currentSize()) {
+                log.info("Resizing pool of connection {} from {} to {} (active {}, waiting {}, mean wait {} ms)",
+                        usage.connectionId(), usage.currentSize(), next, usage.activeConnections(),
+                        wait.waiting(), String.format("%.1f", wait.meanWaitMs()));
+                connectionFactory.resize(usage.connectionId(), next);
+            }
+        }
+    }
+
+    int nextSize(int current, int minSize, int maxSize, int active, ConnectionLimiter.WaitStats wait) {
+        if (wait.waiting() > 0 || wait.meanWaitMs() > growWaitMs) {
+            return Math.min(maxSize, current + Math.max(1, current / 4));
+        }
+        double utilization = current == 0 ? 0 : (double) active / current;
+        if (utilization < SHRINK_UTILIZATION) {
+            return Math.max(minSize, current - 1);
+        }
+        return Math.max(minSize, Math.min(maxSize, current));
+    }
+}
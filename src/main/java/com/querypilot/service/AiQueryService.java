@@ -3,45 +3,87 @@ package com.querypilot.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querypilot.exception.LlmUnavailableException;
+import com.querypilot.exception.QueryCancelledException;
 import com.querypilot.model.dto.QueryRequest;
 import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
 import com.querypilot.model.entity.DataSourceConfig;
 import com.querypilot.model.enums.DatabaseType;
 import com.querypilot.repository.DataSourceConfigRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 @Service
 public class AiQueryService {
 
     private static final Logger log = LoggerFactory.getLogger(AiQueryService.class);
 
-    private final ChatClient chatClient;
+    private final LlmClient llmClient;
     private final SqlSanitizer sqlSanitizer;
-    private final DynamicConnectionFactory connectionFactory;
+    private final StatementExecutor statementExecutor;
+    private final QueryCostGate queryCostGate;
     private final DataSourceConfigRepository configRepository;
     private final PermissionService permissionService;
+    private final SqlGenerationCache sqlGenerationCache;
+    private final SchemaSelector schemaSelector;
+    private final SchemaStore schemaStore;
+    private final QueryResultCache queryResultCache;
+    private final ResultPager resultPager;
+    private final QueryExporter queryExporter;
+    private final RunningQueries runningQueries;
+    private final QueryMetrics queryMetrics;
+    private final Executor queryExecutor;
     private final ObjectMapper objectMapper;
 
-    public AiQueryService(ChatClient.Builder chatClientBuilder,
+    // Concurrent identical requests share one DeepSeek call and one query execution
+    private final SingleFlight<GenerationKey, String> generationFlights = new SingleFlight<>();
+    private final SingleFlight<ExecutionKey, ResultTable> executionFlights = new SingleFlight<>();
+
+    public AiQueryService(LlmClient llmClient,
                           SqlSanitizer sqlSanitizer,
-                          DynamicConnectionFactory connectionFactory,
+                          StatementExecutor statementExecutor,
+                          QueryCostGate queryCostGate,
                           DataSourceConfigRepository configRepository,
-                          PermissionService permissionService) {
-        this.chatClient = chatClientBuilder.build();
+                          PermissionService permissionService,
+                          SqlGenerationCache sqlGenerationCache,
+                          SchemaSelector schemaSelector,
+                          SchemaStore schemaStore,
+                          QueryResultCache queryResultCache,
+                          ResultPager resultPager,
+                          QueryExporter queryExporter,
+                          RunningQueries runningQueries,
+                          QueryMetrics queryMetrics,
+                          @Qualifier("queryExecutor") Executor queryExecutor) {
+        this.llmClient = llmClient;
         this.sqlSanitizer = sqlSanitizer;
-        this.connectionFactory = connectionFactory;
+        this.statementExecutor = statementExecutor;
+        this.queryCostGate = queryCostGate;
         this.configRepository = configRepository;
         this.permissionService = permissionService;
+        this.sqlGenerationCache = sqlGenerationCache;
+        this.schemaSelector = schemaSelector;
+        this.schemaStore = schemaStore;
+        this.queryResultCache = queryResultCache;
+        this.resultPager = resultPager;
+        this.queryExporter = queryExporter;
+        this.runningQueries = runningQueries;
+        this.queryMetrics = queryMetrics;
+        this.queryExecutor = queryExecutor;
         this.objectMapper = new ObjectMapper();
     }
 
@@ -51,39 +93,199 @@ public class AiQueryService {
      * 2. Load schema DDL
      * 3. Call DeepSeek AI
      * 4. Sanitize generated SQL
-     * 5. Execute against target database
+     * 5. Check the database's cost estimate against the connection's limits
+     * 6. Execute against target database
+     *
+     * Requests for the same connection and question that arrive while an identical one is in
+     * flight share its SQL generation and execution; the permission check always runs per user.
+     * Each stage is timed through {@link QueryMetrics}.
+     *
+     * The query runs under the request's query ID (a random one when the client sent none),
+     * through which {@link #cancelQuery} can stop it, and is bounded by the execution time
+     * limit from {@link StatementExecutor#timeoutSeconds}.
      */
     public QueryResponse processQuery(Long userId, QueryRequest request) {
+        return processQuery(userId, request, QueryProgressListener.NONE);
+    }
+
+    /**
+     * Same as {@link #processQuery(Long, QueryRequest)}, reporting the SQL to the listener as
+     * the model writes it and once it is sanitized.
+     */
+    public QueryResponse processQuery(Long userId, QueryRequest request, QueryProgressListener listener) {
+        QueryHandle handle = runningQueries.start(userId, request.getQueryId());
+        try {
+            PreparedQuery prepared = prepare(userId, request, listener);
+            DataSourceConfig config = prepared.config();
+            String sanitizedSql = prepared.sql();
+            // SQL generation is shared with identical requests, so a cancel only takes effect here
+            handle.checkNotCancelled();
+
+            // Step 5: Cost gate, only for queries that will reach the database
+            Optional<ResultTable> cached = queryResultCache.get(config.getId(), sanitizedSql);
+            String warning = cached.isPresent() ? null : queryCostGate.check(config, sanitizedSql);
+
+            // Step 6: Execute against target database (or serve from the result cache)
+            int timeoutSeconds = statementExecutor.timeoutSeconds(config, request.getTimeoutSeconds());
+            ResultTable result = cached
+                    .orElseGet(() -> executeShared(config, sanitizedSql, timeoutSeconds, handle));
+            handle.checkNotCancelled();
+
+            // A full first page may have more rows behind it; paging them never calls DeepSeek again
+            String cursor = result.size() >= SqlSanitizer.DEFAULT_MAX_ROWS
+                    ? resultPager.open(userId, config.getId(), config.getType(), sanitizedSql,
+                            prepared.generatedSql(), result.size(), timeoutSeconds)
+                    : null;
+
+            // The full result can be exported under the query ID
+            queryExporter.register(userId, handle.getId(), config.getId(), prepared.generatedSql());
+
+            return new QueryResponse(sanitizedSql, result, "PASSED", cursor, handle.getId(), warning);
+        } finally {
+            runningQueries.finish(handle);
+        }
+    }
+
+    /**
+     * Cancels the user's running query: its statement is cancelled if it is executing,
+     * otherwise it fails before execution starts. Returns false when no such query is running.
+     */
+    public boolean cancelQuery(Long userId, String queryId) {
+        return runningQueries.cancel(userId, queryId);
+    }
+
+    /**
+     * Runs {@link #processQuery} on the query executor (a virtual thread per request), so the
+     * calling servlet thread is released while DeepSeek and the target database are working.
+     */
+    public CompletableFuture<QueryResponse> processQueryAsync(Long userId, QueryRequest request) {
+        return processQueryAsync(userId, request, QueryProgressListener.NONE);
+    }
+
+    public CompletableFuture<QueryResponse> processQueryAsync(Long userId, QueryRequest request,
+                                                              QueryProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> processQuery(userId, request, listener), queryExecutor);
+    }
+
+    /**
+     * Runs steps 1-4 of the pipeline (permission check, schema load, SQL generation and
+     * sanitization) and returns the sanitized SQL without executing it.
+     */
+    public String prepareQuery(Long userId, QueryRequest request) {
+        return prepare(userId, request, QueryProgressListener.NONE).sql();
+    }
+
+    /**
+     * Runs {@link #prepareQuery} on the query executor, so the calling servlet thread is not
+     * held while DeepSeek generates the SQL.
+     */
+    public CompletableFuture<String> prepareQueryAsync(Long userId, QueryRequest request) {
+        return CompletableFuture.supplyAsync(() -> prepareQuery(userId, request), queryExecutor);
+    }
+
+    private PreparedQuery prepare(Long userId, QueryRequest request, QueryProgressListener listener) {
         Long connectionId = request.getConnectionId();
 
         // Step 1: Permission check
-        permissionService.validateAccess(userId, connectionId);
+        queryMetrics.timeStage("permission", connectionId, null,
+                () -> permissionService.validateAccess(userId, connectionId));
 
         // Step 2: Load connection config and schema
-        DataSourceConfig config = configRepository.findById(connectionId)
-                .orElseThrow(() -> new RuntimeException("Connection not found: " + connectionId));
+        DataSourceConfig config = queryMetrics.timeStage("config", connectionId, null,
+                () -> configRepository.findById(connectionId)
+                        .orElseThrow(() -> new RuntimeException("Connection not found: " + connectionId)));
+        DatabaseType type = config.getType();
 
         // Step 3: Generate SQL via DeepSeek
-        String rawSql = generateSql(request.getQuestion(), config);
+        String question = request.getQuestion();
+        String rawSql = queryMetrics.timeStage("generate", connectionId, type,
+                () -> generationFlights.execute(
+                        new GenerationKey(connectionId, SqlGenerationCache.normalizeQuestion(question)),
+                        () -> generateSql(question, config, listener)));
         log.info("AI generated SQL: {}", rawSql);
 
         // Step 4: Sanitize SQL (safety guardrails)
-        String sanitizedSql = sqlSanitizer.sanitize(rawSql);
+        String sanitizedSql = queryMetrics.timeStage("sanitize", connectionId, type,
+                () -> sqlSanitizer.sanitize(rawSql));
         log.info("Sanitized SQL: {}", sanitizedSql);
+        listener.onSql(sanitizedSql);
 
-        // Step 5: Execute against target database
-        JdbcTemplate jdbcTemplate = connectionFactory.getJdbcTemplate(connectionId);
-        List<Map<String, Object>> result = jdbcTemplate.queryForList(sanitizedSql);
+        return new PreparedQuery(config, rawSql, sanitizedSql);
+    }
 
-        return new QueryResponse(sanitizedSql, result, "PASSED");
+    /**
+     * Executes through the shared flight for the SQL. The leader's statement serves every
+     * follower, so when another request cancels it the followers that still want the result
+     * run it again.
+     */
+    private ResultTable executeShared(DataSourceConfig config, String sanitizedSql,
+                                      int timeoutSeconds, QueryHandle handle) {
+        ExecutionKey key = new ExecutionKey(config.getId(), sanitizedSql);
+        while (true) {
+            handle.checkNotCancelled();
+            try {
+                return executionFlights.execute(key, () -> executeQuery(config, sanitizedSql, timeoutSeconds, handle));
+            } catch (QueryCancelledException e) {
+                if (handle.isCancelled() || handle.getId().equals(e.getQueryId())) {
+                    throw e;
+                }
+                log.debug("Shared execution was cancelled by query {}; running it again", e.getQueryId());
+            }
+        }
+    }
+
+    private ResultTable executeQuery(DataSourceConfig config, String sanitizedSql,
+                                     int timeoutSeconds, QueryHandle handle) {
+        // Time spent waiting for a connection permit counts towards the execute stage
+        ResultTable rows = queryMetrics.timeStage("execute", config.getId(), config.getType(),
+                () -> statementExecutor.queryForTable(config.getId(), sanitizedSql, timeoutSeconds, handle));
+        queryResultCache.put(config.getId(), sanitizedSql, rows, config.getResultCacheTtlSeconds());
+        return rows;
+    }
+
+    /**
+     * Executes already-sanitized SQL and hands every row to the handler as soon as it is read,
+     * so the result is never materialized in memory (see {@link StatementExecutor#stream}).
+     * The query passes the cost gate and runs under the request's query ID and time limit like
+     * {@link #processQuery}; a cost warning is only logged.
+     */
+    public void streamQuery(Long userId, QueryRequest request, String sanitizedSql, RowCallbackHandler handler) {
+        Long connectionId = request.getConnectionId();
+        DataSourceConfig config = configRepository.findById(connectionId)
+                .orElseThrow(() -> new RuntimeException("Connection not found: " + connectionId));
+        queryCostGate.check(config, sanitizedSql);
+        QueryHandle handle = runningQueries.start(userId, request.getQueryId());
+        try {
+            statementExecutor.stream(connectionId, sanitizedSql,
+                    statementExecutor.timeoutSeconds(config, request.getTimeoutSeconds()), handle, handler);
+        } finally {
+            runningQueries.finish(handle);
+        }
     }
 
     /**
-     * Calls DeepSeek to convert natural language to SQL.
+     * Calls DeepSeek to convert natural language to SQL, unless the same question was
+     * already answered for this connection and schema.
+     *
+     * The completion is streamed: the "sql" field is decoded as tokens arrive and passed to
+     * the listener, and the stream is cancelled as soon as the field's closing quote is in, so
+     * sanitization does not wait for the rest of the completion. A completion without a
+     * readable "sql" field falls back to parsing the whole text. Timeouts, retries, hedging and
+     * fail-fast on provider outages are handled by {@link LlmClient}.
      */
-    private String generateSql(String question, DataSourceConfig config) {
+    private String generateSql(String question, DataSourceConfig config, QueryProgressListener listener) {
         String dialect = getDialectName(config.getType());
-        String schemaDdl = config.getSchemaDdl() != null ? config.getSchemaDdl() : "-- No schema available";
+        String storedDdl = schemaStore.getSchemaDdl(config);
+        String schemaDdl = storedDdl != null ? storedDdl : "-- No schema available";
+
+        Optional<String> cached = sqlGenerationCache.get(config.getId(), schemaDdl, question);
+        if (cached.isPresent()) {
+            log.debug("SQL cache hit for connection {}", config.getId());
+            return cached.get();
+        }
+
+        // Only the tables relevant to the question go into the prompt on large schemas
+        String promptSchema = schemaSelector.selectSchema(config.getId(), schemaDdl, question);
 
         String systemPrompt = String.format("""
                 You are a SQL expert. The target database is **%s**.
@@ -101,7 +303,7 @@ public class AiQueryService {
                 
                 Output ONLY a JSON object in this exact format, with no additional text:
                 {"sql": "YOUR_SQL_QUERY_HERE"}
-                """, dialect, dialect, schemaDdl, dialect);
+                """, dialect, dialect, promptSchema, dialect);
 
         String userPrompt = "Question: " + question;
 
@@ -109,15 +311,19 @@ public class AiQueryService {
         log.debug("User prompt: {}", userPrompt);
 
         try {
-            String response = chatClient.prompt(
-                    new Prompt(List.of(
-                            new SystemMessage(systemPrompt),
-                            new UserMessage(userPrompt)
-                    ))
-            ).call().content();
-
-            log.debug("AI raw response: {}", response);
-            return extractSqlFromResponse(response);
+            Prompt prompt = new Prompt(List.of(
+                    new SystemMessage(systemPrompt),
+                    new UserMessage(userPrompt)
+            ));
+            // Retries and hedged requests read their own completion; only the first one to
+            // produce SQL reports progress, so the listener never sees two interleaved
+            AtomicReference<Object> progressOwner = new AtomicReference<>();
+            String sql = llmClient.stream(prompt, chunks -> readSql(chunks, listener, progressOwner));
+            sqlGenerationCache.put(config.getId(), schemaDdl, question, sql);
+            return sql;
+        } catch (LlmUnavailableException e) {
+            log.error("AI service unavailable: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Failed to generate SQL from AI: {}", e.getMessage());
             throw new RuntimeException(
@@ -125,6 +331,30 @@ public class AiQueryService {
         }
     }
 
+    /**
+     * Reads a streamed completion up to the closing quote of its "sql" field; returning early
+     * closes the stream, which cancels the rest of the completion.
+     */
+    private String readSql(Stream<String> chunks, QueryProgressListener listener, AtomicReference<Object> progressOwner) {
+        Object self = new Object();
+        StringBuilder response = new StringBuilder();
+        SqlStreamExtractor extractor = new SqlStreamExtractor();
+        Iterator<String> iterator = chunks.iterator();
+        while (!extractor.isComplete() && iterator.hasNext()) {
+            String chunk = iterator.next();
+            response.append(chunk);
+            String delta = extractor.feed(chunk);
+            if (!delta.isEmpty() && (progressOwner.compareAndSet(null, self) || progressOwner.get() == self)) {
+                listener.onSqlDelta(delta);
+            }
+        }
+
+        log.debug("AI raw response: {}", response);
+        return extractor.isComplete() && !extractor.sql().isBlank()
+                ? extractor.sql()
+                : extractSqlFromResponse(response.toString());
+    }
+
     /**
      * Extracts the SQL from the AI JSON response.
      * Handles both clean JSON and markdown-wrapped JSON.
@@ -150,6 +380,7 @@ public class AiQueryService {
             }
         } catch (JsonProcessingException e) {
             log.warn("Could not parse AI response as JSON, attempting raw extraction: {}", e.getMessage());
+            queryMetrics.llmParseFallback();
         }
 
         // Fallback: try to find SQL directly in the response
@@ -168,4 +399,13 @@ public class AiQueryService {
             case H2 -> "H2 Database (use DATEADD/DATEDIFF for date math, not INTERVAL)";
         };
     }
+
+    private record PreparedQuery(DataSourceConfig config, String generatedSql, String sql) {
+    }
+
+    private record GenerationKey(Long connectionId, String normalizedQuestion) {
+    }
+
+    private record ExecutionKey(Long connectionId, String sql) {
+    }
 }
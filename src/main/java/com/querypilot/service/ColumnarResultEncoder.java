@@ -0,0 +1,193 @@
+package com.querypilot.service;
+
+import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Encodes a {@link QueryResponse} in the compact binary columnar format
+ * ({@value #MEDIA_TYPE}). All integers are unsigned LEB128 varints, zigzag-encoded where they
+ * can be negative; strings are a varint of their UTF-8 length plus one (0 for null) followed
+ * by the bytes.
+ *
+ * <pre>
+ * "QPC1"
+ * sql, safetyCheck, cursor, queryId, warning      strings
+ * column count, then per column:                 name, SQL type (strings), encoding (1 byte)
+ * row count
+ * per column: a null bitmap of (rows + 7) / 8 bytes, bit i (LSB first) set when row i is
+ *             NULL, then the column's non-null values in row order
+ * </pre>
+ *
+ * A column's encoding follows the Java values the driver returned, so that it is exact for
+ * every dialect: {@code INT64} zigzag varint, {@code FLOAT64} 8 bytes big-endian IEEE 754,
+ * {@code BOOLEAN} 1 byte, {@code STRING} string (decimals in plain notation and anything the
+ * other encodings cannot hold), {@code BYTES} varint length plus bytes, {@code DATE} zigzag
+ * varint days since 1970-01-01 and {@code TIMESTAMP} zigzag varint microseconds since
+ * 1970-01-01T00:00 (timestamps without a time zone are read as UTC).
+ */
+public final class ColumnarResultEncoder {
+
+    public static final String MEDIA_TYPE = "application/vnd.querypilot.columnar";
+
+    static final byte[] MAGIC = {'Q', 'P', 'C', '1'};
+
+    static final byte INT64 = 1;
+    static final byte FLOAT64 = 2;
+    static final byte BOOLEAN = 3;
+    static final byte STRING = 4;
+    static final byte BYTES = 5;
+    static final byte DATE = 6;
+    static final byte TIMESTAMP = 7;
+
+    private ColumnarResultEncoder() {
+    }
+
+    public static byte[] encode(QueryResponse response) {
+        ResultTable table = response.getResult() != null
+                ? response.getResult()
+                : new ResultTable(List.of(), List.of());
+        List<ResultTable.Column> columns = table.getColumns();
+        List<Object[]> rows = table.getRows();
+
+        Output out = new Output(64 + rows.size() * columns.size() * 4);
+        out.write(MAGIC, 0, MAGIC.length);
+        out.string(response.getSql());
+        out.string(response.getSafetyCheck());
+        out.string(response.getCursor());
+        out.string(response.getQueryId());
+        out.string(response.getWarning());
+
+        byte[] encodings = new byte[columns.size()];
+        out.varint(columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            encodings[c] = encodingOf(rows, c);
+            out.string(columns.get(c).name());
+            out.string(columns.get(c).type());
+            out.write(encodings[c]);
+        }
+
+        out.varint(rows.size());
+        for (int c = 0; c < columns.size(); c++) {
+            byte[] nulls = new byte[(rows.size() + 7) / 8];
+            for (int r = 0; r < rows.size(); r++) {
+                if (rows.get(r)[c] == null) {
+                    nulls[r / 8] |= (byte) (1 << (r % 8));
+                }
+            }
+            out.write(nulls, 0, nulls.length);
+            for (Object[] row : rows) {
+                if (row[c] != null) {
+                    out.value(encodings[c], row[c]);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte encodingOf(List<Object[]> rows, int column) {
+        byte encoding = 0;
+        for (Object[] row : rows) {
+            Object value = row[column];
+            if (value == null) {
+                continue;
+            }
+            byte valueEncoding = encodingOf(value);
+            if (encoding != 0 && encoding != valueEncoding) {
+                return STRING;
+            }
+            encoding = valueEncoding;
+        }
+        return encoding == 0 ? STRING : encoding;
+    }
+
+    private static byte encodingOf(Object value) {
+        return switch (value) {
+            case Long l -> INT64;
+            case Integer i -> INT64;
+            case Short s -> INT64;
+            case Byte b -> INT64;
+            case Double d -> FLOAT64;
+            case Float f -> FLOAT64;
+            case Boolean b -> BOOLEAN;
+            case byte[] bytes -> BYTES;
+            case java.sql.Date d -> DATE;
+            case LocalDate d -> DATE;
+            case java.sql.Timestamp t -> TIMESTAMP;
+            case LocalDateTime t -> TIMESTAMP;
+            case OffsetDateTime t -> TIMESTAMP;
+            case Instant t -> TIMESTAMP;
+            default -> STRING;
+        };
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output(int size) {
+            super(size);
+        }
+
+        void value(byte encoding, Object value) {
+            switch (encoding) {
+                case INT64 -> zigzag(((Number) value).longValue());
+                case FLOAT64 -> {
+                    long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        write((int) (bits >>> shift));
+                    }
+                }
+                case BOOLEAN -> write((Boolean) value ? 1 : 0);
+                case BYTES -> {
+                    byte[] bytes = (byte[]) value;
+                    varint(bytes.length);
+                    write(bytes, 0, bytes.length);
+                }
+                case DATE -> zigzag((value instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) value)
+                        .toEpochDay());
+                case TIMESTAMP -> zigzag(ChronoUnit.MICROS.between(Instant.EPOCH, instant(value)));
+                default -> string(value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString());
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        void zigzag(long value) {
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private static Instant instant(Object value) {
+            return switch (value) {
+                case java.sql.Timestamp t -> t.toLocalDateTime().toInstant(ZoneOffset.UTC);
+                case LocalDateTime t -> t.toInstant(ZoneOffset.UTC);
+                case OffsetDateTime t -> t.toInstant();
+                default -> (Instant) value;
+            };
+        }
+    }
+}
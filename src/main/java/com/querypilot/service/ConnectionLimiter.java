@@ -0,0 +1,136 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.ConnectionBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many queries run against each target connection at once. Every connection gets
+ * a fair semaphore with as many permits as its pool has connections, so excess requests wait
+ * here on their (virtual) thread instead of piling up inside Hikari, and give up with
+ * {@link ConnectionBusyException} once the acquire timeout passes.
+ *
+ * DynamicConnectionFactory sizes the semaphore whenever it creates or resizes a pool; until
+ * then a connection gets {@link PoolSettings#DEFAULT_MAX_SIZE} permits.
+ */
+@Service
+public class ConnectionLimiter {
+
+    private final long acquireTimeoutMs;
+    private final ConcurrentHashMap<Long, Permits> permits = new ConcurrentHashMap<>();
+
+    public ConnectionLimiter(@Value("${app.query.concurrency.acquire-timeout-ms:10000}") long acquireTimeoutMs) {
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * Runs the work while holding one of the connection's permits.
+     */
+    public <T> T call(Long connectionId, Supplier<T> work) {
+        Permits semaphore = permits.computeIfAbsent(connectionId, id -> new Permits(PoolSettings.DEFAULT_MAX_SIZE));
+        long start = System.nanoTime();
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new ConnectionBusyException(
+                        "Connection " + connectionId + " is busy. Please try again shortly.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionBusyException("Interrupted while waiting for connection " + connectionId, e);
+        }
+        semaphore.recordWait(System.nanoTime() - start);
+        try {
+            return work.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    public void run(Long connectionId, Runnable work) {
+        call(connectionId, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Sets how many queries may run against the connection at once. Shrinking takes effect
+     * as running queries release their permits.
+     */
+    public void resize(Long connectionId, int maxConcurrent) {
+        permits.compute(connectionId, (id, existing) -> {
+            if (existing == null) {
+                return new Permits(maxConcurrent);
+            }
+            existing.resize(maxConcurrent);
+            return existing;
+        });
+    }
+
+    /**
+     * Forgets the connection's semaphore. Queries already holding a permit release it on the
+     * old semaphore.
+     */
+    public void invalidate(Long connectionId) {
+        permits.remove(connectionId);
+    }
+
+    /**
+     * Returns how long queries waited for a permit since the previous call, and how many are
+     * waiting right now.
+     */
+    public WaitStats drainWaitStats(Long connectionId) {
+        Permits semaphore = permits.get(connectionId);
+        if (semaphore == null) {
+            return new WaitStats(0, 0);
+        }
+        long acquisitions = semaphore.acquisitions.sumThenReset();
+        long waitNanos = semaphore.waitNanos.sumThenReset();
+        double meanWaitMs = acquisitions == 0 ? 0 : waitNanos / 1_000_000.0 / acquisitions;
+        return new WaitStats(meanWaitMs, semaphore.getQueueLength());
+    }
+
+    int availablePermits(Long connectionId) {
+        Permits semaphore = permits.get(connectionId);
+        return semaphore == null ? -1 : semaphore.availablePermits();
+    }
+
+    public record WaitStats(double meanWaitMs, int waiting) {
+    }
+
+    /**
+     * Fair semaphore whose permit count can be changed while permits are held.
+     */
+    private static final class Permits extends Semaphore {
+
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder acquisitions = new LongAdder();
+        private int limit;
+
+        Permits(int limit) {
+            super(limit, true);
+            this.limit = limit;
+        }
+
+        void recordWait(long nanos) {
+            waitNanos.add(nanos);
+            acquisitions.increment();
+        }
+
+        synchronized void resize(int newLimit) {
+            int delta = newLimit - limit;
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+            limit = newLimit;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.querypilot.service;
 
 import com.querypilot.model.dto.ConnectionRequest;
+import com.querypilot.model.dto.ConnectionSummary;
+import com.querypilot.model.dto.CostLimitsRequest;
+import com.querypilot.model.dto.PoolSettingsRequest;
+import com.querypilot.model.dto.TableSummary;
 import com.querypilot.model.entity.DataSourceConfig;
-import com.querypilot.model.enums.DatabaseType;
 import com.querypilot.repository.DataSourceConfigRepository;
 import com.querypilot.repository.PermissionRepository;
 import org.springframework.dao.DataAccessException;
@@ -13,6 +16,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ConnectionManagerService {
@@ -21,43 +25,66 @@ public class ConnectionManagerService {
 
     private final DataSourceConfigRepository configRepository;
     private final PermissionRepository permissionRepository;
+    private final SchemaStore schemaStore;
     private final EncryptionService encryptionService;
     private final SchemaExtractorService schemaExtractorService;
     private final DynamicConnectionFactory connectionFactory;
+    private final SqlGenerationCache sqlGenerationCache;
+    private final SchemaSelector schemaSelector;
+    private final QueryResultCache queryResultCache;
+    private final PermissionService permissionService;
+    private final PoolWarmer poolWarmer;
+    private final SchemaRefreshService schemaRefreshService;
 
     public ConnectionManagerService(DataSourceConfigRepository configRepository,
                                     PermissionRepository permissionRepository,
+                                    SchemaStore schemaStore,
                                     EncryptionService encryptionService,
                                     SchemaExtractorService schemaExtractorService,
-                                    DynamicConnectionFactory connectionFactory) {
+                                    DynamicConnectionFactory connectionFactory,
+                                    SqlGenerationCache sqlGenerationCache,
+                                    SchemaSelector schemaSelector,
+                                    QueryResultCache queryResultCache,
+                                    PermissionService permissionService,
+                                    PoolWarmer poolWarmer,
+                                    SchemaRefreshService schemaRefreshService) {
         this.configRepository = configRepository;
         this.permissionRepository = permissionRepository;
+        this.schemaStore = schemaStore;
         this.encryptionService = encryptionService;
         this.schemaExtractorService = schemaExtractorService;
         this.connectionFactory = connectionFactory;
+        this.sqlGenerationCache = sqlGenerationCache;
+        this.schemaSelector = schemaSelector;
+        this.queryResultCache = queryResultCache;
+        this.permissionService = permissionService;
+        this.poolWarmer = poolWarmer;
+        this.schemaRefreshService = schemaRefreshService;
     }
 
     /**
      * Add a new database connection: test it, extract schema, encrypt password, save.
+     * The test and the schema extraction share one temporary connection that is closed afterwards.
      */
     public DataSourceConfig addConnection(ConnectionRequest request) {
         log.info("Adding new connection: {} ({})", request.getName(), request.getType());
 
-        // Test connectivity first
-        testConnection(request.getUrl(), request.getUsername(), request.getPassword(), request.getType());
-
-        // Extract schema DDL
-        JdbcTemplate tempJdbc = connectionFactory.createTempJdbcTemplate(
-                request.getUrl(), request.getUsername(), request.getPassword(), request.getType());
-        String schemaDdl = schemaExtractorService.extractSchema(tempJdbc, request.getType(), request.getUrl());
+        SchemaExtractorService.SchemaChanges schema = connectionFactory.withTempJdbcTemplate(
+                request.getUrl(), request.getUsername(), request.getPassword(), request.getType(), tempJdbc -> {
+                    // Test connectivity first
+                    testConnection(tempJdbc, request.getUrl());
+                    // Extract all tables (sequentially, the template has a single connection)
+                    return schemaExtractorService.extractChanges(tempJdbc, request.getType(), request.getUrl(), Map.of(), 1);
+                });
 
         // Encrypt password and save
         String encryptedPassword = encryptionService.encrypt(request.getPassword());
 
         DataSourceConfig config = new DataSourceConfig(null, request.getName(), request.getType(),
-                request.getUrl(), request.getUsername(), encryptedPassword, schemaDdl);
+                request.getUrl(), request.getUsername(), encryptedPassword);
+        config.setResultCacheTtlSeconds(request.getResultCacheTtlSeconds());
 
-        config = configRepository.save(config);
+        config = schemaRefreshService.saveWithSchema(config, schema);
         log.info("Connection saved with ID: {}", config.getId());
         return config;
     }
@@ -66,6 +93,26 @@ public class ConnectionManagerService {
         return configRepository.findAll();
     }
 
+    /**
+     * Summaries of the given connections, with their stored table counts.
+     */
+    public List<ConnectionSummary> summarize(List<DataSourceConfig> configs) {
+        Map<Long, Long> tableCounts = schemaStore.tableCounts();
+        return configs.stream()
+                .map(config -> ConnectionSummary.of(config, tableCounts.getOrDefault(config.getId(), 0L)))
+                .toList();
+    }
+
+    /**
+     * Tables and columns of the connection's stored schema.
+     */
+    public List<TableSummary> listTables(Long id) {
+        if (!configRepository.existsById(id)) {
+            throw new RuntimeException("Connection not found: " + id);
+        }
+        return schemaStore.listTables(id);
+    }
+
     public DataSourceConfig getConnection(Long id) {
         return configRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Connection not found: " + id));
@@ -76,29 +123,91 @@ public class ConnectionManagerService {
         if (!configRepository.existsById(id)) {
             throw new RuntimeException("Connection not found: " + id);
         }
-        // Evict from dynamic pool
+        // Evict from dynamic pool and drop cached SQL, results and schema index
         connectionFactory.evict(id);
+        sqlGenerationCache.invalidateConnection(id);
+        queryResultCache.invalidateConnection(id);
+        schemaSelector.invalidate(id);
+        schemaStore.delete(id);
         // Remove related permissions
         permissionRepository.deleteByConnectionId(id);
+        permissionService.invalidateAll();
         // Remove config
         configRepository.deleteById(id);
         log.info("Connection deleted: {}", id);
     }
 
     /**
-     * Refresh the cached schema DDL for a connection.
+     * Refresh the cached schema DDL for a connection, re-reading only changed tables unless a
+     * full refresh is requested. SQL generated against the previous schema is invalidated when
+     * the DDL changed.
+     */
+    public DataSourceConfig refreshSchema(Long id, boolean full) {
+        return schemaRefreshService.refresh(id, full);
+    }
+
+    /**
+     * Set how long query results of a connection are cached; null or 0 disables the cache.
      */
-    public DataSourceConfig refreshSchema(Long id) {
+    public DataSourceConfig updateResultCacheTtl(Long id, Integer ttlSeconds) {
         DataSourceConfig config = getConnection(id);
-        JdbcTemplate jdbcTemplate = connectionFactory.getJdbcTemplate(id);
-        String schemaDdl = schemaExtractorService.extractSchema(jdbcTemplate, config.getType(), config.getUrl());
-        config.setSchemaDdl(schemaDdl);
-        return configRepository.save(config);
+        config.setResultCacheTtlSeconds(ttlSeconds);
+        config = configRepository.save(config);
+        // Entries cached under the old TTL are dropped so the new setting applies immediately
+        queryResultCache.invalidateConnection(id);
+        return config;
+    }
+
+    /**
+     * Update the pool settings of a connection. The open pool, if any, takes them without being
+     * closed, so running queries are not affected; a warm-up pool is opened right away.
+     */
+    public DataSourceConfig updatePoolSettings(Long id, PoolSettingsRequest request) {
+        DataSourceConfig config = getConnection(id);
+        config.setPoolMaxSize(request.getMaxSize());
+        config.setPoolMinIdle(request.getMinIdle());
+        config.setConnectionTimeoutMs(request.getConnectionTimeoutMs());
+        config.setQueryTimeoutSeconds(request.getQueryTimeoutSeconds());
+        config.setFetchSize(request.getFetchSize());
+        config.setLeakDetectionThresholdMs(request.getLeakDetectionThresholdMs());
+        config.setPoolAdaptive(request.getAdaptive());
+        config.setPoolWarmUp(request.getWarmUp());
+        config = configRepository.save(config);
+        connectionFactory.reconfigure(id, PoolSettings.of(config));
+        if (Boolean.TRUE.equals(config.getPoolWarmUp())) {
+            poolWarmer.warmUpAsync(id);
+        }
+        log.info("Pool settings updated for connection {}: {}", id, PoolSettings.of(config));
+        return config;
+    }
+
+    /**
+     * Set the limits on the estimated cost of generated SQL for a connection and whether
+     * queries above them are rejected or only flagged; null limits are not checked.
+     */
+    public DataSourceConfig updateCostLimits(Long id, CostLimitsRequest request) {
+        DataSourceConfig config = getConnection(id);
+        config.setMaxEstimatedRows(request.getMaxEstimatedRows());
+        config.setMaxEstimatedCost(request.getMaxEstimatedCost());
+        config.setCostGateAction(request.getAction());
+        config = configRepository.save(config);
+        log.info("Cost limits updated for connection {}: rows {}, cost {}, action {}", id,
+                config.getMaxEstimatedRows(), config.getMaxEstimatedCost(), config.getCostGateAction());
+        return config;
+    }
+
+    /**
+     * Drop all cached query results of a connection.
+     */
+    public void flushResultCache(Long id) {
+        if (!configRepository.existsById(id)) {
+            throw new RuntimeException("Connection not found: " + id);
+        }
+        queryResultCache.invalidateConnection(id);
     }
 
-    private void testConnection(String url, String username, String password, DatabaseType type) {
+    private void testConnection(JdbcTemplate tempJdbc, String url) {
         try {
-            JdbcTemplate tempJdbc = connectionFactory.createTempJdbcTemplate(url, username, password, type);
             tempJdbc.queryForObject("SELECT 1", Integer.class);
             log.info("Connection test successful for: {}", url);
         } catch (DataAccessException e) {
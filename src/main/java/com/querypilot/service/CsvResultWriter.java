@@ -0,0 +1,105 @@
+package com.querypilot.service;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * Writes a ResultSet as RFC 4180 CSV in UTF-8: a header line with the column labels, then one
+ * line per row, each ending in CRLF. Fields holding a comma, quote or line break are quoted,
+ * with quotes doubled; NULL is an empty field and an empty string is {@code ""}. Values are
+ * extracted like JdbcTemplate.queryForList does, decimals are written in plain notation and
+ * binary values in Base64. Returns the number of rows written.
+ */
+public class CsvResultWriter implements ResultSetExtractor<Long> {
+
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final Writer writer;
+
+    public CsvResultWriter(OutputStream outputStream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_CHARS);
+    }
+
+    @Override
+    public Long extractData(ResultSet rs) throws SQLException {
+        long rowCount = 0;
+        try {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            for (int i = 1; i <= columnCount; i++) {
+                writeField(i, JdbcUtils.lookupColumnName(metaData, i));
+            }
+            writer.write("\r\n");
+
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    writeField(i, format(JdbcUtils.getResultSetValue(rs, i)));
+                }
+                writer.write("\r\n");
+                rowCount++;
+            }
+            writer.flush();
+            return rowCount;
+        } catch (IOException e) {
+            // Client went away: abort the JDBC iteration instead of reading the rest of the result
+            throw new UncheckedIOException("Failed to write row " + rowCount, e);
+        }
+    }
+
+    private void writeField(int column, String value) throws IOException {
+        if (column > 1) {
+            writer.write(',');
+        }
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String format(Object value) {
+        return switch (value) {
+            case null -> null;
+            case BigDecimal decimal -> decimal.toPlainString();
+            case byte[] bytes -> Base64.getEncoder().encodeToString(bytes);
+            default -> value.toString();
+        };
+    }
+}
@@ -4,83 +4,405 @@ import com.querypilot.model.entity.DataSourceConfig;
 import com.querypilot.model.enums.DatabaseType;
 import com.querypilot.repository.DataSourceConfigRepository;
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariConfigMXBean;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Creates and caches one Hikari pool per target connection.
+ *
+ * Pools are created outside the map's locks: the first caller publishes a future and builds
+ * the pool, concurrent callers for the same connection wait on that future, and other
+ * connections are never blocked. Pools nobody has used for the idle timeout are closed by a
+ * periodic sweep, and when more than the configured number of pools are open the least
+ * recently used idle ones are closed. Pools marked for warm-up are never closed this way, and
+ * neither are pools leased through {@link #withJdbcTemplate}: a lease is taken before a query
+ * waits for its connection permit, and a pool is only closed after atomically checking that
+ * it has none. A closed pool is recreated on its next query.
+ */
 @Service
 public class DynamicConnectionFactory {
 
     private static final Logger log = LoggerFactory.getLogger(DynamicConnectionFactory.class);
 
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
     private final DataSourceConfigRepository configRepository;
     private final EncryptionService encryptionService;
-    private final ConcurrentHashMap<Long, JdbcTemplate> cache = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final ConnectionLimiter connectionLimiter;
+    private final int maxOpenPools;
+    private final long idleTimeoutNanos;
+    private final ConcurrentHashMap<Long, CompletableFuture<Pool>> cache = new ConcurrentHashMap<>();
 
     public DynamicConnectionFactory(DataSourceConfigRepository configRepository,
-                                    EncryptionService encryptionService) {
+                                    EncryptionService encryptionService,
+                                    MeterRegistry meterRegistry,
+                                    ConnectionLimiter connectionLimiter,
+                                    @Value("${app.pool.max-open:50}") int maxOpenPools,
+                                    @Value("${app.pool.idle-timeout-minutes:30}") long idleTimeoutMinutes) {
         this.configRepository = configRepository;
         this.encryptionService = encryptionService;
+        this.meterRegistry = meterRegistry;
+        this.connectionLimiter = connectionLimiter;
+        this.maxOpenPools = maxOpenPools;
+        this.idleTimeoutNanos = TimeUnit.MINUTES.toNanos(idleTimeoutMinutes);
+        meterRegistry.gaugeMapSize("qp.pools.open", Tags.empty(), cache);
     }
 
     /**
      * Returns a JdbcTemplate for the given connection ID, creating one if not cached.
+     * The template carries the connection's query timeout and fetch size.
      */
     public JdbcTemplate getJdbcTemplate(Long connectionId) {
-        return cache.computeIfAbsent(connectionId, this::createJdbcTemplate);
+        Pool pool = await(poolFuture(connectionId));
+        pool.touch();
+        return pool.jdbcTemplate();
+    }
+
+    /**
+     * Runs work with the connection's JdbcTemplate, creating the pool if needed. The pool is
+     * leased until the work returns, so it is not closed for being idle or over the open pool
+     * cap while the work waits for a connection permit or uses it.
+     */
+    public <T> T withJdbcTemplate(Long connectionId, Function<JdbcTemplate, T> work) {
+        Pool pool = lease(connectionId);
+        try {
+            return work.apply(pool.jdbcTemplate());
+        } finally {
+            pool.release();
+        }
+    }
+
+    private Pool lease(Long connectionId) {
+        while (true) {
+            CompletableFuture<Pool> future = poolFuture(connectionId);
+            Pool pool = await(future);
+            if (pool.tryLease()) {
+                pool.touch();
+                return pool;
+            }
+            // Just chosen for eviction; the evicting thread removes it in a moment, then open a new one
+            while (cache.get(connectionId) == future) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private CompletableFuture<Pool> poolFuture(Long connectionId) {
+        CompletableFuture<Pool> future = cache.get(connectionId);
+        if (future == null) {
+            CompletableFuture<Pool> created = new CompletableFuture<>();
+            future = cache.putIfAbsent(connectionId, created);
+            if (future == null) {
+                future = created;
+                try {
+                    created.complete(createPool(connectionId));
+                } catch (RuntimeException | Error e) {
+                    // Failures are not cached; the next call tries again
+                    cache.remove(connectionId, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+                enforceMaxOpenPools(connectionId);
+            }
+        }
+        return future;
     }
 
     /**
-     * Creates a temporary JdbcTemplate for testing a connection (not cached).
+     * Runs work against a single short-lived connection to a database that has no pool yet
+     * (e.g. one being added). Everything the work does shares that one connection, which is
+     * closed when the work returns or fails.
      */
-    public JdbcTemplate createTempJdbcTemplate(String url, String username, String password, DatabaseType type) {
-        DataSource ds = createDataSource(url, username, password, type, "temp-test");
-        return new JdbcTemplate(ds);
+    public <T> T withTempJdbcTemplate(String url, String username, String password, DatabaseType type,
+                                      Function<JdbcTemplate, T> work) {
+        SingleConnectionDataSource ds = new SingleConnectionDataSource(url, username, password, true);
+        ds.setDriverClassName(getDriverClass(type));
+        try {
+            return work.apply(new JdbcTemplate(ds));
+        } finally {
+            ds.destroy();
+        }
+    }
+
+    /**
+     * Opens the connection's pool if needed and fills it with validated connections, as many
+     * as its minimum idle (at least one), so the first query does not pay for connecting.
+     * Returns the number of connections primed.
+     */
+    public int prime(Long connectionId) {
+        getJdbcTemplate(connectionId);
+        Pool pool = openPools().get(connectionId);
+        if (pool == null) {
+            return 0;
+        }
+        int count = Math.min(pool.settings().initialSize(), Math.max(1, pool.settings().minIdle()));
+        List<Connection> borrowed = new ArrayList<>(count);
+        try {
+            // Holding them all at once forces the pool to open that many distinct connections
+            for (int i = 0; i < count; i++) {
+                Connection connection = pool.dataSource().getConnection();
+                borrowed.add(connection);
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    throw new RuntimeException("Connection " + connectionId + " returned an invalid connection");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to prime pool for connection " + connectionId + ": " + e.getMessage(), e);
+        } finally {
+            for (Connection connection : borrowed) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("Could not return primed connection: {}", e.getMessage());
+                }
+            }
+        }
+        return count;
     }
 
     /**
      * Evicts a connection from the cache and closes its DataSource.
+     * The next query recreates the pool with the connection's current settings.
      */
     public void evict(Long connectionId) {
-        JdbcTemplate removed = cache.remove(connectionId);
+        CompletableFuture<Pool> removed = cache.remove(connectionId);
+        connectionLimiter.invalidate(connectionId);
         if (removed != null) {
-            DataSource ds = removed.getDataSource();
-            if (ds instanceof HikariDataSource hikariDs) {
-                hikariDs.close();
+            // A pool still being created is closed as soon as it is ready
+            removed.thenAccept(pool -> {
+                pool.dataSource().close();
                 log.info("Closed and evicted DataSource for connection ID: {}", connectionId);
+            });
+        }
+    }
+
+    /**
+     * Applies new settings to the connection's open pool without closing it. Size, minimum
+     * idle, connection timeout and leak detection change on the live Hikari pool, the
+     * concurrency limit follows the new size, and the query timeout and fetch size apply to
+     * queries started after this through a new JdbcTemplate. A pool still being created gets
+     * the settings once it is ready; without a pool there is nothing to do.
+     */
+    public void reconfigure(Long connectionId, PoolSettings settings) {
+        CompletableFuture<Pool> future = cache.get(connectionId);
+        if (future != null) {
+            future.thenAccept(pool -> {
+                HikariConfigMXBean mxBean = pool.dataSource().getHikariConfigMXBean();
+                mxBean.setMaximumPoolSize(settings.initialSize());
+                mxBean.setMinimumIdle(settings.minIdle());
+                mxBean.setConnectionTimeout(settings.connectionTimeoutMs());
+                mxBean.setLeakDetectionThreshold(settings.leakDetectionThresholdMs());
+                connectionLimiter.resize(connectionId, settings.initialSize());
+                pool.update(createJdbcTemplate(pool.dataSource(), settings), settings);
+                log.info("Reconfigured DataSource for connection {} with {}", connectionId, settings);
+            });
+        }
+    }
+
+    /**
+     * Closes pools that have not been used for the idle timeout and have no connection in use.
+     */
+    @Scheduled(fixedDelayString = "${app.pool.sweep-interval-ms:60000}")
+    public void evictIdlePools() {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        openPools().forEach((connectionId, pool) -> {
+            if (now - pool.lastUsedNanos() > idleTimeoutNanos && pool.isEvictable()) {
+                log.info("Connection {} idle for over {} min", connectionId,
+                        TimeUnit.NANOSECONDS.toMinutes(idleTimeoutNanos));
+                evict(connectionId, pool);
             }
+        });
+    }
+
+    /**
+     * Runs work with the JdbcTemplate of the connection's pool if it is open, leased like
+     * {@link #withJdbcTemplate} but without opening the pool or counting as a use, so background
+     * work does not keep idle pools alive. Returns false if the pool was not open.
+     */
+    boolean withOpenJdbcTemplate(Long connectionId, Consumer<JdbcTemplate> work) {
+        Pool pool = openPools().get(connectionId);
+        if (pool == null || !pool.tryLease()) {
+            return false;
         }
+        try {
+            work.accept(pool.jdbcTemplate());
+            return true;
+        } finally {
+            pool.release();
+        }
+    }
+
+    /**
+     * IDs of the connections whose pool is open.
+     */
+    Set<Long> openConnectionIds() {
+        return openPools().keySet();
+    }
+
+    int openPoolCount() {
+        return cache.size();
+    }
+
+    /**
+     * Usage of every open pool in adaptive mode, for AdaptivePoolSizer.
+     */
+    List<PoolUsage> adaptivePools() {
+        List<PoolUsage> usages = new ArrayList<>();
+        openPools().forEach((connectionId, pool) -> {
+            HikariPoolMXBean mxBean = pool.dataSource().getHikariPoolMXBean();
+            if (pool.settings().adaptive() && mxBean != null) {
+                usages.add(new PoolUsage(connectionId, pool.settings(),
+                        pool.dataSource().getHikariConfigMXBean().getMaximumPoolSize(),
+                        mxBean.getActiveConnections()));
+            }
+        });
+        return usages;
     }
 
-    private JdbcTemplate createJdbcTemplate(Long connectionId) {
+    /**
+     * Changes the maximum size of an open pool and the connection's concurrency limit with it.
+     */
+    void resize(Long connectionId, int maxSize) {
+        Pool pool = openPools().get(connectionId);
+        if (pool == null) {
+            return;
+        }
+        pool.dataSource().getHikariConfigMXBean().setMaximumPoolSize(maxSize);
+        connectionLimiter.resize(connectionId, maxSize);
+    }
+
+    /**
+     * Closes least recently used idle pools until at most maxOpenPools are open. The pool that
+     * was just created is never chosen, and neither is a warm-up pool or one that is leased or
+     * has a connection in use.
+     */
+    private void enforceMaxOpenPools(Long justCreated) {
+        int excess = cache.size() - maxOpenPools;
+        if (excess <= 0) {
+            return;
+        }
+        openPools().entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(justCreated) && entry.getValue().isEvictable())
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastUsedNanos()))
+                .limit(excess)
+                .forEach(entry -> {
+                    log.info("More than {} pools open, closing least recently used", maxOpenPools);
+                    evict(entry.getKey(), entry.getValue());
+                });
+    }
+
+    /**
+     * Evicts the pool only if it is still the one cached for the connection and nobody leases
+     * it. Once closed for leasing, no query can hold one of the connection's permits, so its
+     * semaphore can be dropped before the pool leaves the cache and a new one is created.
+     */
+    private void evict(Long connectionId, Pool pool) {
+        CompletableFuture<Pool> current = cache.get(connectionId);
+        if (current != null && current.getNow(null) == pool && pool.tryClose()) {
+            connectionLimiter.invalidate(connectionId);
+            cache.remove(connectionId, current);
+            pool.dataSource().close();
+            log.info("Closed and evicted DataSource for connection ID: {}", connectionId);
+        }
+    }
+
+    /**
+     * Pools that finished creation successfully, by connection ID.
+     */
+    private Map<Long, Pool> openPools() {
+        Map<Long, Pool> open = new HashMap<>();
+        cache.forEach((connectionId, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                open.put(connectionId, future.join());
+            }
+        });
+        return open;
+    }
+
+    private Pool await(CompletableFuture<Pool> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private Pool createPool(Long connectionId) {
         DataSourceConfig config = configRepository.findById(connectionId)
                 .orElseThrow(() -> new RuntimeException("Connection config not found: " + connectionId));
 
         String decryptedPassword = encryptionService.decrypt(config.getEncryptedPassword());
         String poolName = "qp-pool-" + connectionId;
+        PoolSettings settings = PoolSettings.of(config);
 
-        DataSource ds = createDataSource(config.getUrl(), config.getUsername(), decryptedPassword,
-                config.getType(), poolName);
+        HikariDataSource ds = createDataSource(config.getUrl(), config.getUsername(), decryptedPassword,
+                config.getType(), poolName, settings);
+        // Publishes the hikaricp.* gauges and timers tagged pool=qp-pool-<id>; removed again on close
+        ds.setMetricRegistry(meterRegistry);
+        connectionLimiter.resize(connectionId, settings.initialSize());
 
-        log.info("Created dynamic DataSource for connection: {} ({})", config.getName(), connectionId);
-        return new JdbcTemplate(ds);
+        log.info("Created dynamic DataSource for connection: {} ({}) with {}", config.getName(), connectionId, settings);
+        return new Pool(createJdbcTemplate(ds, settings), ds, settings);
     }
 
-    private DataSource createDataSource(String url, String username, String password,
-                                        DatabaseType type, String poolName) {
+    private JdbcTemplate createJdbcTemplate(HikariDataSource ds, PoolSettings settings) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(ds);
+        if (settings.queryTimeoutSeconds() > 0) {
+            jdbcTemplate.setQueryTimeout(settings.queryTimeoutSeconds());
+        }
+        if (settings.fetchSize() > 0) {
+            jdbcTemplate.setFetchSize(settings.fetchSize());
+        }
+        return jdbcTemplate;
+    }
+
+    private HikariDataSource createDataSource(String url, String username, String password,
+                                              DatabaseType type, String poolName, PoolSettings settings) {
         HikariConfig hikariConfig = new HikariConfig();
         hikariConfig.setJdbcUrl(url);
         hikariConfig.setUsername(username);
         hikariConfig.setPassword(password);
         hikariConfig.setPoolName(poolName);
-        hikariConfig.setMaximumPoolSize(5);
-        hikariConfig.setMinimumIdle(1);
-        hikariConfig.setConnectionTimeout(10000);
+        hikariConfig.setMaximumPoolSize(settings.initialSize());
+        hikariConfig.setMinimumIdle(settings.minIdle());
+        hikariConfig.setConnectionTimeout(settings.connectionTimeoutMs());
+        hikariConfig.setLeakDetectionThreshold(settings.leakDetectionThresholdMs());
         hikariConfig.setDriverClassName(getDriverClass(type));
 
         return new HikariDataSource(hikariConfig);
@@ -93,4 +415,67 @@ public class DynamicConnectionFactory {
             case H2 -> "org.h2.Driver";
         };
     }
+
+    record PoolUsage(Long connectionId, PoolSettings settings, int currentSize, int activeConnections) {
+    }
+
+    private static final class Pool {
+
+        private static final int CLOSED = -1;
+
+        private final HikariDataSource dataSource;
+        private volatile JdbcTemplate jdbcTemplate;
+        private volatile PoolSettings settings;
+        private volatile long lastUsedNanos = System.nanoTime();
+        // Work holding or about to use the pool, or CLOSED once it was chosen for eviction
+        private final AtomicInteger leases = new AtomicInteger();
+
+        Pool(JdbcTemplate jdbcTemplate, HikariDataSource dataSource, PoolSettings settings) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.dataSource = dataSource;
+            this.settings = settings;
+        }
+
+        JdbcTemplate jdbcTemplate() { return jdbcTemplate; }
+        HikariDataSource dataSource() { return dataSource; }
+        PoolSettings settings() { return settings; }
+        long lastUsedNanos() { return lastUsedNanos; }
+
+        void update(JdbcTemplate jdbcTemplate, PoolSettings settings) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.settings = settings;
+        }
+
+        void touch() {
+            lastUsedNanos = System.nanoTime();
+        }
+
+        boolean tryLease() {
+            int current;
+            do {
+                current = leases.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+            } while (!leases.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            leases.decrementAndGet();
+        }
+
+        /**
+         * Claims the pool for eviction if nobody leases it; it can never be leased again.
+         */
+        boolean tryClose() {
+            return leases.compareAndSet(0, CLOSED);
+        }
+
+        boolean isEvictable() {
+            HikariPoolMXBean mxBean = dataSource.getHikariPoolMXBean();
+            return !settings.warmUp() && leases.get() == 0
+                    && (mxBean == null || mxBean.getActiveConnections() == 0);
+        }
+    }
 }
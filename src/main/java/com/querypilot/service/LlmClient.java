@@ -0,0 +1,338 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.LlmUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Signal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * DeepSeek chat client with bounded latency and load.
+ *
+ * Every call holds one of a fixed number of permits, so a provider slowdown cannot tie up an
+ * unbounded number of threads; callers wait at most the acquire timeout for one. Each attempt
+ * runs on the query executor with its own timeout, and closing its stream on timeout cancels
+ * the HTTP exchange. Transient failures (timeouts, I/O errors, 429 and 5xx responses) are
+ * retried with exponential backoff and jitter while the overall deadline allows. With hedging
+ * enabled, an attempt that is still running after the p95 latency of recent calls gets a
+ * second, identical request, and whichever answers first wins.
+ *
+ * A circuit breaker counts consecutive transient failures; once open, calls fail fast with
+ * {@link LlmUnavailableException} until a trial request succeeds again.
+ */
+@Service
+public class LlmClient {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmClient.class);
+
+    private final ChatClient chatClient;
+    private final Executor executor;
+    private final Policy policy;
+    private final Semaphore permits;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow(128);
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter timeouts;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public LlmClient(ChatClient.Builder chatClientBuilder,
+                     @Qualifier("queryExecutor") Executor executor,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.llm.timeout-ms:30000}") long timeoutMs,
+                     @Value("${app.llm.deadline-ms:60000}") long deadlineMs,
+                     @Value("${app.llm.retry.max-attempts:3}") int maxAttempts,
+                     @Value("${app.llm.retry.initial-backoff-ms:200}") long initialBackoffMs,
+                     @Value("${app.llm.retry.max-backoff-ms:2000}") long maxBackoffMs,
+                     @Value("${app.llm.hedge.enabled:false}") boolean hedgeEnabled,
+                     @Value("${app.llm.hedge.min-delay-ms:1000}") long hedgeMinDelayMs,
+                     @Value("${app.llm.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                     @Value("${app.llm.circuit-breaker.open-ms:30000}") long openMs,
+                     @Value("${app.llm.concurrency.max-concurrent:16}") int maxConcurrent,
+                     @Value("${app.llm.concurrency.acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+        this(chatClientBuilder, executor, meterRegistry, new Policy(timeoutMs, deadlineMs, maxAttempts,
+                initialBackoffMs, maxBackoffMs, hedgeEnabled, hedgeMinDelayMs, failureThreshold, openMs,
+                maxConcurrent, acquireTimeoutMs));
+    }
+
+    LlmClient(ChatClient.Builder chatClientBuilder, Executor executor, MeterRegistry meterRegistry, Policy policy) {
+        this.chatClient = chatClientBuilder.build();
+        this.executor = executor;
+        this.policy = policy;
+        this.permits = new Semaphore(policy.maxConcurrent(), true);
+        this.circuitBreaker = new CircuitBreaker(policy.failureThreshold(),
+                TimeUnit.MILLISECONDS.toNanos(policy.openMs()), System::nanoTime);
+        this.meterRegistry = meterRegistry;
+        this.retries = Counter.builder("qp.llm.retries")
+                .description("DeepSeek attempts retried after a transient failure")
+                .register(meterRegistry);
+        this.hedges = Counter.builder("qp.llm.hedges")
+                .description("Hedged DeepSeek requests sent after the p95 latency passed")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("qp.llm.timeouts")
+                .description("DeepSeek attempts abandoned at their timeout")
+                .register(meterRegistry);
+        Gauge.builder("qp.llm.circuit.open", circuitBreaker, breaker -> breaker.getState() == CircuitBreaker.State.OPEN ? 1 : 0)
+                .description("1 while the DeepSeek circuit breaker rejects calls")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Streams the completion of the prompt into the reader. The reader may stop early; closing
+     * the stream cancels the rest of the completion. On retries and hedged requests the reader
+     * is called again with a fresh stream, possibly concurrently with an earlier call.
+     *
+     * Errors are delivered in order, after the chunks that arrived before them. Flux.toStream
+     * alone throws an error as soon as it is signalled, so a failure after the part of the
+     * completion the reader needs would still fail the call.
+     */
+    public <T> T stream(Prompt prompt, Function<Stream<String>, T> reader) {
+        return execute(() -> {
+            try (Stream<String> chunks = chatClient.prompt(prompt).stream().content().materialize().toStream()
+                    .takeWhile(signal -> !signal.isOnComplete())
+                    .map(LlmClient::chunk)) {
+                return reader.apply(chunks);
+            }
+        });
+    }
+
+    private static String chunk(Signal<String> signal) {
+        if (signal.isOnError()) {
+            throw Exceptions.propagate(signal.getThrowable());
+        }
+        return signal.get();
+    }
+
+    /**
+     * Runs the attempt under the concurrency limit, circuit breaker, timeouts, retries and
+     * hedging.
+     */
+    <T> T execute(Callable<T> attempt) {
+        acquirePermit();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.deadlineMs());
+            for (int number = 1; ; number++) {
+                if (!circuitBreaker.allowRequest()) {
+                    reject("circuit-open");
+                    throw new LlmUnavailableException(
+                            "The AI service is temporarily unavailable. Please try again shortly.");
+                }
+                long start = System.nanoTime();
+                Exception failure;
+                try {
+                    long attemptDeadline = Math.min(deadline, start + TimeUnit.MILLISECONDS.toNanos(policy.timeoutMs()));
+                    T result = attemptWithHedge(attempt, start, attemptDeadline);
+                    circuitBreaker.onSuccess();
+                    latencies.record(System.nanoTime() - start);
+                    return result;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    circuitBreaker.onAbandoned();
+                    throw new LlmUnavailableException("Interrupted while waiting for the AI service", e);
+                } catch (Exception e) {
+                    failure = e;
+                }
+
+                if (!isTransient(failure)) {
+                    // The provider answered; a bad request says nothing about its health
+                    circuitBreaker.onSuccess();
+                    throw failure instanceof RuntimeException runtime ? runtime : new RuntimeException(failure);
+                }
+                circuitBreaker.onFailure();
+                long backoff = backoffNanos(number);
+                if (number >= policy.maxAttempts() || System.nanoTime() + backoff >= deadline) {
+                    throw new LlmUnavailableException("The AI service did not respond after " + number
+                            + " attempt(s): " + failure.getMessage(), failure);
+                }
+                log.warn("DeepSeek attempt {} failed, retrying: {}", number, failure.getMessage());
+                retries.increment();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new LlmUnavailableException("Interrupted while waiting for the AI service", e);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Runs one attempt, plus a hedged duplicate when it is still running after the hedge delay,
+     * and returns the first successful result. Whatever is still running afterwards is cancelled.
+     */
+    private <T> T attemptWithHedge(Callable<T> attempt, long start, long deadline) throws Exception {
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        List<Future<T>> running = new ArrayList<>(2);
+        running.add(completion.submit(attempt));
+        long hedgeDelay = hedgeDelayNanos();
+        boolean canHedge = hedgeDelay > 0;
+        long hedgeAt = start + hedgeDelay;
+        boolean hedgePermit = false;
+        Exception failure = null;
+        try {
+            int pending = 1;
+            while (pending > 0) {
+                long wakeAt = canHedge ? Math.min(deadline, hedgeAt) : deadline;
+                Future<T> done = completion.poll(wakeAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done != null) {
+                    pending--;
+                    try {
+                        return done.get();
+                    } catch (ExecutionException e) {
+                        failure = e.getCause() instanceof Exception cause ? cause : e;
+                    }
+                } else if (System.nanoTime() - deadline >= 0) {
+                    timeouts.increment();
+                    throw new TimeoutException("No response from the AI service within "
+                            + TimeUnit.NANOSECONDS.toMillis(deadline - start) + " ms");
+                } else if (canHedge) {
+                    canHedge = false;
+                    // Hedges only use spare capacity
+                    if (permits.tryAcquire()) {
+                        hedgePermit = true;
+                        hedges.increment();
+                        running.add(completion.submit(attempt));
+                        pending++;
+                    }
+                }
+            }
+            throw failure;
+        } finally {
+            running.forEach(future -> future.cancel(true));
+            if (hedgePermit) {
+                permits.release();
+            }
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(policy.acquireTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                reject("saturated");
+                throw new LlmUnavailableException("Too many questions in progress. Please try again shortly.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmUnavailableException("Interrupted while waiting for the AI service", e);
+        }
+    }
+
+    /**
+     * Delay after which a running attempt is hedged, or 0 when it should not be: hedging is
+     * off, or too few calls have completed to know the p95.
+     */
+    private long hedgeDelayNanos() {
+        if (!policy.hedgeEnabled()) {
+            return 0;
+        }
+        long p95 = latencies.percentile(0.95);
+        return p95 == 0 ? 0 : Math.max(p95, TimeUnit.MILLISECONDS.toNanos(policy.hedgeMinDelayMs()));
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the capped delay is fixed, the other
+     * half random, so retries of requests that failed together spread out.
+     */
+    private long backoffNanos(int attempt) {
+        long capped = Math.min(policy.maxBackoffMs(), policy.initialBackoffMs() << Math.min(attempt - 1, 20));
+        long half = TimeUnit.MILLISECONDS.toNanos(capped) / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof IOException
+                    || cause instanceof TransientAiException || cause instanceof WebClientRequestException) {
+                return true;
+            }
+            if (cause instanceof WebClientResponseException response) {
+                return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+            }
+        }
+        return false;
+    }
+
+    private void reject(String reason) {
+        Counter.builder("qp.llm.rejections")
+                .description("DeepSeek calls rejected without being sent")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Resilience settings; see the app.llm section of application.yml.
+     */
+    record Policy(long timeoutMs, long deadlineMs, int maxAttempts, long initialBackoffMs, long maxBackoffMs,
+                  boolean hedgeEnabled, long hedgeMinDelayMs, int failureThreshold, long openMs,
+                  int maxConcurrent, long acquireTimeoutMs) {
+    }
+
+    /**
+     * Latencies of the most recent successful calls.
+     */
+    static final class LatencyWindow {
+
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * The given percentile of the window, or 0 until enough calls have been recorded.
+         */
+        long percentile(double percentile) {
+            long[] sorted;
+            synchronized (this) {
+                if (size < MIN_SAMPLES) {
+                    return 0;
+                }
+                sorted = Arrays.copyOf(samples, size);
+            }
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+        }
+    }
+}
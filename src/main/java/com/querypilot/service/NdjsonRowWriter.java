@@ -0,0 +1,88 @@
+package com.querypilot.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Writes query results as newline-delimited JSON (one object per line).
+ * The first line carries the sanitized SQL, every following line is one row
+ * written straight from the ResultSet with the same column naming and value
+ * extraction as JdbcTemplate.queryForList.
+ */
+public class NdjsonRowWriter implements RowCallbackHandler {
+
+    private static final int FLUSH_EVERY_ROWS = 200;
+
+    private final JsonGenerator generator;
+    private String[] columnNames;
+    private long rowCount;
+
+    public NdjsonRowWriter(JsonGenerator generator) {
+        this.generator = generator;
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+    }
+
+    public void writeHeader(String sql) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("sql", sql);
+        generator.writeStringField("safetyCheck", "PASSED");
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        if (columnNames == null) {
+            columnNames = readColumnNames(rs.getMetaData());
+        }
+        try {
+            generator.writeStartObject();
+            for (int i = 0; i < columnNames.length; i++) {
+                generator.writeFieldName(columnNames[i]);
+                generator.writeObject(JdbcUtils.getResultSetValue(rs, i + 1));
+            }
+            generator.writeEndObject();
+            if (++rowCount % FLUSH_EVERY_ROWS == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            // Client went away: abort the JDBC iteration instead of reading the rest of the result
+            throw new UncheckedIOException("Failed to write row " + rowCount, e);
+        }
+    }
+
+    public void writeError(String message) throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField("error", true);
+        generator.writeStringField("message", message);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Terminates the last line and flushes everything written so far.
+     */
+    public void finish() throws IOException {
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private String[] readColumnNames(ResultSetMetaData metaData) throws SQLException {
+        String[] names = new String[metaData.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,260 @@
+package com.querypilot.service;
+
+import com.querypilot.model.enums.DatabaseType;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.AllValue;
+import net.sf.jsqlparser.expression.AnalyticExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.ParenthesedExpressionList;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.Fetch;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.Offset;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.Top;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites a sanitized SELECT into the queries that fetch its later pages.
+ *
+ * When the outermost query is a plain SELECT ordered by expressions that can be compared in a
+ * WHERE clause (or HAVING, for grouped queries), pages are fetched by seeking past the sort key
+ * of the previous page's last row:
+ * {@code WHERE k1 >= ? AND (k1 > ? OR (k1 = ? AND k2 > ?)) ORDER BY k1, k2 LIMIT ?}, which an
+ * index on the sort keys serves without scanning the rows before the page. The sort keys are
+ * added to the select list under hidden aliases so each page can report its last key.
+ *
+ * Everything else (set operations, DISTINCT, no ORDER BY, window functions in the sort key)
+ * falls back to {@code LIMIT ? OFFSET ?}.
+ */
+final class PageQueryPlanner {
+
+    static final String KEY_ALIAS_PREFIX = "qp_page_key_";
+
+    private PageQueryPlanner() {
+    }
+
+    /**
+     * Plans paging for the parsed query, which is modified in the process. The query should be
+     * the generated one before the interactive row cap, so its own row count is kept. Returns
+     * null when the query's own offset or row count is not a literal.
+     */
+    static PagePlan plan(Select select, DatabaseType type) {
+        Long rowLimit = null;
+        Fetch fetch = select.getFetch();
+        if (fetch != null) {
+            // FETCH FIRST ROW ONLY has no expression and means a single row
+            if (fetch.getExpression() == null) {
+                rowLimit = 1L;
+            } else if (fetch.getExpression() instanceof LongValue value) {
+                rowLimit = value.getValue();
+            } else {
+                return null;
+            }
+        }
+        Limit limit = select.getLimit();
+        if (limit != null && limit.getRowCount() != null
+                && !(limit.getRowCount() instanceof AllValue) && !(limit.getRowCount() instanceof NullValue)) {
+            if (!(limit.getRowCount() instanceof LongValue value)) {
+                return null;
+            }
+            rowLimit = min(rowLimit, value.getValue());
+        }
+        if (select instanceof PlainSelect plain && plain.getTop() != null) {
+            Top top = plain.getTop();
+            if (top.isPercentage() || !(top.getExpression() instanceof LongValue value)) {
+                return null;
+            }
+            rowLimit = min(rowLimit, value.getValue());
+            plain.setTop(null);
+        }
+
+        long baseOffset = 0;
+        if (limit != null && limit.getOffset() != null) {
+            if (!(limit.getOffset() instanceof LongValue value)) {
+                return null;
+            }
+            baseOffset += value.getValue();
+        }
+        if (select.getOffset() != null) {
+            if (!(select.getOffset().getOffset() instanceof LongValue value)) {
+                return null;
+            }
+            baseOffset += value.getValue();
+        }
+        select.setLimit(null);
+        select.setOffset(null);
+        select.setFetch(null);
+
+        List<Key> keys = select instanceof PlainSelect plain ? sortKeys(plain, type) : List.of();
+        if (!keys.isEmpty()) {
+            PlainSelect plain = (PlainSelect) select;
+            for (int i = 0; i < keys.size(); i++) {
+                plain.getSelectItems().add(new SelectItem<>(keys.get(i).expression(),
+                        new Alias(KEY_ALIAS_PREFIX + i, true)));
+            }
+        }
+
+        select.setLimit(new Limit().withRowCount(new JdbcParameter()));
+        select.setOffset(new Offset().withOffset(new JdbcParameter()));
+        String offsetSql = select.toString();
+        if (keys.isEmpty()) {
+            return new PagePlan(offsetSql, null, 0, List.of(), baseOffset, rowLimit);
+        }
+
+        select.setOffset(null);
+        PlainSelect plain = (PlainSelect) select;
+        List<Integer> parameterKeys = new ArrayList<>();
+        Expression seek = seekPredicate(keys, parameterKeys);
+        if (plain.getGroupBy() != null) {
+            plain.setHaving(and(plain.getHaving(), seek));
+        } else {
+            plain.setWhere(and(plain.getWhere(), seek));
+        }
+        return new PagePlan(offsetSql, plain.toString(), keys.size(), List.copyOf(parameterKeys), baseOffset, rowLimit);
+    }
+
+    /**
+     * The ORDER BY expressions with select aliases and positions resolved, or an empty list
+     * when they cannot be used for seeking.
+     */
+    private static List<Key> sortKeys(PlainSelect select, DatabaseType type) {
+        List<OrderByElement> orderBy = select.getOrderByElements();
+        if (select.getDistinct() != null || orderBy == null || orderBy.isEmpty()) {
+            return List.of();
+        }
+        List<Key> keys = new ArrayList<>(orderBy.size());
+        for (OrderByElement element : orderBy) {
+            Expression expression = resolve(select, element.getExpression());
+            if (expression == null || expression instanceof AnalyticExpression || expression instanceof Select) {
+                return List.of();
+            }
+            // PostgreSQL sorts NULL above every value, MySQL and H2 below
+            boolean nullsLast = element.getNullOrdering() != null
+                    ? element.getNullOrdering() == OrderByElement.NullOrdering.NULLS_LAST
+                    : (type == DatabaseType.POSTGRESQL) == element.isAsc();
+            keys.add(new Key(expression, element.isAsc(), nullsLast));
+        }
+        return keys;
+    }
+
+    private static Expression resolve(PlainSelect select, Expression expression) {
+        List<SelectItem<?>> items = select.getSelectItems();
+        if (expression instanceof LongValue position) {
+            int index = (int) position.getValue() - 1;
+            if (index < 0 || index >= items.size() || items.get(index).getExpression() instanceof AllColumns) {
+                return null;
+            }
+            return items.get(index).getExpression();
+        }
+        if (expression instanceof Column column && column.getTable() == null) {
+            // Output column names take precedence over table columns in ORDER BY
+            for (SelectItem<?> item : items) {
+                if (item.getAlias() != null && unquote(item.getAlias().getName()).equalsIgnoreCase(unquote(column.getColumnName()))) {
+                    return item.getExpression();
+                }
+            }
+        }
+        return expression;
+    }
+
+    /**
+     * {@code k1 >= ? AND (k1 > ? OR (k1 = ? AND k2 > ?) ...)}, with the comparisons flipped for
+     * descending keys. The leading inclusive bound on the first key is redundant but lets the
+     * database use an index range scan. Keys whose NULLs sort after every value also accept
+     * NULL in place of {@code k > ?}, or those rows would never be reached; the previous key
+     * itself is never NULL, since such pages are fetched by offset. Records which key each
+     * parameter binds.
+     */
+    private static Expression seekPredicate(List<Key> keys, List<Integer> parameterKeys) {
+        Expression after = null;
+        List<Integer> afterKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Expression term = null;
+            for (int j = 0; j < i; j++) {
+                term = and(term, comparison(new EqualsTo(), keys.get(j).expression()));
+                afterKeys.add(j);
+            }
+            Key key = keys.get(i);
+            term = and(term, orNull(key, comparison(key.ascending() ? new GreaterThan() : new MinorThan(),
+                    key.expression())));
+            afterKeys.add(i);
+            Expression disjunct = i == 0 ? term : new ParenthesedExpressionList<>(term);
+            after = after == null ? disjunct : new OrExpression(after, disjunct);
+        }
+        if (keys.size() == 1) {
+            parameterKeys.addAll(afterKeys);
+            return after;
+        }
+        Key first = keys.get(0);
+        parameterKeys.add(0);
+        parameterKeys.addAll(afterKeys);
+        return new AndExpression(
+                orNull(first, comparison(first.ascending() ? new GreaterThanEquals() : new MinorThanEquals(),
+                        first.expression())),
+                new ParenthesedExpressionList<>(after));
+    }
+
+    private static Expression orNull(Key key, Expression comparison) {
+        if (!key.nullsLast()) {
+            return comparison;
+        }
+        return new ParenthesedExpressionList<>(new OrExpression(comparison, new IsNullExpression(key.expression())));
+    }
+
+    private static Expression comparison(ComparisonOperator operator, Expression left) {
+        operator.setLeftExpression(left);
+        operator.setRightExpression(new JdbcParameter());
+        return operator;
+    }
+
+    private static Expression and(Expression existing, Expression condition) {
+        if (existing == null) {
+            return condition;
+        }
+        Expression left = existing instanceof OrExpression ? new ParenthesedExpressionList<>(existing) : existing;
+        return new AndExpression(left, condition);
+    }
+
+    private static Long min(Long limit, long rowCount) {
+        return limit == null ? Long.valueOf(rowCount) : Long.valueOf(Math.min(limit, rowCount));
+    }
+
+    private static String unquote(String name) {
+        return name.length() > 1 && (name.startsWith("\"") || name.startsWith("`"))
+                ? name.substring(1, name.length() - 1) : name;
+    }
+
+    private record Key(Expression expression, boolean ascending, boolean nullsLast) {
+    }
+
+    /**
+     * Page queries of one result. The offset query binds {@code limit, offset}; the keyset
+     * query (null when seeking is not possible) binds the previous page's last key values in
+     * the order given by {@code parameterKeys}, then {@code limit}. Both return the sort keys
+     * as {@code keyCount} extra columns named {@value #KEY_ALIAS_PREFIX}0, 1, ...
+     * {@code rowLimit} is the query's own row count after {@code baseOffset}, or null when it
+     * has none.
+     */
+    record PagePlan(String offsetSql, String keysetSql, int keyCount, List<Integer> parameterKeys, long baseOffset,
+                    Long rowLimit) {
+    }
+}
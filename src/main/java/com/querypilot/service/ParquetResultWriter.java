@@ -0,0 +1,328 @@
+package com.querypilot.service;
+
+import com.querypilot.model.enums.ExportCompression;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type;
+import org.apache.parquet.schema.Types;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a ResultSet as an Apache Parquet file while it is read, through parquet-java. Rows
+ * are buffered one row group at a time, so memory depends on the row group size and not on the
+ * result. Returns the number of rows written.
+ *
+ * Every column is OPTIONAL. Column types follow the JDBC types: integers are INT64, floating
+ * point numbers DOUBLE, booleans BOOLEAN, dates DATE, timestamps TIMESTAMP(MICROS) holding
+ * their wall-clock time, decimals DECIMAL with the column's precision and scale, binary types
+ * BYTE_ARRAY, and everything else a UTF-8 string. Pages are compressed with GZIP or ZSTD.
+ */
+public class ParquetResultWriter implements ResultSetExtractor<Long> {
+
+    // Widest DECIMAL readers commonly support; wider or unknown precisions are written as strings
+    private static final int MAX_DECIMAL_PRECISION = 38;
+
+    private final OutputStream outputStream;
+    private final ExportCompression compression;
+    private final long rowGroupBytes;
+
+    public ParquetResultWriter(OutputStream outputStream, ExportCompression compression, long rowGroupBytes) {
+        this.outputStream = outputStream;
+        this.compression = compression;
+        this.rowGroupBytes = rowGroupBytes;
+    }
+
+    @Override
+    public Long extractData(ResultSet rs) throws SQLException {
+        long rowCount = 0;
+        List<Column> columns = readColumns(rs.getMetaData());
+        try (ParquetWriter<Object[]> writer = new Builder(new StreamOutputFile(outputStream), columns)
+                .withConf(new PlainParquetConfiguration())
+                .withCompressionCodec(codec())
+                .withRowGroupSize(rowGroupBytes)
+                .build()) {
+            Object[] row = new Object[columns.size()];
+            while (rs.next()) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+                }
+                writer.write(row);
+                rowCount++;
+            }
+        } catch (IOException e) {
+            // Client went away: abort the JDBC iteration instead of reading the rest of the result
+            throw new UncheckedIOException("Failed to write row " + rowCount, e);
+        }
+        return rowCount;
+    }
+
+    private CompressionCodecName codec() {
+        return switch (compression) {
+            case NONE -> CompressionCodecName.UNCOMPRESSED;
+            case GZIP -> CompressionCodecName.GZIP;
+            case ZSTD -> CompressionCodecName.ZSTD;
+        };
+    }
+
+    private static List<Column> readColumns(ResultSetMetaData metaData) throws SQLException {
+        List<Column> columns = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            // Readers reject a schema with the same field twice
+            String label = JdbcUtils.lookupColumnName(metaData, i);
+            String name = label;
+            for (int n = 2; !names.add(name.toLowerCase(Locale.ROOT)); n++) {
+                name = label + "_" + n;
+            }
+            columns.add(column(name, metaData, i));
+        }
+        return columns;
+    }
+
+    private static Column column(String name, ResultSetMetaData metaData, int index) throws SQLException {
+        return switch (metaData.getColumnType(index)) {
+            case java.sql.Types.TINYINT, java.sql.Types.SMALLINT, java.sql.Types.INTEGER, java.sql.Types.BIGINT ->
+                    new Column(Kind.LONG, primitive(PrimitiveTypeName.INT64, null, name), 0);
+            case java.sql.Types.REAL, java.sql.Types.FLOAT, java.sql.Types.DOUBLE ->
+                    new Column(Kind.DOUBLE, primitive(PrimitiveTypeName.DOUBLE, null, name), 0);
+            case java.sql.Types.BOOLEAN -> new Column(Kind.BOOLEAN, primitive(PrimitiveTypeName.BOOLEAN, null, name), 0);
+            // PostgreSQL reports booleans as BIT; MySQL's wider BIT(n) columns are bytes
+            case java.sql.Types.BIT -> metaData.getPrecision(index) <= 1
+                    ? new Column(Kind.BOOLEAN, primitive(PrimitiveTypeName.BOOLEAN, null, name), 0)
+                    : new Column(Kind.BYTES, primitive(PrimitiveTypeName.BINARY, null, name), 0);
+            case java.sql.Types.DATE ->
+                    new Column(Kind.DATE, primitive(PrimitiveTypeName.INT32, LogicalTypeAnnotation.dateType(), name), 0);
+            case java.sql.Types.TIMESTAMP -> new Column(Kind.TIMESTAMP, primitive(PrimitiveTypeName.INT64,
+                    LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS), name), 0);
+            case java.sql.Types.DECIMAL, java.sql.Types.NUMERIC -> {
+                int precision = metaData.getPrecision(index);
+                int scale = metaData.getScale(index);
+                yield precision > 0 && precision <= MAX_DECIMAL_PRECISION && scale >= 0 && scale <= precision
+                        ? new Column(Kind.DECIMAL, primitive(PrimitiveTypeName.BINARY,
+                                LogicalTypeAnnotation.decimalType(scale, precision), name), scale)
+                        : new Column(Kind.STRING, primitive(PrimitiveTypeName.BINARY,
+                                LogicalTypeAnnotation.stringType(), name), 0);
+            }
+            case java.sql.Types.BINARY, java.sql.Types.VARBINARY, java.sql.Types.LONGVARBINARY, java.sql.Types.BLOB ->
+                    new Column(Kind.BYTES, primitive(PrimitiveTypeName.BINARY, null, name), 0);
+            default -> new Column(Kind.STRING,
+                    primitive(PrimitiveTypeName.BINARY, LogicalTypeAnnotation.stringType(), name), 0);
+        };
+    }
+
+    private static Type primitive(PrimitiveTypeName type, LogicalTypeAnnotation logicalType, String name) {
+        return Types.optional(type).as(logicalType).named(name);
+    }
+
+    private enum Kind { LONG, DOUBLE, BOOLEAN, DATE, TIMESTAMP, DECIMAL, BYTES, STRING }
+
+    private record Column(Kind kind, Type type, int scale) {
+
+        void write(RecordConsumer consumer, Object value) {
+            switch (kind) {
+                case LONG -> consumer.addLong(value instanceof Number number
+                        ? number.longValue() : Long.parseLong(value.toString()));
+                case DOUBLE -> consumer.addDouble(value instanceof Number number
+                        ? number.doubleValue() : Double.parseDouble(value.toString()));
+                case BOOLEAN -> consumer.addBoolean(value instanceof Boolean bool
+                        ? bool : Boolean.parseBoolean(value.toString()));
+                case DATE -> consumer.addInteger((int) toLocalDate(value).toEpochDay());
+                case TIMESTAMP -> consumer.addLong(micros(value));
+                case DECIMAL -> {
+                    BigDecimal decimal = value instanceof BigDecimal d ? d : new BigDecimal(value.toString());
+                    consumer.addBinary(Binary.fromConstantByteArray(
+                            decimal.setScale(scale, RoundingMode.HALF_UP).unscaledValue().toByteArray()));
+                }
+                case BYTES -> consumer.addBinary(value instanceof byte[] bytes
+                        ? Binary.fromConstantByteArray(bytes) : Binary.fromString(value.toString()));
+                case STRING -> consumer.addBinary(Binary.fromString(value instanceof BigDecimal decimal
+                        ? decimal.toPlainString() : value.toString()));
+            }
+        }
+
+        private static LocalDate toLocalDate(Object value) {
+            return switch (value) {
+                case java.sql.Date date -> date.toLocalDate();
+                case LocalDate date -> date;
+                default -> LocalDate.parse(value.toString());
+            };
+        }
+
+        private static long micros(Object value) {
+            Instant instant = switch (value) {
+                case java.sql.Timestamp t -> t.toLocalDateTime().toInstant(ZoneOffset.UTC);
+                case LocalDateTime t -> t.toInstant(ZoneOffset.UTC);
+                case OffsetDateTime t -> t.toInstant();
+                default -> LocalDateTime.parse(value.toString()).toInstant(ZoneOffset.UTC);
+            };
+            return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+        }
+    }
+
+    /**
+     * Writes one row, an array of JDBC values in column order, as a record of optional fields.
+     */
+    private static final class RowWriteSupport extends WriteSupport<Object[]> {
+
+        private final List<Column> columns;
+        private RecordConsumer consumer;
+
+        RowWriteSupport(List<Column> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public WriteContext init(Configuration configuration) {
+            return context();
+        }
+
+        @Override
+        public WriteContext init(ParquetConfiguration configuration) {
+            return context();
+        }
+
+        private WriteContext context() {
+            return new WriteContext(new MessageType("schema", columns.stream().map(Column::type).toList()), Map.of());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer recordConsumer) {
+            this.consumer = recordConsumer;
+        }
+
+        @Override
+        public void write(Object[] row) {
+            consumer.startMessage();
+            for (int i = 0; i < row.length; i++) {
+                // A NULL is a field that is left out
+                if (row[i] != null) {
+                    Column column = columns.get(i);
+                    consumer.startField(column.type().getName(), i);
+                    column.write(consumer, row[i]);
+                    consumer.endField(column.type().getName(), i);
+                }
+            }
+            consumer.endMessage();
+        }
+    }
+
+    private static final class Builder extends ParquetWriter.Builder<Object[], Builder> {
+
+        private final List<Column> columns;
+
+        Builder(OutputFile file, List<Column> columns) {
+            super(file);
+            this.columns = columns;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<Object[]> getWriteSupport(Configuration configuration) {
+            return new RowWriteSupport(columns);
+        }
+
+        @Override
+        protected WriteSupport<Object[]> getWriteSupport(ParquetConfiguration configuration) {
+            return new RowWriteSupport(columns);
+        }
+    }
+
+    /**
+     * The response stream as a Parquet output file. The writer only appends, so the position
+     * is the number of bytes written; closing the file flushes the stream but leaves it open.
+     */
+    private static final class StreamOutputFile implements OutputFile {
+
+        private final OutputStream out;
+
+        StreamOutputFile(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) {
+            return new PositionOutputStream() {
+                private long position;
+
+                @Override
+                public long getPos() {
+                    return position;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    position++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    position += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.flush();
+                }
+            };
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+            return create(blockSizeHint);
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+    }
+}
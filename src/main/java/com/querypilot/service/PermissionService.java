@@ -1,5 +1,7 @@
 package com.querypilot.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.querypilot.exception.AccessDeniedException;
 import com.querypilot.model.dto.PermissionRequest;
 import com.querypilot.model.entity.Permission;
@@ -10,11 +12,23 @@ import com.querypilot.repository.PermissionRepository;
 import com.querypilot.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Connection-level authorization. Each user's role and allowed connection IDs are cached
+ * in memory so the per-request check needs no database round trip; the entry of a user is
+ * dropped whenever one of their permissions changes, and all entries when a connection is
+ * deleted, once the change has committed. The TTL only bounds how long changes made outside
+ * the API (e.g. in the H2 console) can go unnoticed.
+ */
 @Service
 public class PermissionService {
 
@@ -23,13 +37,20 @@ public class PermissionService {
     private final PermissionRepository permissionRepository;
     private final UserRepository userRepository;
     private final DataSourceConfigRepository configRepository;
+    private final Cache<Long, UserAccess> accessCache;
 
     public PermissionService(PermissionRepository permissionRepository,
                              UserRepository userRepository,
-                             DataSourceConfigRepository configRepository) {
+                             DataSourceConfigRepository configRepository,
+                             @Value("${app.security.permission-cache.max-size:10000}") long maxSize,
+                             @Value("${app.security.permission-cache.ttl-seconds:300}") long ttlSeconds) {
         this.permissionRepository = permissionRepository;
         this.userRepository = userRepository;
         this.configRepository = configRepository;
+        this.accessCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
     }
 
     /**
@@ -38,17 +59,16 @@ public class PermissionService {
      * ANALYSTs must have an explicit permission entry.
      */
     public void validateAccess(Long userId, Long connectionId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found: " + userId));
+        UserAccess access = getAccess(userId);
 
         // ADMINs can access any connection
-        if (user.getRole() == UserRole.ADMIN) {
+        if (access.isAdmin()) {
             log.debug("Admin user {} granted access to connection {}", userId, connectionId);
             return;
         }
 
         // ANALYSTs need explicit permission
-        if (!permissionRepository.existsByUserIdAndConnectionId(userId, connectionId)) {
+        if (!access.allows(connectionId)) {
             log.warn("Access denied: user {} attempted to access connection {}", userId, connectionId);
             throw new AccessDeniedException(
                     "User does not have permission to access connection: " + connectionId);
@@ -57,6 +77,20 @@ public class PermissionService {
         log.debug("User {} granted access to connection {}", userId, connectionId);
     }
 
+    /**
+     * Returns the cached role and allowed connections of a user, loading them on first use.
+     */
+    public UserAccess getAccess(Long userId) {
+        return accessCache.get(userId, this::loadAccess);
+    }
+
+    /**
+     * Drops every cached entry, e.g. after a connection and its permissions were deleted.
+     */
+    public void invalidateAll() {
+        afterCommit(accessCache::invalidateAll);
+    }
+
     /**
      * Grant a user access to a database connection.
      */
@@ -79,6 +113,7 @@ public class PermissionService {
         Permission permission = new Permission(null, request.getUserId(), request.getConnectionId());
 
         permission = permissionRepository.save(permission);
+        afterCommit(() -> accessCache.invalidate(request.getUserId()));
         log.info("Granted user {} access to connection {}", request.getUserId(), request.getConnectionId());
         return permission;
     }
@@ -92,9 +127,28 @@ public class PermissionService {
                 .orElseThrow(() -> new RuntimeException(
                         "Permission not found for user " + userId + " on connection " + connectionId));
         permissionRepository.delete(permission);
+        afterCommit(() -> accessCache.invalidate(userId));
         log.info("Revoked user {} access to connection {}", userId, connectionId);
     }
 
+    /**
+     * Runs the invalidation once the surrounding transaction has committed, or right away
+     * outside one. Invalidating earlier would let a concurrent check reload the rows the
+     * transaction is about to change and cache them again for the whole TTL.
+     */
+    private static void afterCommit(Runnable invalidation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidation.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidation.run();
+            }
+        });
+    }
+
     /**
      * List all permissions for a user.
      */
@@ -108,4 +162,43 @@ public class PermissionService {
     public List<Permission> getPermissionsByConnection(Long connectionId) {
         return permissionRepository.findByConnectionId(connectionId);
     }
+
+    private UserAccess loadAccess(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found: " + userId));
+        long[] connectionIds = user.getRole() == UserRole.ADMIN
+                ? new long[0]
+                : permissionRepository.findByUserId(userId).stream()
+                        .mapToLong(Permission::getConnectionId)
+                        .sorted()
+                        .toArray();
+        return new UserAccess(user.getRole(), connectionIds);
+    }
+
+    /**
+     * A user's role and the sorted IDs of the connections they were granted.
+     */
+    public static final class UserAccess {
+        private final UserRole role;
+        private final long[] connectionIds;
+
+        UserAccess(UserRole role, long[] connectionIds) {
+            this.role = role;
+            this.connectionIds = connectionIds;
+        }
+
+        public boolean isAdmin() {
+            return role == UserRole.ADMIN;
+        }
+
+        public boolean allows(Long connectionId) {
+            return isAdmin() || (connectionId != null && Arrays.binarySearch(connectionIds, connectionId) >= 0);
+        }
+
+        public UserRole getRole() { return role; }
+
+        public List<Long> getConnectionIds() {
+            return Arrays.stream(connectionIds).boxed().toList();
+        }
+    }
 }
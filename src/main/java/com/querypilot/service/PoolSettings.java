@@ -0,0 +1,51 @@
+package com.querypilot.service;
+
+import com.querypilot.model.entity.DataSourceConfig;
+
+/**
+ * Effective pool settings of a target connection: the values stored on its DataSourceConfig,
+ * with the defaults below for anything left unset. A query timeout, fetch size or leak
+ * detection threshold of 0 leaves the driver / Hikari default in place.
+ */
+public record PoolSettings(int maxSize, int minIdle, int connectionTimeoutMs, int queryTimeoutSeconds,
+                           int fetchSize, int leakDetectionThresholdMs, boolean adaptive, boolean warmUp) {
+
+    public static final int DEFAULT_MAX_SIZE = 5;
+    public static final int DEFAULT_MIN_IDLE = 1;
+    public static final int DEFAULT_CONNECTION_TIMEOUT_MS = 10000;
+
+    public static final PoolSettings DEFAULTS = new PoolSettings(DEFAULT_MAX_SIZE, DEFAULT_MIN_IDLE,
+            DEFAULT_CONNECTION_TIMEOUT_MS, 0, 0, 0, false, false);
+
+    public static PoolSettings of(DataSourceConfig config) {
+        int maxSize = orDefault(config.getPoolMaxSize(), DEFAULT_MAX_SIZE);
+        return new PoolSettings(
+                maxSize,
+                // Hikari would clamp this as well; doing it here keeps the adaptive floor consistent
+                Math.min(orDefault(config.getPoolMinIdle(), DEFAULT_MIN_IDLE), maxSize),
+                orDefault(config.getConnectionTimeoutMs(), DEFAULT_CONNECTION_TIMEOUT_MS),
+                orDefault(config.getQueryTimeoutSeconds(), 0),
+                orDefault(config.getFetchSize(), 0),
+                orDefault(config.getLeakDetectionThresholdMs(), 0),
+                Boolean.TRUE.equals(config.getPoolAdaptive()),
+                Boolean.TRUE.equals(config.getPoolWarmUp()));
+    }
+
+    /**
+     * Pool size an adaptive pool starts with: the default size, kept within its bounds.
+     */
+    public int initialSize() {
+        return adaptive ? Math.max(minSize(), Math.min(maxSize, DEFAULT_MAX_SIZE)) : maxSize;
+    }
+
+    /**
+     * Smallest size an adaptive pool shrinks to.
+     */
+    public int minSize() {
+        return Math.max(1, minIdle);
+    }
+
+    private static int orDefault(Integer value, int defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,96 @@
+package com.querypilot.service;
+
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.repository.DataSourceConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Opens and primes the pools of connections marked for warm-up once the application is ready,
+ * so the first analyst query after a deploy does not pay for the config lookup, password
+ * decryption, pool construction and connection handshakes.
+ *
+ * Pools are warmed in parallel. The listener waits for them up to the warm-up timeout, which
+ * keeps the readiness probe from reporting ready before the pools are; a pool that is still
+ * warming after that finishes in the background. Failures are logged and leave the pool to be
+ * opened on first use.
+ */
+@Service
+public class PoolWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolWarmer.class);
+
+    private final DataSourceConfigRepository configRepository;
+    private final DynamicConnectionFactory connectionFactory;
+    private final Executor queryExecutor;
+    private final boolean enabled;
+    private final long timeoutMs;
+
+    public PoolWarmer(DataSourceConfigRepository configRepository,
+                      DynamicConnectionFactory connectionFactory,
+                      @Qualifier("queryExecutor") Executor queryExecutor,
+                      @Value("${app.pool.warm-up.enabled:true}") boolean enabled,
+                      @Value("${app.pool.warm-up.timeout-ms:30000}") long timeoutMs) {
+        this.configRepository = configRepository;
+        this.connectionFactory = connectionFactory;
+        this.queryExecutor = queryExecutor;
+        this.enabled = enabled;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        List<DataSourceConfig> configs = configRepository.findByPoolWarmUpTrue();
+        if (configs.isEmpty()) {
+            return;
+        }
+
+        log.info("Warming up {} connection pools", configs.size());
+        CompletableFuture<?>[] warmUps = configs.stream()
+                .map(config -> warmUpAsync(config.getId()))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(warmUps).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Pool warm-up still running after {} ms, continuing in the background", timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Individual failures are already logged by warmUpAsync
+        }
+    }
+
+    /**
+     * Opens and primes the connection's pool on the query executor.
+     */
+    public CompletableFuture<Void> warmUpAsync(Long connectionId) {
+        return CompletableFuture.runAsync(() -> warmUp(connectionId), queryExecutor)
+                .exceptionally(e -> {
+                    log.warn("Could not warm up pool for connection {}: {}", connectionId,
+                            e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                    return null;
+                });
+    }
+
+    private void warmUp(Long connectionId) {
+        long start = System.nanoTime();
+        int primed = connectionFactory.prime(connectionId);
+        log.info("Warmed up pool for connection {} with {} connections in {} ms", connectionId, primed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
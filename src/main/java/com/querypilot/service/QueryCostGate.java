@@ -0,0 +1,241 @@
+package com.querypilot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.querypilot.exception.QueryTooExpensiveException;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.CostGateAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the database's own estimate of sanitized SQL before it runs, so a syntactically safe
+ * but ruinous query (a cross join over large tables, say) never reaches the target database.
+ *
+ * The estimate comes from the dialect's EXPLAIN: MySQL's FORMAT=JSON and PostgreSQL's
+ * (FORMAT JSON) report a total cost and per-step row estimates; the largest row estimate of
+ * any step is compared with the row limit. H2 reports neither, so its estimate multiplies the
+ * row counts of the tables the plan scans in full and has no cost.
+ *
+ * Connections without limits are not explained at all. An EXPLAIN that fails lets the query
+ * through, since the query itself will then fail with a proper error. Estimates are cached
+ * briefly per connection and SQL.
+ */
+@Service
+public class QueryCostGate {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCostGate.class);
+
+    private static final Set<String> MYSQL_ROW_FIELDS = Set.of("rows_examined_per_scan", "rows_produced_per_join");
+    private static final Set<String> POSTGRES_ROW_FIELDS = Set.of("Plan Rows");
+    private static final Set<String> POSTGRES_COST_FIELDS = Set.of("Total Cost");
+    // "/* PUBLIC.ITEMS.tableScan */", with names quoted when they need it
+    private static final Pattern H2_TABLE_SCAN =
+            Pattern.compile("/\\* \"?([^\".\\s]+)\"?\\.\"?([^\".\\s]+)\"?\\.tableScan \\*/");
+
+    private final StatementExecutor statementExecutor;
+    private final QueryMetrics queryMetrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final int explainTimeoutSeconds;
+    private final Cache<EstimateKey, CostEstimate> estimates;
+
+    public QueryCostGate(StatementExecutor statementExecutor,
+                         QueryMetrics queryMetrics,
+                         @Value("${app.query.cost-gate.enabled:true}") boolean enabled,
+                         @Value("${app.query.cost-gate.explain-timeout-seconds:5}") int explainTimeoutSeconds,
+                         @Value("${app.query.cost-gate.estimate-ttl-seconds:300}") long estimateTtlSeconds) {
+        this.statementExecutor = statementExecutor;
+        this.queryMetrics = queryMetrics;
+        this.enabled = enabled;
+        this.explainTimeoutSeconds = explainTimeoutSeconds;
+        this.estimates = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(estimateTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Checks the SQL against the connection's limits. Throws {@link QueryTooExpensiveException}
+     * when it exceeds them and the connection rejects such queries; returns a warning when the
+     * connection only flags them, and null when the query is within its limits.
+     */
+    public String check(DataSourceConfig config, String sanitizedSql) {
+        Long maxRows = config.getMaxEstimatedRows();
+        Double maxCost = config.getMaxEstimatedCost();
+        if (!enabled || (maxRows == null && maxCost == null)) {
+            return null;
+        }
+        CostEstimate estimate = estimates.get(new EstimateKey(config.getId(), sanitizedSql),
+                key -> explain(config, sanitizedSql));
+        if (estimate == null) {
+            return null;
+        }
+
+        String violation = null;
+        if (maxRows != null && estimate.rows() != null && estimate.rows() > maxRows) {
+            violation = String.format(Locale.ROOT,
+                    "The database estimates this query reads about %,d rows (limit %,d).", estimate.rows(), maxRows);
+        } else if (maxCost != null && estimate.cost() != null && estimate.cost() > maxCost) {
+            violation = String.format(Locale.ROOT,
+                    "The database estimates this query's cost at %,.0f (limit %,.0f).", estimate.cost(), maxCost);
+        }
+        if (violation == null) {
+            return null;
+        }
+        if (config.getCostGateAction() == CostGateAction.WARN) {
+            log.warn("Expensive query on connection {}: {}", config.getId(), violation);
+            return violation;
+        }
+        throw new QueryTooExpensiveException(violation + " Please narrow down your question.");
+    }
+
+    private CostEstimate explain(DataSourceConfig config, String sql) {
+        try {
+            return queryMetrics.timeStage("explain", config.getId(), config.getType(),
+                    () -> switch (config.getType()) {
+                        case MYSQL -> parseJson(explainText(config, "EXPLAIN FORMAT=JSON " + sql),
+                                QueryCostGate::mysqlEstimate);
+                        case POSTGRESQL -> parseJson(explainText(config, "EXPLAIN (FORMAT JSON) " + sql),
+                                QueryCostGate::postgresEstimate);
+                        case H2 -> h2Estimate(config, explainText(config, "EXPLAIN " + sql));
+                    });
+        } catch (DataAccessException e) {
+            log.warn("Could not estimate query cost on connection {}: {}", config.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String explainText(DataSourceConfig config, String explainSql) {
+        List<Map<String, Object>> rows = statementExecutor.queryForList(config.getId(), explainSql,
+                explainTimeoutSeconds, QueryHandle.untracked());
+        if (rows.isEmpty() || rows.get(0).isEmpty()) {
+            return null;
+        }
+        Object plan = rows.get(0).values().iterator().next();
+        return plan != null ? plan.toString() : null;
+    }
+
+    private CostEstimate parseJson(String plan, Function<JsonNode, CostEstimate> reader) {
+        if (plan == null) {
+            return null;
+        }
+        try {
+            return reader.apply(objectMapper.readTree(plan));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not parse query plan: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * {@code query_block.cost_info.query_cost}, and the largest rows examined or produced by any
+     * table access (a join's last table produces the product of the rows before it).
+     */
+    static CostEstimate mysqlEstimate(JsonNode plan) {
+        JsonNode block = plan.path("query_block");
+        return new CostEstimate(rows(maxNumber(plan, MYSQL_ROW_FIELDS)), number(block.path("cost_info").path("query_cost")));
+    }
+
+    /**
+     * The largest "Total Cost" and "Plan Rows" of any node. The top node is the LIMIT the
+     * sanitizer added, whose estimates are scaled down to the rows it lets through and say
+     * nothing about the work below it.
+     */
+    static CostEstimate postgresEstimate(JsonNode plan) {
+        JsonNode top = plan.path(0).path("Plan");
+        return new CostEstimate(rows(maxNumber(top, POSTGRES_ROW_FIELDS)), maxNumber(top, POSTGRES_COST_FIELDS));
+    }
+
+    private CostEstimate h2Estimate(DataSourceConfig config, String plan) {
+        if (plan == null) {
+            return null;
+        }
+        double rows = 1;
+        Matcher matcher = H2_TABLE_SCAN.matcher(plan);
+        while (matcher.find()) {
+            List<Map<String, Object>> counts = statementExecutor.queryForList(config.getId(),
+                    "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?",
+                    explainTimeoutSeconds, QueryHandle.untracked(), matcher.group(1), matcher.group(2));
+            if (!counts.isEmpty() && counts.get(0).get("ROW_COUNT_ESTIMATE") instanceof Number count) {
+                rows *= Math.max(count.doubleValue(), 1);
+            }
+        }
+        return new CostEstimate((long) Math.min(rows, Long.MAX_VALUE), null);
+    }
+
+    private static Double maxNumber(JsonNode node, Set<String> fields) {
+        Double max = null;
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> entries = node.fields();
+            while (entries.hasNext()) {
+                Map.Entry<String, JsonNode> entry = entries.next();
+                Double value = fields.contains(entry.getKey()) ? number(entry.getValue()) : null;
+                if (value == null) {
+                    value = maxNumber(entry.getValue(), fields);
+                }
+                max = max(max, value);
+            }
+        } else if (node.isArray()) {
+            for (JsonNode element : node) {
+                max = max(max, maxNumber(element, fields));
+            }
+        }
+        return max;
+    }
+
+    private static Double max(Double a, Double b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return Math.max(a, b);
+    }
+
+    private static Long rows(Double rows) {
+        return rows == null ? null : (long) Math.min(rows, Long.MAX_VALUE);
+    }
+
+    // MySQL writes most numbers as strings
+    private static Double number(JsonNode node) {
+        if (node.isNumber()) {
+            return node.asDouble();
+        }
+        if (node.isTextual()) {
+            try {
+                return Double.parseDouble(node.asText());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Estimated rows at the widest step of the plan and the plan's total cost in the
+     * database's own units; either is null when the database does not report it.
+     */
+    record CostEstimate(Long rows, Double cost) {
+    }
+
+    private record EstimateKey(Long connectionId, String sql) {
+    }
+}
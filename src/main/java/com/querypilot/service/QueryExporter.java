@@ -0,0 +1,152 @@
+package com.querypilot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.querypilot.exception.QueryNotFoundException;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.ExportCompression;
+import com.querypilot.model.enums.ExportFormat;
+import com.querypilot.repository.DataSourceConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the full result of an answered question as a CSV or Parquet file.
+ *
+ * The generated SQL of every /ask query is kept for a while under the user and query ID. An
+ * export sanitizes it again with the export row cap instead of the interactive LIMIT 100,
+ * passes it through the cost gate and streams it from the ResultSet straight into the
+ * (compressed) file, so no row is kept beyond the writer's buffer or Parquet row group.
+ */
+@Service
+public class QueryExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryExporter.class);
+
+    private static final int GZIP_BUFFER_BYTES = 64 * 1024;
+
+    private final SqlSanitizer sqlSanitizer;
+    private final StatementExecutor statementExecutor;
+    private final QueryCostGate queryCostGate;
+    private final PermissionService permissionService;
+    private final DataSourceConfigRepository configRepository;
+    private final RunningQueries runningQueries;
+    private final QueryMetrics queryMetrics;
+    private final long maxRows;
+    private final long parquetRowGroupBytes;
+    private final Cache<Key, GeneratedQuery> generatedQueries;
+
+    public QueryExporter(SqlSanitizer sqlSanitizer,
+                         StatementExecutor statementExecutor,
+                         QueryCostGate queryCostGate,
+                         PermissionService permissionService,
+                         DataSourceConfigRepository configRepository,
+                         RunningQueries runningQueries,
+                         QueryMetrics queryMetrics,
+                         @Value("${app.query.export.max-rows:1000000}") long maxRows,
+                         @Value("${app.query.export.parquet-row-group-bytes:33554432}") long parquetRowGroupBytes,
+                         @Value("${app.query.export.max-queries:10000}") long maxQueries,
+                         @Value("${app.query.export.query-ttl-seconds:1800}") long queryTtlSeconds) {
+        this.sqlSanitizer = sqlSanitizer;
+        this.statementExecutor = statementExecutor;
+        this.queryCostGate = queryCostGate;
+        this.permissionService = permissionService;
+        this.configRepository = configRepository;
+        this.runningQueries = runningQueries;
+        this.queryMetrics = queryMetrics;
+        this.maxRows = maxRows;
+        this.parquetRowGroupBytes = parquetRowGroupBytes;
+        this.generatedQueries = Caffeine.newBuilder()
+                .maximumSize(maxQueries)
+                .expireAfterWrite(Duration.ofSeconds(queryTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Remembers the SQL generated for a query so that its result can be exported later.
+     */
+    public void register(Long userId, String queryId, Long connectionId, String sql) {
+        generatedQueries.put(new Key(userId, queryId), new GeneratedQuery(connectionId, sql));
+    }
+
+    /**
+     * Checks that the user may still export the query and prepares its SQL. Everything that
+     * can fail before the first byte is written fails here, so it is reported as a regular
+     * error response.
+     */
+    public Export prepare(Long userId, String queryId) {
+        GeneratedQuery query = queryId == null ? null : generatedQueries.getIfPresent(new Key(userId, queryId));
+        // Another user's query is reported exactly like an unknown one
+        if (query == null) {
+            throw new QueryNotFoundException("No exportable query with ID " + queryId
+                    + ". Please ask the question again.");
+        }
+        Long connectionId = query.connectionId();
+        permissionService.validateAccess(userId, connectionId);
+        DataSourceConfig config = configRepository.findById(connectionId)
+                .orElseThrow(() -> new RuntimeException("Connection not found: " + connectionId));
+
+        String sql = sqlSanitizer.sanitize(query.sql(), maxRows);
+        String warning = queryCostGate.check(config, sql);
+        if (warning != null) {
+            log.warn("Exporting query {} despite its estimated cost: {}", queryId, warning);
+        }
+        return new Export(userId, config, sql, statementExecutor.timeoutSeconds(config, null));
+    }
+
+    /**
+     * Runs the export's SQL and writes its rows to the output as they are read. CSV is
+     * compressed as a whole; Parquet compresses each page and is never compressed again.
+     * The output is left open. Returns the number of rows written.
+     */
+    public long write(Export export, ExportFormat format, ExportCompression compression, OutputStream output) {
+        DataSourceConfig config = export.config();
+        QueryHandle handle = runningQueries.start(export.userId(), null);
+        try {
+            return queryMetrics.timeStage("export", config.getId(), config.getType(), () -> {
+                if (format == ExportFormat.PARQUET) {
+                    return statementExecutor.streamResult(config.getId(), export.sql(), export.timeoutSeconds(),
+                            handle, new ParquetResultWriter(output, compression, parquetRowGroupBytes));
+                }
+                try (OutputStream out = compress(StreamUtils.nonClosing(output), compression)) {
+                    return statementExecutor.streamResult(config.getId(), export.sql(), export.timeoutSeconds(),
+                            handle, new CsvResultWriter(out));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            runningQueries.finish(handle);
+        }
+    }
+
+    private static OutputStream compress(OutputStream output, ExportCompression compression) throws IOException {
+        return switch (compression) {
+            case NONE -> output;
+            case GZIP -> new GZIPOutputStream(output, GZIP_BUFFER_BYTES);
+            case ZSTD -> new ZstdOutputStream(output);
+        };
+    }
+
+    /**
+     * An export ready to run: the sanitized SQL with the export row cap and its time limit.
+     */
+    public record Export(Long userId, DataSourceConfig config, String sql, int timeoutSeconds) {
+    }
+
+    private record Key(Long userId, String queryId) {
+    }
+
+    private record GeneratedQuery(Long connectionId, String sql) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.QueryCancelledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One running query as seen by {@link RunningQueries}: its ID, its owner and, while it is
+ * executing, the JDBC statement that {@link #cancel()} cancels. A query cancelled before its
+ * statement exists fails at the next {@link #checkNotCancelled()} or when the statement is
+ * attached.
+ */
+public final class QueryHandle {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryHandle.class);
+
+    private final String id;
+    private final Long userId;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile Statement statement;
+
+    QueryHandle(String id, Long userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+
+    /**
+     * A handle for work nobody can cancel by ID, such as result pages.
+     */
+    static QueryHandle untracked() {
+        return new QueryHandle(UUID.randomUUID().toString(), null);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public void checkNotCancelled() {
+        if (cancelled.get()) {
+            throw new QueryCancelledException(id);
+        }
+    }
+
+    /**
+     * Marks the query cancelled and cancels its statement if one is executing. Returns false
+     * when it was already cancelled.
+     */
+    boolean cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+        Statement running = statement;
+        if (running != null) {
+            try {
+                running.cancel();
+            } catch (SQLException e) {
+                // The statement may have completed and been closed in the meantime
+                log.debug("Could not cancel statement of query {}: {}", id, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the statement the one {@link #cancel()} cancels. The statement is published before
+     * the flag is read, and cancel() sets the flag before reading the statement, so a
+     * concurrent cancel either sees the statement or is seen here.
+     */
+    void attach(Statement running) {
+        statement = running;
+        if (cancelled.get()) {
+            statement = null;
+            throw new QueryCancelledException(id);
+        }
+    }
+
+    void detach() {
+        statement = null;
+    }
+}
@@ -0,0 +1,95 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.AccessDeniedException;
+import com.querypilot.exception.QueryCancelledException;
+import com.querypilot.exception.QueryTooExpensiveException;
+import com.querypilot.exception.SqlSafetyException;
+import com.querypilot.model.enums.DatabaseType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation of the query pipeline.
+ * Every stage is timed as {@code qp.query.stage} tagged with the stage name, connection ID,
+ * database type and outcome (success, denied, rejected, cancelled, timeout or error), so a
+ * slow request can be attributed to DeepSeek, the SQL parser or the target database.
+ */
+@Service
+public class QueryMetrics {
+
+    public static final String STAGE_TIMER = "qp.query.stage";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter llmParseFallbacks;
+
+    public QueryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.llmParseFallbacks = Counter.builder("qp.llm.parse.fallbacks")
+                .description("DeepSeek responses that were not valid JSON and fell back to raw SQL "
+                        + "extraction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs one pipeline stage and records its duration and outcome.
+     */
+    public <T> T timeStage(String stage, Long connectionId, DatabaseType type, Supplier<T> step) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = step.get();
+            outcome = "success";
+            return result;
+        } catch (AccessDeniedException e) {
+            outcome = "denied";
+            throw e;
+        } catch (SqlSafetyException e) {
+            outcome = "rejected";
+            sanitizerRejection(connectionId);
+            throw e;
+        } catch (QueryTooExpensiveException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (QueryCancelledException e) {
+            outcome = "cancelled";
+            throw e;
+        } catch (QueryTimeoutException e) {
+            outcome = "timeout";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(STAGE_TIMER)
+                    .description("Latency of a query pipeline stage")
+                    .tag("stage", stage)
+                    .tag("connection", connectionId != null ? connectionId.toString() : UNKNOWN)
+                    .tag("db.type", type != null ? type.name() : UNKNOWN)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    public void timeStage(String stage, Long connectionId, DatabaseType type, Runnable step) {
+        timeStage(stage, connectionId, type, () -> {
+            step.run();
+            return null;
+        });
+    }
+
+    public void llmParseFallback() {
+        llmParseFallbacks.increment();
+    }
+
+    private void sanitizerRejection(Long connectionId) {
+        Counter.builder("qp.sanitizer.rejections")
+                .description("Generated SQL rejected by the safety guardrails")
+                .tag("connection", connectionId != null ? connectionId.toString() : UNKNOWN)
+                .register(meterRegistry)
+                .increment();
+    }
+}
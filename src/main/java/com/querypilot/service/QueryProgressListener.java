@@ -0,0 +1,24 @@
+package com.querypilot.service;
+
+/**
+ * Receives progress of an /ask pipeline run before its result is ready. Callbacks run on the
+ * pipeline's thread and should return quickly.
+ */
+public interface QueryProgressListener {
+
+    QueryProgressListener NONE = new QueryProgressListener() {
+    };
+
+    /**
+     * SQL characters the model produced since the previous call, before sanitization. Not
+     * called when the SQL comes from the cache or from an identical request already in flight.
+     */
+    default void onSqlDelta(String delta) {
+    }
+
+    /**
+     * The sanitized SQL, just before it is executed.
+     */
+    default void onSql(String sanitizedSql) {
+    }
+}
@@ -0,0 +1,120 @@
+package com.querypilot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.querypilot.model.dto.ResultTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory-bounded cache of query results keyed by connection and sanitized SQL.
+ * Entries are weighed by their estimated heap size and expire after the TTL configured on
+ * the connection; connections without a TTL are never cached.
+ */
+@Service
+public class QueryResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryResultCache.class);
+
+    // Rough per-object heap costs used by the weigher
+    private static final int ROW_OVERHEAD_BYTES = 16;
+    private static final int SLOT_BYTES = 8;
+    private static final int DEFAULT_VALUE_BYTES = 24;
+
+    private final Cache<Key, CachedResult> cache;
+
+    public QueryResultCache(@Value("${app.query.result-cache.max-weight-mb:64}") long maxWeightMb,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightMb * 1024 * 1024)
+                .weigher((Key key, CachedResult value) -> value.weight())
+                .expireAfter(new Expiry<Key, CachedResult>() {
+                    @Override
+                    public long expireAfterCreate(Key key, CachedResult value, long currentTime) {
+                        return TimeUnit.SECONDS.toNanos(value.ttlSeconds());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, CachedResult value, long currentTime, long currentDuration) {
+                        return TimeUnit.SECONDS.toNanos(value.ttlSeconds());
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, CachedResult value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "qp.result.cache");
+    }
+
+    public Optional<ResultTable> get(Long connectionId, String sql) {
+        CachedResult cached = cache.getIfPresent(new Key(connectionId, sql));
+        return cached == null ? Optional.empty() : Optional.of(cached.rows());
+    }
+
+    /**
+     * Caches the rows when the connection has a positive TTL; otherwise does nothing.
+     */
+    public void put(Long connectionId, String sql, ResultTable rows, Integer ttlSeconds) {
+        if (ttlSeconds == null || ttlSeconds <= 0) {
+            return;
+        }
+        cache.put(new Key(connectionId, sql), new CachedResult(rows, ttlSeconds, estimateWeight(rows)));
+    }
+
+    /**
+     * Drops all cached results of a connection.
+     */
+    public void invalidateConnection(Long connectionId) {
+        cache.asMap().keySet().removeIf(key -> key.connectionId().equals(connectionId));
+        log.info("Flushed result cache for connection {}", connectionId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Estimates the retained heap size of a result in bytes (capped to int for the weigher).
+     */
+    static int estimateWeight(ResultTable rows) {
+        long bytes = 0;
+        for (Object[] row : rows.getRows()) {
+            bytes += ROW_OVERHEAD_BYTES;
+            for (Object value : row) {
+                bytes += SLOT_BYTES + estimateValueBytes(value);
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static long estimateValueBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return 40L + 2L * text.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return 16L + bytes.length;
+        }
+        return DEFAULT_VALUE_BYTES;
+    }
+
+    private record Key(Long connectionId, String sql) {
+    }
+
+    private record CachedResult(ResultTable rows, int ttlSeconds, int weight) {
+    }
+}
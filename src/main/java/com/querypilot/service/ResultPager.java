@@ -0,0 +1,197 @@
+package com.querypilot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.querypilot.exception.InvalidCursorException;
+import com.querypilot.exception.SqlSafetyException;
+import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
+import com.querypilot.model.enums.DatabaseType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.JDBCType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Serves the rows after the first page of an /ask result without asking DeepSeek again.
+ *
+ * A cursor is an opaque ID for a position in a result: the sanitized SQL's page queries (see
+ * {@link PageQueryPlanner}), how many rows have been served and the sort key of the last one.
+ * Cursors live in memory until their TTL passes and can be fetched repeatedly, so a client may
+ * retry a page. Paging ends at the generated query's own LIMIT, if it has one. Each page reads
+ * one row more than requested to tell whether another page follows; when that row ties with
+ * the last one on the sort key, or the key contains NULL, the next page is fetched by offset
+ * instead of by key so no row is skipped. Ties are checked in Java, so keys whose SQL
+ * equality may differ from it (text under a case- or accent-insensitive or PAD SPACE
+ * collation, floating point, binary and vendor types) are always paged by offset.
+ */
+@Service
+public class ResultPager {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultPager.class);
+
+    // Sort key types whose values are equal in SQL exactly when they are equal in Java
+    private static final Set<String> EXACT_KEY_TYPES = Stream.of(JDBCType.BIT, JDBCType.BOOLEAN,
+                    JDBCType.TINYINT, JDBCType.SMALLINT, JDBCType.INTEGER, JDBCType.BIGINT, JDBCType.DECIMAL,
+                    JDBCType.NUMERIC, JDBCType.DATE, JDBCType.TIME, JDBCType.TIMESTAMP,
+                    JDBCType.TIME_WITH_TIMEZONE, JDBCType.TIMESTAMP_WITH_TIMEZONE)
+            .map(JDBCType::getName)
+            .collect(Collectors.toUnmodifiableSet());
+
+    private final SqlSanitizer sqlSanitizer;
+    private final StatementExecutor statementExecutor;
+    private final PermissionService permissionService;
+    private final QueryMetrics queryMetrics;
+    private final Executor queryExecutor;
+    private final int maxPageSize;
+    private final Cache<String, Cursor> cursors;
+
+    public ResultPager(SqlSanitizer sqlSanitizer,
+                       StatementExecutor statementExecutor,
+                       PermissionService permissionService,
+                       QueryMetrics queryMetrics,
+                       @Qualifier("queryExecutor") Executor queryExecutor,
+                       @Value("${app.query.pagination.max-page-size:1000}") int maxPageSize,
+                       @Value("${app.query.pagination.max-cursors:10000}") long maxCursors,
+                       @Value("${app.query.pagination.cursor-ttl-seconds:1800}") long cursorTtlSeconds) {
+        this.sqlSanitizer = sqlSanitizer;
+        this.statementExecutor = statementExecutor;
+        this.permissionService = permissionService;
+        this.queryMetrics = queryMetrics;
+        this.queryExecutor = queryExecutor;
+        this.maxPageSize = maxPageSize;
+        this.cursors = Caffeine.newBuilder()
+                .maximumSize(maxCursors)
+                .expireAfterWrite(Duration.ofSeconds(cursorTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Returns a cursor positioned after the first {@code rowsServed} rows of the sanitized SQL,
+     * or null when the query cannot be paged or has no more rows. Pages are planned from the
+     * generated SQL, so they stop at its own row count rather than the interactive cap. Every
+     * page runs under the query's time limit.
+     */
+    public String open(Long userId, Long connectionId, DatabaseType type, String sanitizedSql, String generatedSql,
+                       int rowsServed, int timeoutSeconds) {
+        PageQueryPlanner.PagePlan plan;
+        try {
+            plan = PageQueryPlanner.plan(sqlSanitizer.parseUncapped(generatedSql), type);
+        } catch (SqlSafetyException e) {
+            log.debug("Cannot page query: {}", e.getMessage());
+            return null;
+        }
+        if (plan == null || (plan.rowLimit() != null && rowsServed >= plan.rowLimit())) {
+            return null;
+        }
+        log.debug("Paging {} by {}", sanitizedSql, plan.keysetSql() != null ? "key" : "offset");
+        // The first page was read without the sort key columns, so the second one goes by offset
+        return store(new Cursor(userId, connectionId, type, sanitizedSql, timeoutSeconds, plan,
+                plan.baseOffset() + rowsServed, null));
+    }
+
+    public CompletableFuture<QueryResponse> nextPageAsync(Long userId, String cursorId, int size) {
+        return CompletableFuture.supplyAsync(() -> nextPage(userId, cursorId, size), queryExecutor);
+    }
+
+    /**
+     * Fetches up to {@code size} rows after the cursor. The response carries the cursor of the
+     * following page, or null when the result is exhausted.
+     */
+    public QueryResponse nextPage(Long userId, String cursorId, int size) {
+        Cursor cursor = cursorId == null ? null : cursors.getIfPresent(cursorId);
+        // Another user's cursor is reported exactly like an unknown one
+        if (cursor == null || !cursor.userId().equals(userId)) {
+            throw new InvalidCursorException("Result cursor is unknown or has expired. Please ask the question again.");
+        }
+        permissionService.validateAccess(userId, cursor.connectionId());
+        PageQueryPlanner.PagePlan plan = cursor.plan();
+        long remaining = plan.rowLimit() == null
+                ? Long.MAX_VALUE
+                : plan.rowLimit() - (cursor.offset() - plan.baseOffset());
+        int pageSize = (int) Math.min(Math.max(1, Math.min(size, maxPageSize)), remaining);
+
+        String sql;
+        List<Object> args = new ArrayList<>();
+        if (cursor.lastKey() != null) {
+            sql = plan.keysetSql();
+            plan.parameterKeys().forEach(index -> args.add(cursor.lastKey().get(index)));
+            args.add(pageSize + 1);
+        } else {
+            sql = plan.offsetSql();
+            args.add(pageSize + 1);
+            args.add(cursor.offset());
+        }
+
+        ResultTable rows = queryMetrics.timeStage("page", cursor.connectionId(), cursor.type(),
+                () -> statementExecutor.queryForTable(cursor.connectionId(), sql, cursor.timeoutSeconds(),
+                        QueryHandle.untracked(), args.toArray()));
+
+        boolean hasMore = rows.size() > pageSize && remaining > pageSize;
+        String next = null;
+        if (hasMore) {
+            List<Object> lastKey = sortKey(rows, pageSize - 1, plan.keyCount());
+            List<Object> followingKey = sortKey(rows, pageSize, plan.keyCount());
+            boolean seekable = plan.keysetSql() != null && hasExactKeys(rows, plan.keyCount())
+                    && !lastKey.contains(null) && !lastKey.equals(followingKey);
+            next = store(new Cursor(userId, cursor.connectionId(), cursor.type(), cursor.sql(),
+                    cursor.timeoutSeconds(), plan, cursor.offset() + pageSize, seekable ? lastKey : null));
+        }
+        ResultTable page = rows.limit(pageSize).without(sortKeyColumns(plan.keyCount()));
+
+        return new QueryResponse(cursor.sql(), page, "PASSED", next, null, null);
+    }
+
+    private String store(Cursor cursor) {
+        String id = UUID.randomUUID().toString();
+        cursors.put(id, cursor);
+        return id;
+    }
+
+    private static List<Object> sortKey(ResultTable rows, int row, int keyCount) {
+        List<Object> key = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            // Column lookup ignores case, so databases that upper-case labels match too
+            key.add(rows.get(row, PageQueryPlanner.KEY_ALIAS_PREFIX + i));
+        }
+        return key;
+    }
+
+    private static boolean hasExactKeys(ResultTable rows, int keyCount) {
+        for (int i = 0; i < keyCount; i++) {
+            int index = rows.columnIndex(PageQueryPlanner.KEY_ALIAS_PREFIX + i);
+            if (!EXACT_KEY_TYPES.contains(rows.getColumns().get(index).type())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> sortKeyColumns(int keyCount) {
+        List<String> names = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            names.add(PageQueryPlanner.KEY_ALIAS_PREFIX + i);
+        }
+        return names;
+    }
+
+    /**
+     * Position in a result. {@code lastKey} is the sort key of the last row served, or null
+     * when the next page has to be fetched by offset.
+     */
+    private record Cursor(Long userId, Long connectionId, DatabaseType type, String sql, int timeoutSeconds,
+                          PageQueryPlanner.PagePlan plan, long offset, List<Object> lastKey) {
+    }
+}
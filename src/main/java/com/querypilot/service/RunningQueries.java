@@ -0,0 +1,61 @@
+package com.querypilot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the queries currently running, by user and query ID, so a query can be
+ * cancelled from another request (DELETE /api/v1/query/{id}) or when its client disconnects.
+ * IDs are scoped to their user: nobody can see or cancel another user's query.
+ */
+@Service
+public class RunningQueries {
+
+    private static final Logger log = LoggerFactory.getLogger(RunningQueries.class);
+
+    private final ConcurrentHashMap<Key, QueryHandle> running = new ConcurrentHashMap<>();
+
+    public RunningQueries(MeterRegistry meterRegistry) {
+        Gauge.builder("qp.query.running", running, ConcurrentHashMap::size)
+                .description("Queries registered for cancellation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a query under the ID the client chose, or a new random one when it chose none.
+     * Must be followed by {@link #finish(QueryHandle)}.
+     */
+    public QueryHandle start(Long userId, String queryId) {
+        QueryHandle handle = new QueryHandle(queryId != null ? queryId : UUID.randomUUID().toString(), userId);
+        if (running.putIfAbsent(new Key(userId, handle.getId()), handle) != null) {
+            throw new IllegalStateException("Query " + handle.getId() + " is already running");
+        }
+        return handle;
+    }
+
+    public void finish(QueryHandle handle) {
+        running.remove(new Key(handle.getUserId(), handle.getId()), handle);
+    }
+
+    /**
+     * Cancels the user's query. Returns false when no such query is running or it was already
+     * cancelled.
+     */
+    public boolean cancel(Long userId, String queryId) {
+        QueryHandle handle = running.get(new Key(userId, queryId));
+        if (handle == null || !handle.cancel()) {
+            return false;
+        }
+        log.info("Cancelled query {} of user {}", queryId, userId);
+        return true;
+    }
+
+    private record Key(Long userId, String queryId) {
+    }
+}
@@ -1,102 +1,408 @@
 package com.querypilot.service;
 
 import com.querypilot.model.enums.DatabaseType;
+import com.querypilot.service.TableMetadata.Column;
+import com.querypilot.service.TableMetadata.ForeignKey;
+import com.querypilot.service.TableMetadata.Index;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Reads the structure of a target database through JDBC DatabaseMetaData and renders it as
+ * DDL for the prompt.
+ *
+ * Columns of all tables come from one catalog call and row estimates from one dialect query.
+ * Primary keys, foreign keys and indexes need a call per table; tables are split into batches
+ * that up to {@code parallelism} workers read concurrently, each on its own connection.
+ *
+ * Every table gets a fingerprint of its column list, plus its last DDL time where the dialect
+ * exposes one (MySQL CREATE_TIME), so an incremental refresh only reads tables whose
+ * fingerprint changed.
+ */
 @Service
 public class SchemaExtractorService {
 
     private static final Logger log = LoggerFactory.getLogger(SchemaExtractorService.class);
 
+    private static final String[] TABLE_TYPES = {"TABLE", "VIEW"};
+    private static final String TABLE_SEPARATOR = "\n\n";
+    private static final String NO_TABLES = "-- No tables found";
+
+    private final Executor queryExecutor;
+    private final int parallelism;
+    private final int batchSize;
+
+    public SchemaExtractorService(@Qualifier("queryExecutor") Executor queryExecutor,
+                                  @Value("${app.schema.extraction.parallelism:4}") int parallelism,
+                                  @Value("${app.schema.extraction.batch-size:50}") int batchSize) {
+        this.queryExecutor = queryExecutor;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
     /**
-     * Extracts schema DDL from the target database using information_schema.
-     * Returns a DDL-like text representation of all tables and columns.
+     * Extracts schema DDL from the target database, reading up to the configured number of
+     * table batches in parallel. Returns a DDL-like text representation of all tables with
+     * their columns, keys, indexes and estimated row counts.
      */
     public String extractSchema(JdbcTemplate jdbcTemplate, DatabaseType type, String url) {
+        return extractSchema(jdbcTemplate, type, url, parallelism);
+    }
+
+    /**
+     * Same as {@link #extractSchema(JdbcTemplate, DatabaseType, String)} with an explicit
+     * parallelism; pass 1 when the template is backed by a single connection.
+     */
+    public String extractSchema(JdbcTemplate jdbcTemplate, DatabaseType type, String url, int parallelism) {
+        return buildDdl(extractTables(jdbcTemplate, type, url, parallelism));
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Reads the metadata of every table and view, ordered by table name.
+     */
+    public List<TableMetadata> extractTables(JdbcTemplate jdbcTemplate, DatabaseType type, String url,
+                                             int parallelism) {
+        return extractChanges(jdbcTemplate, type, url, Map.of(), parallelism).changed();
+    }
+
+    /**
+     * Fingerprints every table and view, then reads the full metadata only of the tables whose
+     * fingerprint differs from {@code knownFingerprints} (or that are not in it). Tables in
+     * {@code knownFingerprints} but missing from the result's fingerprints were dropped.
+     */
+    public SchemaChanges extractChanges(JdbcTemplate jdbcTemplate, DatabaseType type, String url,
+                                        Map<String, String> knownFingerprints, int parallelism) {
         String dbName = extractDatabaseName(url, type);
         log.info("Extracting schema for database: {} (type: {})", dbName, type);
+        long start = System.nanoTime();
+
+        Scope scope = scopeFor(type, dbName);
+        Map<String, List<Column>> columns = jdbcTemplate.execute(
+                (ConnectionCallback<Map<String, List<Column>>>) con -> readColumns(con.getMetaData(), scope));
+        Map<String, TableStats> stats = readTableStats(jdbcTemplate, type, dbName);
+
+        Map<String, String> fingerprints = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        columns.forEach((table, tableColumns) -> {
+            TableStats tableStats = stats.get(table);
+            String fingerprint = fingerprint(tableColumns, tableStats != null ? tableStats.ddlTime() : null);
+            fingerprints.put(table, fingerprint);
+            if (!fingerprint.equals(knownFingerprints.get(table))) {
+                names.add(table);
+            }
+        });
+        // Binary order, as SchemaStore assembles the DDL; the prompt and SQL cache keys depend on it
+        Collections.sort(names);
+        ConcurrentLinkedQueue<List<String>> batches = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < names.size(); i += batchSize) {
+            batches.add(names.subList(i, Math.min(names.size(), i + batchSize)));
+        }
 
-        String query = buildSchemaQuery(type);
-        List<Map<String, Object>> rows;
+        Map<String, TableMetadata> tables = new ConcurrentHashMap<>();
+        Runnable worker = () -> {
+            List<String> batch;
+            while ((batch = batches.poll()) != null) {
+                List<String> tableNames = batch;
+                jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                    DatabaseMetaData metaData = con.getMetaData();
+                    for (String table : tableNames) {
+                        List<String> primaryKey = readPrimaryKey(metaData, scope, table);
+                        TableStats tableStats = stats.get(table);
+                        tables.put(table, new TableMetadata(table, columns.get(table), primaryKey,
+                                readForeignKeys(metaData, scope, table),
+                                readIndexes(metaData, scope, table, primaryKey),
+                                tableStats != null ? tableStats.rows() : null));
+                    }
+                    return null;
+                });
+            }
+        };
 
-        if (type == DatabaseType.H2) {
-            rows = jdbcTemplate.queryForList(query);
+        int workers = Math.min(parallelism, batches.size());
+        if (workers <= 1) {
+            worker.run();
         } else {
-            rows = jdbcTemplate.queryForList(query, dbName);
+            List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                running.add(CompletableFuture.runAsync(worker, queryExecutor));
+            }
+            await(CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)));
+        }
+
+        List<TableMetadata> changed = new ArrayList<>(names.size());
+        for (String name : names) {
+            changed.add(tables.get(name));
+        }
+        log.info("Extracted {} of {} tables in {} ms", changed.size(), fingerprints.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new SchemaChanges(fingerprints, changed);
+    }
+
+    /**
+     * Renders the tables as DDL in one pass: a CREATE TABLE block per table with inline
+     * primary and foreign keys, its estimated row count and its secondary indexes.
+     */
+    String buildDdl(List<TableMetadata> tables) {
+        if (tables.isEmpty()) {
+            return NO_TABLES;
+        }
+
+        StringBuilder ddl = new StringBuilder(tables.size() * 256);
+        for (TableMetadata table : tables) {
+            if (!ddl.isEmpty()) {
+                ddl.append(TABLE_SEPARATOR);
+            }
+            appendTable(ddl, table);
+        }
+        return ddl.toString();
+    }
+
+    /**
+     * DDL block of a single table, as it appears in the schema DDL.
+     */
+    public String tableDdl(TableMetadata table) {
+        StringBuilder ddl = new StringBuilder(256);
+        appendTable(ddl, table);
+        return ddl.toString();
+    }
+
+    /**
+     * Joins per-table DDL blocks, already ordered by table name, into the schema DDL; the
+     * result is the same as rendering all tables at once.
+     */
+    public String assembleDdl(List<String> tableDdls) {
+        return tableDdls.isEmpty() ? NO_TABLES : String.join(TABLE_SEPARATOR, tableDdls);
+    }
+
+    private void appendTable(StringBuilder ddl, TableMetadata table) {
+        List<String> primaryKey = table.primaryKey();
+        boolean inlinePrimaryKey = primaryKey.size() == 1;
+
+        ddl.append("CREATE TABLE ").append(table.name()).append(" (\n");
+        String separator = "";
+        for (Column column : table.columns()) {
+            ddl.append(separator).append("  ").append(column.name()).append(' ').append(column.type());
+            if (!column.nullable()) {
+                ddl.append(" NOT NULL");
+            }
+            if (inlinePrimaryKey && primaryKey.get(0).equals(column.name())) {
+                ddl.append(" PRIMARY KEY");
+            }
+            separator = ",\n";
+        }
+        if (primaryKey.size() > 1) {
+            ddl.append(separator).append("  PRIMARY KEY (");
+            appendList(ddl, primaryKey).append(')');
+        }
+        for (ForeignKey foreignKey : table.foreignKeys()) {
+            ddl.append(separator).append("  FOREIGN KEY (");
+            appendList(ddl, foreignKey.columns()).append(") REFERENCES ").append(foreignKey.referencedTable()).append(" (");
+            appendList(ddl, foreignKey.referencedColumns()).append(')');
+        }
+        ddl.append("\n);");
+        if (table.rowCount() != null) {
+            ddl.append(" -- ~").append(table.rowCount()).append(" rows");
+        }
+        for (Index index : table.indexes()) {
+            ddl.append('\n').append(index.unique() ? "CREATE UNIQUE INDEX " : "CREATE INDEX ")
+                    .append(index.name()).append(" ON ").append(table.name()).append(" (");
+            appendList(ddl, index.columns()).append(");");
+        }
+    }
+
+    private static StringBuilder appendList(StringBuilder ddl, List<String> items) {
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                ddl.append(", ");
+            }
+            ddl.append(items.get(i));
         }
+        return ddl;
+    }
+
+    private Map<String, List<Column>> readColumns(DatabaseMetaData metaData, Scope scope) throws SQLException {
+        Map<String, List<Column>> columns = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getColumns(scope.catalog(), scope.schema(), "%", "%")) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                columns.computeIfAbsent(table, k -> new ArrayList<>()).add(new Column(
+                        rs.getString("COLUMN_NAME"),
+                        typeName(rs.getString("TYPE_NAME"), rs.getInt("COLUMN_SIZE")),
+                        !"NO".equalsIgnoreCase(rs.getString("IS_NULLABLE"))));
+            }
+        }
+        // Restrict to tables and views (getColumns also reports e.g. system and synonym columns on some drivers)
+        Map<String, List<Column>> tables = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getTables(scope.catalog(), scope.schema(), "%", TABLE_TYPES)) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                List<Column> tableColumns = columns.get(table);
+                if (tableColumns != null) {
+                    tables.put(table, tableColumns);
+                }
+            }
+        }
+        return tables;
+    }
 
-        return buildDdlFromRows(rows);
+    private List<String> readPrimaryKey(DatabaseMetaData metaData, Scope scope, String table) throws SQLException {
+        Map<Integer, String> bySequence = new TreeMap<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(scope.catalog(), scope.schema(), table)) {
+            while (rs.next()) {
+                bySequence.put(rs.getInt("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        }
+        return List.copyOf(bySequence.values());
+    }
+
+    private List<ForeignKey> readForeignKeys(DatabaseMetaData metaData, Scope scope, String table) throws SQLException {
+        Map<String, ForeignKeyBuilder> byName = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getImportedKeys(scope.catalog(), scope.schema(), table)) {
+            while (rs.next()) {
+                String referencedTable = rs.getString("PKTABLE_NAME");
+                String name = rs.getString("FK_NAME");
+                byName.computeIfAbsent(name != null ? name : referencedTable, k -> new ForeignKeyBuilder(referencedTable))
+                        .add(rs.getString("FKCOLUMN_NAME"), rs.getString("PKCOLUMN_NAME"));
+            }
+        }
+        List<ForeignKey> foreignKeys = new ArrayList<>(byName.size());
+        for (ForeignKeyBuilder builder : byName.values()) {
+            foreignKeys.add(new ForeignKey(builder.columns, builder.referencedTable, builder.referencedColumns));
+        }
+        return foreignKeys;
     }
 
-    private String buildSchemaQuery(DatabaseType type) {
+    private List<Index> readIndexes(DatabaseMetaData metaData, Scope scope, String table,
+                                    List<String> primaryKey) throws SQLException {
+        Map<String, List<String>> columnsByIndex = new LinkedHashMap<>();
+        Map<String, Boolean> uniqueByIndex = new HashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(scope.catalog(), scope.schema(), table, false, true)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (name == null || column == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                    continue;
+                }
+                columnsByIndex.computeIfAbsent(name, k -> new ArrayList<>()).add(column);
+                uniqueByIndex.put(name, !rs.getBoolean("NON_UNIQUE"));
+            }
+        }
+
+        List<Index> indexes = new ArrayList<>(columnsByIndex.size());
+        columnsByIndex.forEach((name, columns) -> {
+            boolean unique = uniqueByIndex.get(name);
+            // The primary key index is already expressed by PRIMARY KEY
+            if (!(unique && columns.equals(primaryKey))) {
+                indexes.add(new Index(name, unique, columns));
+            }
+        });
+        return indexes;
+    }
+
+    /**
+     * Estimated row count and last DDL time per table from the catalog; empty when unavailable.
+     */
+    private Map<String, TableStats> readTableStats(JdbcTemplate jdbcTemplate, DatabaseType type, String dbName) {
+        Map<String, TableStats> stats = new HashMap<>();
+        try {
+            jdbcTemplate.query(buildTableStatsQuery(type), (RowCallbackHandler) rs -> {
+                long rows = rs.getLong("TABLE_ROWS");
+                Long rowCount = rs.wasNull() || rows < 0 ? null : rows;
+                stats.put(rs.getString("TABLE_NAME"), new TableStats(rowCount, rs.getString("DDL_TIME")));
+            }, type == DatabaseType.MYSQL ? new Object[]{dbName} : new Object[0]);
+        } catch (DataAccessException e) {
+            log.debug("Table statistics unavailable for {}: {}", dbName, e.getMessage());
+        }
+        return stats;
+    }
+
+    private String buildTableStatsQuery(DatabaseType type) {
         return switch (type) {
+            // CREATE_TIME changes whenever ALTER TABLE rebuilds the table
             case MYSQL -> """
-                    SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_KEY
-                    FROM information_schema.COLUMNS
+                    SELECT TABLE_NAME, TABLE_ROWS, CREATE_TIME AS DDL_TIME
+                    FROM information_schema.TABLES
                     WHERE TABLE_SCHEMA = ?
-                    ORDER BY TABLE_NAME, ORDINAL_POSITION
                     """;
+            // reltuples is -1 for tables that were never analyzed
             case POSTGRESQL -> """
-                    SELECT table_name AS TABLE_NAME, column_name AS COLUMN_NAME,
-                           data_type AS DATA_TYPE, is_nullable AS IS_NULLABLE,
-                           '' AS COLUMN_KEY
-                    FROM information_schema.columns
-                    WHERE table_catalog = ? AND table_schema = 'public'
-                    ORDER BY table_name, ordinal_position
+                    SELECT c.relname AS TABLE_NAME, c.reltuples::bigint AS TABLE_ROWS, NULL AS DDL_TIME
+                    FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+                    WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p')
                     """;
             case H2 -> """
-                    SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, IS_NULLABLE,
-                           '' AS COLUMN_KEY
-                    FROM INFORMATION_SCHEMA.COLUMNS
+                    SELECT TABLE_NAME, ROW_COUNT_ESTIMATE AS TABLE_ROWS, NULL AS DDL_TIME
+                    FROM INFORMATION_SCHEMA.TABLES
                     WHERE TABLE_SCHEMA = 'PUBLIC'
-                    ORDER BY TABLE_NAME, ORDINAL_POSITION
                     """;
         };
     }
 
-    private String buildDdlFromRows(List<Map<String, Object>> rows) {
-        if (rows.isEmpty()) {
-            return "-- No tables found";
+    private static String fingerprint(List<Column> columns, String ddlTime) {
+        StringBuilder text = new StringBuilder(columns.size() * 32);
+        for (Column column : columns) {
+            text.append(column.name()).append(' ').append(column.type()).append(' ')
+                    .append(column.nullable()).append('\n');
         }
+        if (ddlTime != null) {
+            text.append(ddlTime);
+        }
+        return DigestUtils.md5DigestAsHex(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
 
-        // Group columns by table
-        Map<String, StringBuilder> tables = new LinkedHashMap<>();
-
-        for (Map<String, Object> row : rows) {
-            String tableName = (String) row.get("TABLE_NAME");
-            String columnName = (String) row.get("COLUMN_NAME");
-            String dataType = String.valueOf(row.get("DATA_TYPE"));
-            String nullable = String.valueOf(row.get("IS_NULLABLE"));
-            String key = String.valueOf(row.get("COLUMN_KEY"));
+    private Scope scopeFor(DatabaseType type, String dbName) {
+        return switch (type) {
+            case MYSQL -> new Scope(dbName, null);
+            case POSTGRESQL -> new Scope(null, "public");
+            case H2 -> new Scope(null, "PUBLIC");
+        };
+    }
 
-            tables.computeIfAbsent(tableName, k -> new StringBuilder("CREATE TABLE " + k + " (\n"));
+    private static String typeName(String type, int size) {
+        boolean sized = type != null && type.toUpperCase(Locale.ROOT).contains("CHAR") && size > 0 && size < Integer.MAX_VALUE;
+        return sized ? type + "(" + size + ")" : String.valueOf(type);
+    }
 
-            StringBuilder sb = tables.get(tableName);
-            if (!sb.toString().endsWith("(\n")) {
-                sb.append(",\n");
-            }
-            sb.append("  ").append(columnName).append(" ").append(dataType);
-            if ("NO".equalsIgnoreCase(nullable)) {
-                sb.append(" NOT NULL");
-            }
-            if ("PRI".equalsIgnoreCase(key)) {
-                sb.append(" PRIMARY KEY");
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
         }
-
-        StringBuilder ddl = new StringBuilder();
-        for (Map.Entry<String, StringBuilder> entry : tables.entrySet()) {
-            ddl.append(entry.getValue()).append("\n);\n\n");
-        }
-
-        return ddl.toString().trim();
     }
 
     private String extractDatabaseName(String url, DatabaseType type) {
@@ -119,4 +425,36 @@ public class SchemaExtractorService {
             return "";
         }
     }
+
+    /**
+     * Fingerprint of every table and view in the schema, and the full metadata of the tables
+     * whose fingerprint changed, ordered by table name.
+     */
+    public record SchemaChanges(Map<String, String> fingerprints, List<TableMetadata> changed) {
+    }
+
+    private record TableStats(Long rows, String ddlTime) {
+    }
+
+    /**
+     * Catalog and schema arguments for the DatabaseMetaData calls of a dialect.
+     */
+    private record Scope(String catalog, String schema) {
+    }
+
+    private static final class ForeignKeyBuilder {
+        private final String referencedTable;
+        private final List<String> columns = new ArrayList<>();
+        private final List<String> referencedColumns = new ArrayList<>();
+
+        private ForeignKeyBuilder(String referencedTable) {
+            this.referencedTable = referencedTable;
+        }
+
+        private ForeignKeyBuilder add(String column, String referencedColumn) {
+            columns.add(column);
+            referencedColumns.add(referencedColumn);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,218 @@
+package com.querypilot.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory BM25 index over the table and column identifiers of a schema DDL as produced by
+ * SchemaExtractorService. Each CREATE TABLE block is one document; table name tokens are
+ * weighted higher than column tokens. Foreign keys (explicit REFERENCES clauses, or
+ * {@code <table>_id} columns naming another table) are kept as neighbor links.
+ */
+final class SchemaIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TABLE_NAME_WEIGHT = 3;
+
+    private static final Pattern BLOCK_SEPARATOR = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE\\s+TABLE\\s+([\\w.\"`]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern REFERENCES = Pattern.compile(
+            "REFERENCES\\s+([\\w.\"`]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMN_LINE = Pattern.compile("^\\s+([\\w\"`]+)\\s");
+    private static final Pattern NON_COLUMN_LINE = Pattern.compile(
+            "^\\s*(PRIMARY|FOREIGN|CONSTRAINT|UNIQUE|KEY|INDEX|CHECK)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CAMEL_BOUNDARY = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "all", "by", "each", "for", "from", "get", "give", "how", "in",
+            "is", "list", "me", "many", "of", "on", "or", "per", "show", "the", "to", "what",
+            "which", "who", "with");
+
+    private final String schemaDdl;
+    private final List<Table> tables = new ArrayList<>();
+    private final Map<String, Integer> documentFrequency = new HashMap<>();
+    private final double averageLength;
+
+    SchemaIndex(String schemaDdl) {
+        this.schemaDdl = schemaDdl;
+        for (String block : BLOCK_SEPARATOR.split(schemaDdl)) {
+            Matcher create = CREATE_TABLE.matcher(block);
+            if (create.find()) {
+                tables.add(parseTable(unquote(create.group(1)), block.strip()));
+            }
+        }
+        linkImplicitForeignKeys();
+
+        long totalLength = 0;
+        for (Table table : tables) {
+            totalLength += table.length;
+            for (String term : table.termFrequency.keySet()) {
+                documentFrequency.merge(term, 1, Integer::sum);
+            }
+        }
+        this.averageLength = tables.isEmpty() ? 0 : (double) totalLength / tables.size();
+    }
+
+    String getSchemaDdl() {
+        return schemaDdl;
+    }
+
+    List<Table> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * Scores every table against the question; tables without any matching identifier are omitted.
+     * The result is ordered by descending score.
+     */
+    List<ScoredTable> rank(String question) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokenize(question)) {
+            if (!STOP_WORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+
+        List<ScoredTable> ranked = new ArrayList<>();
+        for (Table table : tables) {
+            double score = 0;
+            for (String term : terms) {
+                Integer tf = table.termFrequency.get(term);
+                if (tf == null) {
+                    continue;
+                }
+                int df = documentFrequency.get(term);
+                double idf = Math.log(1 + (tables.size() - df + 0.5) / (df + 0.5));
+                double norm = K1 * (1 - B + B * table.length / averageLength);
+                score += idf * tf * (K1 + 1) / (tf + norm);
+            }
+            if (score > 0) {
+                ranked.add(new ScoredTable(table, score));
+            }
+        }
+        ranked.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return ranked;
+    }
+
+    private Table parseTable(String name, String block) {
+        Map<String, Integer> termFrequency = new HashMap<>();
+        int length = 0;
+        for (String token : tokenize(name)) {
+            termFrequency.merge(token, TABLE_NAME_WEIGHT, Integer::sum);
+            length += TABLE_NAME_WEIGHT;
+        }
+
+        List<String> columns = new ArrayList<>();
+        String[] lines = block.split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            Matcher column = COLUMN_LINE.matcher(lines[i]);
+            if (column.find() && !NON_COLUMN_LINE.matcher(lines[i]).find()) {
+                String columnName = unquote(column.group(1));
+                columns.add(columnName.toLowerCase(Locale.ROOT));
+                for (String token : tokenize(columnName)) {
+                    termFrequency.merge(token, 1, Integer::sum);
+                    length++;
+                }
+            }
+        }
+
+        Set<String> references = new LinkedHashSet<>();
+        Matcher reference = REFERENCES.matcher(block);
+        while (reference.find()) {
+            references.add(unquote(reference.group(1)));
+        }
+        return new Table(name, block, columns, termFrequency, length, references);
+    }
+
+    /**
+     * Treats a column named {@code <table>_id} as a reference to that table when it exists.
+     */
+    private void linkImplicitForeignKeys() {
+        Map<String, String> tablesByStem = new HashMap<>();
+        for (Table table : tables) {
+            tablesByStem.put(stem(table.name), table.name);
+        }
+        for (Table table : tables) {
+            for (String column : table.columns) {
+                if (column.endsWith("_id") && column.length() > 3) {
+                    String target = tablesByStem.get(stem(column.substring(0, column.length() - 3)));
+                    if (target != null && !target.equals(table.name)) {
+                        table.references.add(target);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits identifiers and free text into lower-case, singularized word tokens
+     * (order_items, orderItems and "order items" all yield [order, item]).
+     */
+    static List<String> tokenize(String text) {
+        String spaced = CAMEL_BOUNDARY.matcher(text).replaceAll(" ");
+        List<String> tokens = new ArrayList<>();
+        for (String part : NON_WORD.split(spaced.toLowerCase(Locale.ROOT))) {
+            if (!part.isEmpty()) {
+                tokens.add(stem(part));
+            }
+        }
+        return tokens;
+    }
+
+    private static String stem(String word) {
+        String w = word.toLowerCase(Locale.ROOT);
+        if (w.length() > 4 && w.endsWith("ies")) {
+            return w.substring(0, w.length() - 3) + "y";
+        }
+        if (w.length() > 4 && (w.endsWith("ses") || w.endsWith("xes") || w.endsWith("ches") || w.endsWith("shes"))) {
+            return w.substring(0, w.length() - 2);
+        }
+        if (w.length() > 3 && w.endsWith("s") && !w.endsWith("ss")) {
+            return w.substring(0, w.length() - 1);
+        }
+        return w;
+    }
+
+    private static String unquote(String identifier) {
+        String name = identifier.replace("\"", "").replace("`", "");
+        int dot = name.lastIndexOf('.');
+        return (dot >= 0 ? name.substring(dot + 1) : name).toLowerCase(Locale.ROOT);
+    }
+
+    static final class Table {
+        private final String name;
+        private final String ddl;
+        private final List<String> columns;
+        private final Map<String, Integer> termFrequency;
+        private final int length;
+        private final Set<String> references;
+
+        private Table(String name, String ddl, List<String> columns, Map<String, Integer> termFrequency,
+                      int length, Set<String> references) {
+            this.name = name;
+            this.ddl = ddl;
+            this.columns = columns;
+            this.termFrequency = termFrequency;
+            this.length = length;
+            this.references = references;
+        }
+
+        String getName() { return name; }
+        String getDdl() { return ddl; }
+        Set<String> getReferences() { return references; }
+    }
+
+    record ScoredTable(Table table, double score) {
+    }
+}
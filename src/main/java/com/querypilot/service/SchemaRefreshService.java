@@ -0,0 +1,161 @@
+package com.querypilot.service;
+
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.repository.DataSourceConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the stored schema of each connection current without re-reading the whole catalog.
+ *
+ * The schema is stored in {@link SchemaStore} as one DDL block per table together with the
+ * table's fingerprint. A refresh fingerprints all tables from the catalog, re-reads only tables
+ * that are new or whose fingerprint changed and drops tables that disappeared. Only when that
+ * changes the schema DDL is the schema version incremented and SQL and results cached for the
+ * connection invalidated.
+ *
+ * Connections with an open pool are refreshed in the background on a fixed interval, with
+ * little parallelism so queries keep most of the pool; connections whose pool is closed are
+ * left alone until they are used again. Connections that have no stored schema yet (added
+ * before schemas were stored per table) get a full refresh in the background at startup.
+ */
+@Service
+public class SchemaRefreshService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaRefreshService.class);
+
+    private final DataSourceConfigRepository configRepository;
+    private final SchemaStore schemaStore;
+    private final SchemaExtractorService schemaExtractorService;
+    private final DynamicConnectionFactory connectionFactory;
+    private final SqlGenerationCache sqlGenerationCache;
+    private final QueryResultCache queryResultCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor queryExecutor;
+    private final boolean backgroundEnabled;
+    private final int backgroundParallelism;
+    private final SingleFlight<Long, DataSourceConfig> refreshes = new SingleFlight<>();
+
+    public SchemaRefreshService(DataSourceConfigRepository configRepository,
+                                SchemaStore schemaStore,
+                                SchemaExtractorService schemaExtractorService,
+                                DynamicConnectionFactory connectionFactory,
+                                SqlGenerationCache sqlGenerationCache,
+                                QueryResultCache queryResultCache,
+                                TransactionTemplate transactionTemplate,
+                                @Qualifier("queryExecutor") Executor queryExecutor,
+                                @Value("${app.schema.refresh.background-enabled:true}") boolean backgroundEnabled,
+                                @Value("${app.schema.refresh.background-parallelism:1}") int backgroundParallelism) {
+        this.configRepository = configRepository;
+        this.schemaStore = schemaStore;
+        this.schemaExtractorService = schemaExtractorService;
+        this.connectionFactory = connectionFactory;
+        this.sqlGenerationCache = sqlGenerationCache;
+        this.queryResultCache = queryResultCache;
+        this.transactionTemplate = transactionTemplate;
+        this.queryExecutor = queryExecutor;
+        this.backgroundEnabled = backgroundEnabled;
+        this.backgroundParallelism = backgroundParallelism;
+    }
+
+    /**
+     * Refreshes the schema of a connection. An incremental refresh re-reads only tables whose
+     * fingerprint changed; a full refresh re-reads every table, which also updates row estimates
+     * and picks up key or index changes the fingerprint does not cover. Concurrent refreshes of
+     * the same connection share one extraction.
+     */
+    public DataSourceConfig refresh(Long connectionId, boolean full) {
+        return refreshes.execute(connectionId, () -> {
+            DataSourceConfig config = configRepository.findById(connectionId)
+                    .orElseThrow(() -> new RuntimeException("Connection not found: " + connectionId));
+            return connectionFactory.withJdbcTemplate(connectionId, jdbcTemplate ->
+                    refresh(config, jdbcTemplate, full, schemaExtractorService.getParallelism()));
+        });
+    }
+
+    /**
+     * Stores the schema of a connection that was just added and saves the connection with it.
+     */
+    public DataSourceConfig saveWithSchema(DataSourceConfig config, SchemaExtractorService.SchemaChanges schema) {
+        return transactionTemplate.execute(status -> apply(configRepository.save(config), schema, true).config());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void storeMissingSchemas() {
+        if (!backgroundEnabled) {
+            return;
+        }
+        for (DataSourceConfig config : configRepository.findBySchemaVersionIsNull()) {
+            CompletableFuture.runAsync(() -> refresh(config.getId(), true), queryExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Could not store schema of connection {}: {}", config.getId(), e.getMessage());
+                        return null;
+                    });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.schema.refresh.interval-ms:900000}",
+            initialDelayString = "${app.schema.refresh.interval-ms:900000}")
+    public void refreshOpenConnections() {
+        if (!backgroundEnabled) {
+            return;
+        }
+        for (Long connectionId : connectionFactory.openConnectionIds()) {
+            try {
+                connectionFactory.withOpenJdbcTemplate(connectionId, jdbcTemplate ->
+                        configRepository.findById(connectionId).ifPresent(config -> refreshes.execute(connectionId,
+                                () -> refresh(config, jdbcTemplate, false, backgroundParallelism))));
+            } catch (RuntimeException e) {
+                log.warn("Background schema refresh failed for connection {}: {}", connectionId, e.getMessage());
+            }
+        }
+    }
+
+    private DataSourceConfig refresh(DataSourceConfig config, JdbcTemplate jdbcTemplate, boolean full, int parallelism) {
+        Map<String, String> known = full ? Map.of() : schemaStore.fingerprints(config.getId());
+        SchemaExtractorService.SchemaChanges changes = schemaExtractorService.extractChanges(
+                jdbcTemplate, config.getType(), config.getUrl(), known, parallelism);
+
+        Outcome outcome = transactionTemplate.execute(status -> apply(config, changes, full));
+        if (outcome.changed()) {
+            sqlGenerationCache.invalidateConnection(config.getId());
+            queryResultCache.invalidateConnection(config.getId());
+            log.info("Schema of connection {} changed, now version {}", config.getId(),
+                    outcome.config().getSchemaVersion());
+        }
+        return outcome.config();
+    }
+
+    /**
+     * Stores the changes and, when they change the schema DDL, moves the connection to the next
+     * schema version.
+     */
+    private Outcome apply(DataSourceConfig extracted, SchemaExtractorService.SchemaChanges changes, boolean full) {
+        // Re-read so settings changed while the catalog was being read are not overwritten
+        DataSourceConfig config = configRepository.findById(extracted.getId())
+                .orElseThrow(() -> new RuntimeException("Connection not found: " + extracted.getId()));
+        boolean changed = schemaStore.apply(config.getId(), changes);
+        if (changed || config.getSchemaVersion() == null) {
+            config.setSchemaVersion(config.getSchemaVersion() == null ? 1 : config.getSchemaVersion() + 1);
+            config = configRepository.save(config);
+        }
+        log.info("{} schema refresh of connection {}: {} tables, {} re-read", full ? "Full" : "Incremental",
+                config.getId(), changes.fingerprints().size(), changes.changed().size());
+        return new Outcome(config, changed);
+    }
+
+    private record Outcome(DataSourceConfig config, boolean changed) {
+    }
+}
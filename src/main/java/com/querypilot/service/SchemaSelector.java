@@ -0,0 +1,118 @@
+package com.querypilot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses the part of a connection's schema DDL that goes into the DeepSeek prompt.
+ * Schemas that fit the token budget are passed through unchanged; larger ones are reduced
+ * to the top-N tables ranked by BM25 over their identifiers plus their foreign-key
+ * neighbors. If nothing in the schema matches the question the full schema is used.
+ */
+@Service
+public class SchemaSelector {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaSelector.class);
+
+    // Rough token estimate for DDL text (identifiers and punctuation average ~4 chars per token)
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final boolean enabled;
+    private final int topTables;
+    private final int tokenBudget;
+    private final ConcurrentHashMap<Long, SchemaIndex> indexes = new ConcurrentHashMap<>();
+
+    public SchemaSelector(@Value("${app.query.schema-pruning.enabled:true}") boolean enabled,
+                          @Value("${app.query.schema-pruning.top-tables:8}") int topTables,
+                          @Value("${app.query.schema-pruning.token-budget:8000}") int tokenBudget) {
+        this.enabled = enabled;
+        this.topTables = topTables;
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * Returns the schema DDL to send to the LLM for the given question.
+     */
+    public String selectSchema(Long connectionId, String schemaDdl, String question) {
+        if (!enabled || schemaDdl == null || estimateTokens(schemaDdl) <= tokenBudget) {
+            return schemaDdl;
+        }
+
+        SchemaIndex index = indexFor(connectionId, schemaDdl);
+        List<SchemaIndex.ScoredTable> ranked = index.rank(question);
+        if (ranked.isEmpty()) {
+            log.debug("No table matched the question for connection {}, using full schema", connectionId);
+            return schemaDdl;
+        }
+
+        Map<String, SchemaIndex.Table> byName = index.getTables().stream()
+                .collect(Collectors.toMap(SchemaIndex.Table::getName, Function.identity(), (a, b) -> a));
+
+        // Candidates in priority order: top-N matches first, then the tables they reference
+        Set<String> candidates = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(topTables, ranked.size()); i++) {
+            candidates.add(ranked.get(i).table().getName());
+        }
+        for (String name : new ArrayList<>(candidates)) {
+            candidates.addAll(byName.get(name).getReferences());
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        int usedTokens = 0;
+        for (String name : candidates) {
+            SchemaIndex.Table table = byName.get(name);
+            if (table == null) {
+                continue;
+            }
+            int tokens = estimateTokens(table.getDdl());
+            if (!selected.isEmpty() && usedTokens + tokens > tokenBudget) {
+                continue;
+            }
+            selected.add(name);
+            usedTokens += tokens;
+        }
+
+        // Keep the original table order so the same selection always yields the same prompt
+        StringBuilder ddl = new StringBuilder();
+        ddl.append("-- ").append(selected.size()).append(" of ").append(index.getTables().size())
+                .append(" tables, selected by relevance to the question\n\n");
+        for (SchemaIndex.Table table : index.getTables()) {
+            if (selected.contains(table.getName())) {
+                ddl.append(table.getDdl()).append("\n\n");
+            }
+        }
+        log.debug("Pruned schema for connection {} to {} tables (~{} tokens)", connectionId, selected.size(), usedTokens);
+        return ddl.toString().strip();
+    }
+
+    /**
+     * Drops the cached index of a connection.
+     */
+    public void invalidate(Long connectionId) {
+        indexes.remove(connectionId);
+    }
+
+    private SchemaIndex indexFor(Long connectionId, String schemaDdl) {
+        SchemaIndex index = indexes.get(connectionId);
+        if (index == null || !index.getSchemaDdl().equals(schemaDdl)) {
+            index = new SchemaIndex(schemaDdl);
+            indexes.put(connectionId, index);
+        }
+        return index;
+    }
+
+    private static int estimateTokens(String text) {
+        return text.length() / CHARS_PER_TOKEN;
+    }
+}
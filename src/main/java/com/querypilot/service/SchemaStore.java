@@ -0,0 +1,176 @@
+package com.querypilot.service;
+
+import com.querypilot.model.dto.ColumnSummary;
+import com.querypilot.model.dto.TableSummary;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.entity.SchemaColumn;
+import com.querypilot.model.entity.SchemaTable;
+import com.querypilot.repository.SchemaColumnRepository;
+import com.querypilot.repository.SchemaTableRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores connection schemas as schema_table rows (one DDL block and fingerprint per table) and
+ * schema_column rows, and serves the assembled schema DDL for prompts.
+ *
+ * The assembled DDL is built from the table blocks the first time a query needs it and kept in
+ * memory per connection until the connection's schema version moves on, so connection configs
+ * stay small and the blocks are only read when a schema is actually used.
+ */
+@Service
+public class SchemaStore {
+
+    private final SchemaTableRepository schemaTableRepository;
+    private final SchemaColumnRepository schemaColumnRepository;
+    private final SchemaExtractorService schemaExtractorService;
+    private final ConcurrentHashMap<Long, VersionedDdl> ddlCache = new ConcurrentHashMap<>();
+
+    public SchemaStore(SchemaTableRepository schemaTableRepository,
+                       SchemaColumnRepository schemaColumnRepository,
+                       SchemaExtractorService schemaExtractorService) {
+        this.schemaTableRepository = schemaTableRepository;
+        this.schemaColumnRepository = schemaColumnRepository;
+        this.schemaExtractorService = schemaExtractorService;
+    }
+
+    /**
+     * Returns the schema DDL of the connection at its current schema version, or null when no
+     * schema has been stored yet.
+     */
+    public String getSchemaDdl(DataSourceConfig config) {
+        Long version = config.getSchemaVersion();
+        if (version == null) {
+            return null;
+        }
+        VersionedDdl cached = ddlCache.get(config.getId());
+        if (cached != null && cached.version() == version) {
+            return cached.ddl();
+        }
+        List<SchemaTable> tables = new ArrayList<>(schemaTableRepository.findByConnectionId(config.getId()));
+        tables.sort(Comparator.comparing(SchemaTable::getTableName));
+        String ddl = schemaExtractorService.assembleDdl(tables.stream().map(SchemaTable::getDdl).toList());
+        // A concurrent load of a newer version wins
+        ddlCache.merge(config.getId(), new VersionedDdl(version, ddl),
+                (existing, loaded) -> existing.version() > loaded.version() ? existing : loaded);
+        return ddl;
+    }
+
+    /**
+     * Fingerprint of every stored table of the connection, by table name.
+     */
+    public Map<String, String> fingerprints(Long connectionId) {
+        Map<String, String> fingerprints = new HashMap<>();
+        for (SchemaTableRepository.TableHeader header : schemaTableRepository.findHeadersByConnectionId(connectionId)) {
+            fingerprints.put(header.getTableName(), header.getFingerprint());
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Writes the changed tables with their columns and deletes tables that are no longer in the
+     * catalog. Returns whether that changed the schema DDL. Must run in a transaction.
+     */
+    public boolean apply(Long connectionId, SchemaExtractorService.SchemaChanges changes) {
+        Set<String> dropped = new HashSet<>(fingerprints(connectionId).keySet());
+        dropped.removeAll(changes.fingerprints().keySet());
+        boolean changed = !dropped.isEmpty();
+        if (changed) {
+            List<SchemaTable> droppedTables = schemaTableRepository.findByConnectionIdAndTableNameIn(connectionId, dropped);
+            schemaColumnRepository.deleteByTableIdIn(droppedTables.stream().map(SchemaTable::getId).toList());
+            schemaTableRepository.deleteAll(droppedTables);
+        }
+        if (changes.changed().isEmpty()) {
+            return changed;
+        }
+
+        Map<String, SchemaTable> existing = new HashMap<>();
+        List<String> names = changes.changed().stream().map(TableMetadata::name).toList();
+        for (SchemaTable table : schemaTableRepository.findByConnectionIdAndTableNameIn(connectionId, names)) {
+            existing.put(table.getTableName(), table);
+        }
+
+        List<SchemaTable> written = new ArrayList<>(changes.changed().size());
+        List<Long> rewrittenIds = new ArrayList<>();
+        for (TableMetadata metadata : changes.changed()) {
+            String ddl = schemaExtractorService.tableDdl(metadata);
+            String fingerprint = changes.fingerprints().get(metadata.name());
+            SchemaTable table = existing.get(metadata.name());
+            if (table == null) {
+                table = new SchemaTable(null, connectionId, metadata.name(), fingerprint, ddl);
+                changed = true;
+            } else {
+                changed |= !ddl.equals(table.getDdl());
+                table.setFingerprint(fingerprint);
+                table.setDdl(ddl);
+                rewrittenIds.add(table.getId());
+            }
+            written.add(table);
+        }
+        if (!rewrittenIds.isEmpty()) {
+            schemaColumnRepository.deleteByTableIdIn(rewrittenIds);
+        }
+        written = schemaTableRepository.saveAll(written);
+
+        List<SchemaColumn> columns = new ArrayList<>();
+        for (int i = 0; i < written.size(); i++) {
+            Long tableId = written.get(i).getId();
+            List<TableMetadata.Column> tableColumns = changes.changed().get(i).columns();
+            for (int position = 0; position < tableColumns.size(); position++) {
+                TableMetadata.Column column = tableColumns.get(position);
+                columns.add(new SchemaColumn(null, connectionId, tableId, position, column.name(),
+                        column.type(), column.nullable()));
+            }
+        }
+        schemaColumnRepository.saveAll(columns);
+        return changed;
+    }
+
+    /**
+     * Tables of the connection with their columns, ordered by table name, without the DDL.
+     */
+    public List<TableSummary> listTables(Long connectionId) {
+        Map<Long, List<ColumnSummary>> columnsByTable = new HashMap<>();
+        for (SchemaColumn column : schemaColumnRepository.findByConnectionIdOrderByTableIdAscPositionAsc(connectionId)) {
+            columnsByTable.computeIfAbsent(column.getTableId(), id -> new ArrayList<>())
+                    .add(new ColumnSummary(column.getName(), column.getType(), Boolean.TRUE.equals(column.getNullable())));
+        }
+        List<TableSummary> tables = new ArrayList<>();
+        for (SchemaTableRepository.TableHeader header : schemaTableRepository.findHeadersByConnectionId(connectionId)) {
+            tables.add(new TableSummary(header.getTableName(), columnsByTable.getOrDefault(header.getId(), List.of())));
+        }
+        tables.sort(Comparator.comparing(TableSummary::getName));
+        return tables;
+    }
+
+    /**
+     * Number of stored tables per connection ID.
+     */
+    public Map<Long, Long> tableCounts() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (SchemaTableRepository.TableCount count : schemaTableRepository.countTablesByConnection()) {
+            counts.put(count.getConnectionId(), count.getTableCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Deletes the stored schema of a connection. Must run in a transaction.
+     */
+    public void delete(Long connectionId) {
+        schemaColumnRepository.deleteByConnectionId(connectionId);
+        schemaTableRepository.deleteByConnectionId(connectionId);
+        ddlCache.remove(connectionId);
+    }
+
+    private record VersionedDdl(long version, String ddl) {
+    }
+}
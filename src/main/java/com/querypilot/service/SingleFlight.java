@@ -0,0 +1,68 @@
+package com.querypilot.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the supplier, callers
+ * arriving while it is in flight wait on the same CompletableFuture and get its result (or
+ * exception). Nothing is kept once the call completes, so this is not a cache.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Consumer<K> onJoin;
+
+    SingleFlight() {
+        this(key -> { });
+    }
+
+    /**
+     * {@code onJoin} is told about every caller that joins an in-flight call, from that
+     * caller's thread; from then on it is certain to get the in-flight result.
+     */
+    SingleFlight(Consumer<K> onJoin) {
+        this.onJoin = onJoin;
+    }
+
+    V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            onJoin.accept(key);
+            return await(existing);
+        }
+
+        try {
+            V value = supplier.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.querypilot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of generated SQL in front of the DeepSeek call.
+ * Entries are keyed by connection, a digest of the schema DDL the SQL was generated
+ * against and the normalized question, so a schema change never serves stale SQL.
+ */
+@Service
+public class SqlGenerationCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlGenerationCache.class);
+
+    // Sentence punctuation is folded; % and - are kept because they change the meaning of a question
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{P}&&[^%\\-]]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Cache<Key, String> cache;
+
+    public SqlGenerationCache(
+            @Value("${app.query.sql-cache.max-size:1000}") long maxSize,
+            @Value("${app.query.sql-cache.ttl-seconds:1800}") long ttlSeconds,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "qp.sql.cache");
+    }
+
+    public Optional<String> get(Long connectionId, String schemaDdl, String question) {
+        return Optional.ofNullable(cache.getIfPresent(key(connectionId, schemaDdl, question)));
+    }
+
+    public void put(Long connectionId, String schemaDdl, String question, String sql) {
+        cache.put(key(connectionId, schemaDdl, question), sql);
+    }
+
+    /**
+     * Drops every cached entry for a connection, e.g. after its schema changed or it was deleted.
+     */
+    public void invalidateConnection(Long connectionId) {
+        cache.asMap().keySet().removeIf(key -> key.connectionId().equals(connectionId));
+        log.debug("Invalidated cached SQL for connection {}", connectionId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Folds case, sentence punctuation and whitespace so trivially different phrasings share an entry.
+     */
+    static String normalizeQuestion(String question) {
+        String folded = PUNCTUATION.matcher(question.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return WHITESPACE.matcher(folded).replaceAll(" ").strip();
+    }
+
+    private Key key(Long connectionId, String schemaDdl, String question) {
+        String schemaHash = DigestUtils.md5DigestAsHex(
+                (schemaDdl == null ? "" : schemaDdl).getBytes(StandardCharsets.UTF_8));
+        return new Key(connectionId, schemaHash, normalizeQuestion(question));
+    }
+
+    private record Key(Long connectionId, String schemaHash, String question) {
+    }
+}
@@ -2,6 +2,8 @@ package com.querypilot.service;
 
 import com.querypilot.exception.SqlSafetyException;
 import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.alter.Alter;
@@ -11,6 +13,8 @@ import net.sf.jsqlparser.statement.drop.Drop;
 import net.sf.jsqlparser.statement.execute.Execute;
 import net.sf.jsqlparser.statement.grant.Grant;
 import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.Fetch;
+import net.sf.jsqlparser.statement.select.Limit;
 import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.truncate.Truncate;
 import net.sf.jsqlparser.statement.update.Update;
@@ -18,79 +22,89 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class SqlSanitizer {
 
     private static final Logger log = LoggerFactory.getLogger(SqlSanitizer.class);
 
-    // Pattern to match SQL single-line comments (-- ...)
-    private static final Pattern SINGLE_LINE_COMMENT = Pattern.compile("--[^\\n]*", Pattern.MULTILINE);
+    static final int DEFAULT_MAX_ROWS = 100;
 
-    // Pattern to match SQL multi-line comments (/* ... */)
-    private static final Pattern MULTI_LINE_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
-
-    // Pattern to detect LIMIT clause (case-insensitive)
-    private static final Pattern LIMIT_PATTERN = Pattern.compile("\\bLIMIT\\s+\\d+", Pattern.CASE_INSENSITIVE);
+    // JSqlParser runs each parse on an executor to enforce its timeout; without a shared one
+    // CCJSqlParserUtil.parse(String) creates and shuts down a new thread for every statement.
+    private static final ExecutorService PARSER_EXECUTOR = Executors.newCachedThreadPool(new ParserThreadFactory());
 
     /**
-     * Sanitizes AI-generated SQL:
-     * 1. Strips comments to prevent injection hiding
-     * 2. Parses into AST and verifies it is a SELECT statement
-     * 3. Appends LIMIT 100 if no LIMIT is present
+     * Sanitizes AI-generated SQL in a single parse:
+     * 1. Parses into AST (comments are dropped by the parser and never reach the output)
+     * 2. Verifies it is a SELECT statement
+     * 3. Sets LIMIT 100 on the outermost query, or caps an existing LIMIT / FETCH above 100
+     * 4. Deparses the AST back to SQL
      *
      * @param sql the raw SQL from AI
      * @return sanitized, safe SQL
      * @throws SqlSafetyException if the SQL is not a SELECT or cannot be parsed
      */
     public String sanitize(String sql) {
-        if (sql == null || sql.isBlank()) {
-            throw new SqlSafetyException("SQL cannot be empty");
-        }
+        return sanitize(sql, DEFAULT_MAX_ROWS);
+    }
 
+    /**
+     * Same as {@link #sanitize(String)} with a row cap of {@code maxRows} instead of 100,
+     * for exports.
+     */
+    public String sanitize(String sql, long maxRows) {
         log.debug("Sanitizing SQL: {}", sql);
 
-        // Step 1: Strip comments
-        String cleaned = stripComments(sql).trim();
+        // Steps 1 and 2: Parse and validate statement type
+        Select select = parseValidated(sql);
 
-        if (cleaned.isEmpty()) {
-            throw new SqlSafetyException("SQL is empty after removing comments");
+        // Step 3: Enforce the row cap on the outermost SELECT
+        applyRowLimit(select, maxRows);
+
+        // Step 4: Deparse
+        String sanitized = select.toString();
+
+        log.info("SQL sanitized successfully: {}", sanitized);
+        return sanitized;
+    }
+
+    /**
+     * Parses and validates AI-generated SQL like {@link #sanitize(String)} without applying a
+     * row cap, so the query keeps its own LIMIT. Used to plan the pages of a result.
+     */
+    Select parseUncapped(String sql) {
+        return parseValidated(sql);
+    }
+
+    private Select parseValidated(String sql) {
+        if (sql == null || sql.isBlank()) {
+            throw new SqlSafetyException("SQL cannot be empty");
         }
 
-        // Step 2: Parse and validate statement type
         Statement statement;
         try {
-            statement = CCJSqlParserUtil.parse(cleaned);
+            statement = CCJSqlParserUtil.parse(sql, PARSER_EXECUTOR, null);
         } catch (JSQLParserException e) {
             throw new SqlSafetyException("Failed to parse SQL: " + e.getMessage(), e);
         }
 
-        validateStatementType(statement);
-
-        // Step 3: Ensure LIMIT is present
-        String sanitized = ensureLimit(cleaned);
-
-        log.info("SQL sanitized successfully: {}", sanitized);
-        return sanitized;
-    }
+        if (statement == null) {
+            throw new SqlSafetyException("SQL is empty after removing comments");
+        }
 
-    /**
-     * Strips single-line and multi-line SQL comments.
-     */
-    String stripComments(String sql) {
-        String result = MULTI_LINE_COMMENT.matcher(sql).replaceAll("");
-        result = SINGLE_LINE_COMMENT.matcher(result).replaceAll("");
-        return result;
+        validateStatementType(statement);
+        return (Select) statement;
     }
 
     /**
      * Validates that the statement is a SELECT. Throws SqlSafetyException for all other types.
      */
     private void validateStatementType(Statement statement) {
-        if (statement == null) {
-            throw new SqlSafetyException("SQL statement is null");
-        }
         if (statement instanceof Select) {
             return; // Safe
         }
@@ -123,19 +137,42 @@ public class SqlSanitizer {
     }
 
     /**
-     * Appends LIMIT 100 if the SQL does not already contain a LIMIT clause.
+     * Caps the number of rows the outermost query (plain select, set operation or
+     * parenthesed select) can return. LIMITs inside subqueries or CTEs do not count.
+     * An existing FETCH FIRST clause is capped in place; otherwise the LIMIT row count is
+     * set or lowered, keeping any offset.
      */
-    String ensureLimit(String sql) {
-        if (LIMIT_PATTERN.matcher(sql).find()) {
-            return sql;
+    void applyRowLimit(Select select, long maxRows) {
+        Fetch fetch = select.getFetch();
+        if (fetch != null) {
+            // FETCH FIRST ROW ONLY has no expression and means a single row
+            if (fetch.getExpression() != null && !isWithin(fetch.getExpression(), maxRows)) {
+                fetch.setExpression(new LongValue(maxRows));
+            }
+            return;
         }
 
-        // Remove trailing semicolon if present, then append LIMIT
-        String trimmed = sql.stripTrailing();
-        if (trimmed.endsWith(";")) {
-            trimmed = trimmed.substring(0, trimmed.length() - 1).stripTrailing();
+        Limit limit = select.getLimit();
+        if (limit == null) {
+            select.setLimit(new Limit().withRowCount(new LongValue(maxRows)));
+        } else if (!isWithin(limit.getRowCount(), maxRows)) {
+            // Covers LIMIT ALL, LIMIT NULL, parameters and counts above the cap
+            limit.setRowCount(new LongValue(maxRows));
         }
+    }
 
-        return trimmed + " LIMIT 100";
+    private boolean isWithin(Expression rowCount, long maxRows) {
+        return rowCount instanceof LongValue value && value.getValue() <= maxRows;
+    }
+
+    private static final class ParserThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "sql-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
@@ -0,0 +1,94 @@
+package com.querypilot.service;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pulls the value of the "sql" field out of a JSON completion while it is still streaming in.
+ * Chunks are fed as they arrive; once the opening quote of the value has been seen, every
+ * chunk yields the newly decoded SQL characters, and the value is complete as soon as its
+ * closing quote arrives, without waiting for the rest of the JSON object (or a closing
+ * markdown fence). Chunk boundaries may fall anywhere, including inside escape sequences.
+ * Not thread-safe; one instance per completion.
+ */
+final class SqlStreamExtractor {
+
+    private static final Pattern SQL_FIELD = Pattern.compile("\"sql\"\\s*:\\s*\"");
+
+    private enum State { SEARCHING, IN_VALUE, COMPLETE }
+
+    // Text before the value, kept until the field name has been found
+    private final StringBuilder prelude = new StringBuilder();
+    private final StringBuilder sql = new StringBuilder();
+    private final StringBuilder unicode = new StringBuilder(4);
+    private State state = State.SEARCHING;
+    private boolean escaping;
+    private boolean inUnicode;
+
+    /**
+     * Consumes the next chunk of the completion and returns the SQL characters it completed
+     * (empty when none).
+     */
+    String feed(String chunk) {
+        if (chunk == null || chunk.isEmpty() || state == State.COMPLETE) {
+            return "";
+        }
+        String text = chunk;
+        if (state == State.SEARCHING) {
+            prelude.append(chunk);
+            Matcher matcher = SQL_FIELD.matcher(prelude);
+            if (!matcher.find()) {
+                return "";
+            }
+            state = State.IN_VALUE;
+            text = prelude.substring(matcher.end());
+            prelude.setLength(0);
+        }
+
+        int start = sql.length();
+        for (int i = 0; i < text.length() && state == State.IN_VALUE; i++) {
+            decode(text.charAt(i));
+        }
+        return sql.substring(start);
+    }
+
+    boolean isComplete() {
+        return state == State.COMPLETE;
+    }
+
+    /**
+     * The decoded SQL so far; the full value once {@link #isComplete()}.
+     */
+    String sql() {
+        return sql.toString();
+    }
+
+    private void decode(char c) {
+        if (inUnicode) {
+            unicode.append(c);
+            if (unicode.length() == 4) {
+                sql.append((char) Integer.parseInt(unicode.toString(), 16));
+                unicode.setLength(0);
+                inUnicode = false;
+            }
+        } else if (escaping) {
+            escaping = false;
+            switch (c) {
+                case 'n' -> sql.append('\n');
+                case 't' -> sql.append('\t');
+                case 'r' -> sql.append('\r');
+                case 'b' -> sql.append('\b');
+                case 'f' -> sql.append('\f');
+                case 'u' -> inUnicode = true;
+                // \" \\ \/ and anything unexpected stand for the character itself
+                default -> sql.append(c);
+            }
+        } else if (c == '\\') {
+            escaping = true;
+        } else if (c == '"') {
+            state = State.COMPLETE;
+        } else {
+            sql.append(c);
+        }
+    }
+}
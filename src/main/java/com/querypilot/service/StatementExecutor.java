@@ -0,0 +1,215 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.QueryCancelledException;
+import com.querypilot.model.dto.ResultTable;
+import com.querypilot.model.entity.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs sanitized SQL against a target connection with a per-query timeout and a statement
+ * that can be cancelled through its {@link QueryHandle}.
+ *
+ * Statements are created by hand inside a ConnectionCallback: JdbcTemplate applies the
+ * connection's configured query timeout to every statement it creates, which would override
+ * a shorter per-request one. The connection permit is held until the last row has been read.
+ */
+@Service
+public class StatementExecutor {
+
+    private static final int STREAM_FETCH_SIZE = 500;
+    // PostgreSQL reports both a statement timeout and a cancel request as query_canceled
+    private static final String SQLSTATE_QUERY_CANCELED = "57014";
+
+    private final DynamicConnectionFactory connectionFactory;
+    private final ConnectionLimiter connectionLimiter;
+    private final int defaultTimeoutSeconds;
+
+    public StatementExecutor(DynamicConnectionFactory connectionFactory,
+                             ConnectionLimiter connectionLimiter,
+                             @Value("${app.query.execution.default-timeout-seconds:120}") int defaultTimeoutSeconds) {
+        this.connectionFactory = connectionFactory;
+        this.connectionLimiter = connectionLimiter;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+    }
+
+    /**
+     * The execution time limit of a query: the connection's query timeout (or the default when
+     * it has none), lowered to the requested one if the request asks for less.
+     */
+    public int timeoutSeconds(DataSourceConfig config, Integer requestedSeconds) {
+        Integer configured = config.getQueryTimeoutSeconds();
+        int limit = configured != null && configured > 0 ? configured : defaultTimeoutSeconds;
+        if (requestedSeconds == null || requestedSeconds <= 0) {
+            return limit;
+        }
+        return limit > 0 ? Math.min(requestedSeconds, limit) : requestedSeconds;
+    }
+
+    /**
+     * Executes the query and returns its rows with the same column naming and value
+     * extraction as JdbcTemplate.queryForList.
+     */
+    public List<Map<String, Object>> queryForList(Long connectionId, String sql, int timeoutSeconds,
+                                                  QueryHandle handle, Object... args) {
+        return run(connectionId, sql, args, timeoutSeconds, handle, false,
+                new RowMapperResultSetExtractor<>(new ColumnMapRowMapper()));
+    }
+
+    /**
+     * Executes the query and returns its rows as arrays under a single column header, with
+     * the same column naming and value extraction as JdbcTemplate.queryForList.
+     */
+    public ResultTable queryForTable(Long connectionId, String sql, int timeoutSeconds,
+                                     QueryHandle handle, Object... args) {
+        return run(connectionId, sql, args, timeoutSeconds, handle, false, StatementExecutor::readTable);
+    }
+
+    /**
+     * Executes the query and hands every row to the handler as soon as it is read, so the
+     * result is never materialized in memory. The statement is forward-only with a driver
+     * fetch size that lets MySQL and PostgreSQL stream rows instead of buffering them.
+     */
+    public void stream(Long connectionId, String sql, int timeoutSeconds, QueryHandle handle,
+                       RowCallbackHandler handler) {
+        streamResult(connectionId, sql, timeoutSeconds, handle, rs -> {
+            while (rs.next()) {
+                handler.processRow(rs);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Same as {@link #stream}, handing the extractor the streaming ResultSet itself, for
+     * writers that need the column metadata even when there are no rows.
+     */
+    public <T> T streamResult(Long connectionId, String sql, int timeoutSeconds, QueryHandle handle,
+                              ResultSetExtractor<T> extractor) {
+        return run(connectionId, sql, new Object[0], timeoutSeconds, handle, true, extractor);
+    }
+
+    private <T> T run(Long connectionId, String sql, Object[] args, int timeoutSeconds, QueryHandle handle,
+                      boolean streaming, ResultSetExtractor<T> extractor) {
+        handle.checkNotCancelled();
+        try {
+            // The pool is leased before waiting for a permit, so it cannot be closed in between
+            return connectionFactory.withJdbcTemplate(connectionId, jdbcTemplate -> connectionLimiter.call(
+                    connectionId, () -> jdbcTemplate.execute(
+                            statement(jdbcTemplate, sql, args, timeoutSeconds, handle, streaming, extractor))));
+        } catch (DataAccessException e) {
+            if (handle.isCancelled()) {
+                throw new QueryCancelledException(handle.getId());
+            }
+            if (isTimeout(e)) {
+                throw new QueryTimeoutException("Query did not finish within its time limit of "
+                        + timeoutSeconds + " s", e);
+            }
+            throw e;
+        }
+    }
+
+    private static <T> ConnectionCallback<T> statement(JdbcTemplate jdbcTemplate, String sql, Object[] args,
+                                                       int timeoutSeconds, QueryHandle handle, boolean streaming,
+                                                       ResultSetExtractor<T> extractor) {
+        return con -> {
+            boolean mysql = streaming && "MySQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName());
+            if (streaming && !mysql && con.getAutoCommit()) {
+                // PostgreSQL only honours the fetch size inside a transaction; the pool resets it on return
+                con.setAutoCommit(false);
+            }
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                if (streaming) {
+                    int fetchSize = jdbcTemplate.getFetchSize() > 0 ? jdbcTemplate.getFetchSize() : STREAM_FETCH_SIZE;
+                    ps.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+                }
+                ps.setQueryTimeout(Math.max(timeoutSeconds, 0));
+                new ArgumentPreparedStatementSetter(args).setValues(ps);
+                handle.attach(ps);
+                try {
+                    return extract(ps, extractor);
+                } finally {
+                    handle.detach();
+                }
+            }
+        };
+    }
+
+    private static <T> T extract(PreparedStatement ps, ResultSetExtractor<T> extractor) throws SQLException {
+        ResultSet rs = ps.executeQuery();
+        try {
+            return extractor.extractData(rs);
+        } catch (SQLException | RuntimeException e) {
+            // Closing a half-read MySQL streaming result reads the rest of it first, so a
+            // reader that gave up (e.g. because its client went away) stops the query instead
+            try {
+                ps.cancel();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+        }
+    }
+
+    private static ResultTable readTable(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<ResultTable.Column> columns = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(new ResultTable.Column(JdbcUtils.lookupColumnName(metaData, i), sqlTypeName(metaData, i)));
+        }
+        List<Object[]> rows = new ArrayList<>();
+        while (rs.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+            }
+            rows.add(row);
+        }
+        return new ResultTable(columns, rows);
+    }
+
+    private static String sqlTypeName(ResultSetMetaData metaData, int column) throws SQLException {
+        try {
+            return JDBCType.valueOf(metaData.getColumnType(column)).getName();
+        } catch (IllegalArgumentException e) {
+            // Vendor-specific type code
+            return metaData.getColumnTypeName(column);
+        }
+    }
+
+    private static boolean isTimeout(DataAccessException e) {
+        if (e instanceof QueryTimeoutException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException
+                    || cause instanceof SQLException sql && SQLSTATE_QUERY_CANCELED.equals(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package com.querypilot.service;
+
+import java.util.List;
+
+/**
+ * Structure of one table or view of a target database as read by SchemaExtractorService.
+ * {@code rowCount} is the catalog's estimate, or null when the database does not expose one.
+ */
+public record TableMetadata(String name, List<Column> columns, List<String> primaryKey,
+                            List<ForeignKey> foreignKeys, List<Index> indexes, Long rowCount) {
+
+    public record Column(String name, String type, boolean nullable) {
+    }
+
+    public record ForeignKey(List<String> columns, String referencedTable, List<String> referencedColumns) {
+    }
+
+    public record Index(String name, boolean unique, List<String> columns) {
+    }
+}
@@ -1,10 +1,14 @@
 package com.querypilot.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querypilot.exception.ConnectionBusyException;
+import com.querypilot.exception.SqlSafetyException;
 import com.querypilot.model.dto.QueryRequest;
 import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
 import com.querypilot.security.JwtTokenProvider;
 import com.querypilot.service.AiQueryService;
+import com.querypilot.service.QueryProgressListener;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,13 +17,24 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -46,22 +61,101 @@ class QueryControllerTest {
 
         QueryResponse response = QueryResponse.builder()
                 .sql("SELECT * FROM users LIMIT 100")
-                .result(List.of(Map.of("id", 1, "name", "Alice")))
+                .result(users())
                 .safetyCheck("PASSED")
                 .build();
 
-        when(aiQueryService.processQuery(eq(1L), any(QueryRequest.class))).thenReturn(response);
+        when(aiQueryService.processQueryAsync(eq(1L), any(QueryRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
 
         QueryRequest request = new QueryRequest(5L, "Show me all users");
 
-        mockMvc.perform(post("/api/v1/query/ask")
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask")
                         .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.sql").value("SELECT * FROM users LIMIT 100"))
                 .andExpect(jsonPath("$.safetyCheck").value("PASSED"))
-                .andExpect(jsonPath("$.result").isArray());
+                .andExpect(jsonPath("$.result").isArray())
+                .andExpect(jsonPath("$.result[0].name").value("Alice"));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask returns the column header and row arrays when asked for columnar JSON")
+    void testAskQueryColumnarJson() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.processQueryAsync(eq(1L), any(QueryRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(QueryResponse.builder()
+                        .sql("SELECT * FROM users LIMIT 100").result(users()).safetyCheck("PASSED").build()));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask")
+                        .header("Authorization", "Bearer " + token)
+                        .accept("application/vnd.querypilot.columnar+json")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new QueryRequest(5L, "Show me all users"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/vnd.querypilot.columnar+json"))
+                .andExpect(jsonPath("$.columns[1].name").value("name"))
+                .andExpect(jsonPath("$.columns[1].type").value("VARCHAR"))
+                .andExpect(jsonPath("$.rows[0][0]").value(1))
+                .andExpect(jsonPath("$.rows[0][1]").value("Alice"))
+                .andExpect(jsonPath("$.result").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask returns the binary columnar format when it is preferred")
+    void testAskQueryColumnarBinary() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.processQueryAsync(eq(1L), any(QueryRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(QueryResponse.builder()
+                        .sql("SELECT * FROM users LIMIT 100").result(users()).safetyCheck("PASSED").build()));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Accept", "application/json;q=0.5, application/vnd.querypilot.columnar")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new QueryRequest(5L, "Show me all users"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/vnd.querypilot.columnar"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals("QPC1", new String(body, 0, 4, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask returns 503 when the target connection is saturated")
+    void testAskQueryConnectionBusy() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.processQueryAsync(eq(1L), any(QueryRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new ConnectionBusyException("Connection 5 is busy")));
+
+        QueryRequest request = new QueryRequest(5L, "Show me all users");
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.message").value("Connection 5 is busy"));
     }
 
     @Test
@@ -88,4 +182,152 @@ class QueryControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask/stream streams NDJSON starting with the sanitized SQL")
+    void testAskQueryStream() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.prepareQueryAsync(eq(1L), any(QueryRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("SELECT * FROM users LIMIT 100"));
+
+        QueryRequest request = new QueryRequest(5L, "Show me all users");
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask/stream")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(startsWith(
+                        "{\"sql\":\"SELECT * FROM users LIMIT 100\",\"safetyCheck\":\"PASSED\"}")));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask/stream reports a failed preparation as a regular error response")
+    void testAskQueryStreamRejected() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.prepareQueryAsync(eq(1L), any(QueryRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new CompletionException(new SqlSafetyException("Only SELECT statements are allowed"))));
+
+        QueryRequest request = new QueryRequest(5L, "Delete all users");
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask/stream")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Only SELECT statements are allowed"));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask/events sends SQL progress events before the result")
+    void testAskQueryEvents() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        QueryResponse response = QueryResponse.builder()
+                .sql("SELECT * FROM users LIMIT 100")
+                .result(users())
+                .safetyCheck("PASSED")
+                .build();
+
+        when(aiQueryService.processQueryAsync(eq(1L), any(QueryRequest.class), any(QueryProgressListener.class)))
+                .thenAnswer(inv -> {
+                    QueryProgressListener listener = inv.getArgument(2);
+                    listener.onSqlDelta("SELECT * ");
+                    listener.onSqlDelta("FROM users");
+                    listener.onSql("SELECT * FROM users LIMIT 100");
+                    return CompletableFuture.completedFuture(response);
+                });
+
+        QueryRequest request = new QueryRequest(5L, "Show me all users");
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask/events")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvcResult.getResponse().getContentAsString();
+        int query = body.indexOf("event:query\ndata:{\"queryId\":\"");
+        int delta = body.indexOf("event:sql-delta\ndata:{\"delta\":\"SELECT * \"}");
+        int sql = body.indexOf("event:sql\ndata:{\"sql\":\"SELECT * FROM users LIMIT 100\"}");
+        int result = body.indexOf("event:result\ndata:{");
+        assertTrue(query >= 0 && query < delta && delta < sql && sql < result, body);
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/query/ask/events ends with an error event when the pipeline fails")
+    void testAskQueryEventsError() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.processQueryAsync(eq(1L), any(QueryRequest.class), any(QueryProgressListener.class)))
+                .thenReturn(CompletableFuture.failedFuture(new ConnectionBusyException("Connection 5 is busy")));
+
+        QueryRequest request = new QueryRequest(5L, "Show me all users");
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/query/ask/events")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString(), containsString("event:error\ndata:{\"error\":true,\"message\":\"Connection 5 is busy\""));
+    }
+
+    @Test
+    @DisplayName("DELETE /api/v1/query/{id} cancels the caller's running query")
+    void testCancelQuery() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.cancelQuery(1L, "q-1")).thenReturn(true);
+
+        mockMvc.perform(delete("/api/v1/query/q-1")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.queryId").value("q-1"))
+                .andExpect(jsonPath("$.cancelled").value(true));
+    }
+
+    @Test
+    @DisplayName("DELETE /api/v1/query/{id} returns 404 when no such query is running")
+    void testCancelUnknownQuery() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        when(aiQueryService.cancelQuery(1L, "q-2")).thenReturn(false);
+
+        mockMvc.perform(delete("/api/v1/query/q-2")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("No running query with ID q-2"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/query/{id}/export returns 404 for a query that was never answered")
+    void testExportUnknownQuery() throws Exception {
+        String token = tokenProvider.generateToken(1L, "admin", "ADMIN");
+
+        mockMvc.perform(get("/api/v1/query/q-3/export")
+                        .param("format", "CSV")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value(containsString("No exportable query with ID q-3")));
+    }
+
+    private static ResultTable users() {
+        return new ResultTable(List.of(new ResultTable.Column("id", "INTEGER"), new ResultTable.Column("name", "VARCHAR")),
+                List.<Object[]>of(new Object[]{1, "Alice"}));
+    }
 }
@@ -0,0 +1,72 @@
+package com.querypilot.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "TestSecretKeyThatIsLongEnoughForHMACSHA256Algorithm!!TestSecretKey";
+
+    private final JwtTokenProvider tokenProvider = new JwtTokenProvider(SECRET, 60000, 100);
+
+    @Test
+    @DisplayName("A valid token yields a principal with all claims")
+    void testAuthenticateValidToken() {
+        String token = tokenProvider.generateToken(7L, "alice", "ANALYST");
+
+        JwtPrincipal principal = tokenProvider.authenticate(token).orElseThrow();
+
+        assertEquals(7L, principal.userId());
+        assertEquals("alice", principal.username());
+        assertEquals("ANALYST", principal.role());
+        // Second call is served from the verified-token cache
+        assertEquals(principal, tokenProvider.authenticate(token).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("A tampered token is rejected")
+    void testTamperedTokenRejected() {
+        String token = tokenProvider.generateToken(7L, "alice", "ANALYST");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertTrue(tokenProvider.authenticate(tampered).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A token signed with another key is rejected")
+    void testForeignTokenRejected() {
+        JwtTokenProvider other = new JwtTokenProvider(
+                "AnotherSecretKeyThatIsLongEnoughForHMACSHA256Algorithm!!OtherSecret", 60000, 0);
+        Optional<JwtPrincipal> principal = tokenProvider.authenticate(other.generateToken(1L, "admin", "ADMIN"));
+
+        assertTrue(principal.isEmpty());
+    }
+
+    @Test
+    @DisplayName("An expired token is rejected")
+    void testExpiredTokenRejected() {
+        JwtTokenProvider shortLived = new JwtTokenProvider(SECRET, -1000, 100);
+
+        assertTrue(shortLived.authenticate(shortLived.generateToken(1L, "admin", "ADMIN")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A correctly signed token without an expiry is rejected")
+    void testTokenWithoutExpiryRejected() {
+        String token = Jwts.builder()
+                .subject("admin")
+                .claim("userId", 1L)
+                .claim("role", "ADMIN")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        assertTrue(tokenProvider.authenticate(token).isEmpty());
+    }
+}
@@ -0,0 +1,51 @@
+package com.querypilot.service;
+
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.DatabaseType;
+import com.querypilot.service.ConnectionLimiter.WaitStats;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class AdaptivePoolSizerTest {
+
+    private final AdaptivePoolSizer sizer = new AdaptivePoolSizer(
+            mock(DynamicConnectionFactory.class), new ConnectionLimiter(100), 50);
+
+    @Test
+    @DisplayName("Pools grow by a quarter while queries wait, up to the maximum")
+    void testGrowsUnderContention() {
+        assertEquals(6, sizer.nextSize(5, 1, 20, 5, new WaitStats(0, 3)));
+        assertEquals(10, sizer.nextSize(8, 1, 20, 8, new WaitStats(120, 0)));
+        assertEquals(20, sizer.nextSize(20, 1, 20, 20, new WaitStats(500, 4)));
+    }
+
+    @Test
+    @DisplayName("Mostly idle pools shrink by one, down to the minimum")
+    void testShrinksWhenIdle() {
+        assertEquals(9, sizer.nextSize(10, 2, 20, 1, new WaitStats(0, 0)));
+        assertEquals(2, sizer.nextSize(2, 2, 20, 0, new WaitStats(0, 0)));
+        assertEquals(10, sizer.nextSize(10, 2, 20, 6, new WaitStats(10, 0)));
+    }
+
+    @Test
+    @DisplayName("Unset pool settings fall back to defaults and adaptive pools start within bounds")
+    void testPoolSettingsDefaults() {
+        DataSourceConfig config = new DataSourceConfig(1L, "Test DB", DatabaseType.H2,
+                "jdbc:h2:mem:test", "sa", "encrypted");
+        assertEquals(PoolSettings.DEFAULTS, PoolSettings.of(config));
+
+        config.setPoolMaxSize(30);
+        config.setPoolMinIdle(40);
+        config.setPoolAdaptive(true);
+        PoolSettings settings = PoolSettings.of(config);
+        assertEquals(30, settings.minIdle());
+        assertEquals(30, settings.initialSize());
+
+        config.setPoolMinIdle(0);
+        assertEquals(PoolSettings.DEFAULT_MAX_SIZE, PoolSettings.of(config).initialSize());
+        assertEquals(1, PoolSettings.of(config).minSize());
+    }
+}
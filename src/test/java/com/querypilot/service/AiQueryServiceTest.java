@@ -1,11 +1,16 @@
 package com.querypilot.service;
 
 import com.querypilot.exception.AccessDeniedException;
+import com.querypilot.exception.QueryCancelledException;
+import com.querypilot.exception.QueryTooExpensiveException;
+import com.querypilot.exception.SqlSafetyException;
 import com.querypilot.model.dto.QueryRequest;
 import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
 import com.querypilot.model.entity.DataSourceConfig;
 import com.querypilot.model.enums.DatabaseType;
 import com.querypilot.repository.DataSourceConfigRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,22 +18,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.ChatClient.CallResponseSpec;
 import org.springframework.ai.chat.client.ChatClient.ChatClientRequestSpec;
+import org.springframework.ai.chat.client.ChatClient.StreamResponseSpec;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AiQueryServiceTest {
 
+    private static final String SCHEMA_DDL = "CREATE TABLE users (id INT, name VARCHAR(255));";
+
     @Mock
     private ChatClient.Builder chatClientBuilder;
 
@@ -39,13 +48,16 @@ class AiQueryServiceTest {
     private ChatClientRequestSpec chatClientRequestSpec;
 
     @Mock
-    private CallResponseSpec callResponseSpec;
+    private StreamResponseSpec streamResponseSpec;
 
     @Mock
     private SqlSanitizer sqlSanitizer;
 
     @Mock
-    private DynamicConnectionFactory connectionFactory;
+    private StatementExecutor statementExecutor;
+
+    @Mock
+    private QueryCostGate queryCostGate;
 
     @Mock
     private DataSourceConfigRepository configRepository;
@@ -54,7 +66,17 @@ class AiQueryServiceTest {
     private PermissionService permissionService;
 
     @Mock
-    private JdbcTemplate jdbcTemplate;
+    private SchemaStore schemaStore;
+
+    @Mock
+    private ResultPager resultPager;
+
+    @Mock
+    private QueryExporter queryExporter;
+
+    private SqlGenerationCache sqlGenerationCache;
+
+    private SimpleMeterRegistry meterRegistry;
 
     private AiQueryService aiQueryService;
 
@@ -62,8 +84,14 @@ class AiQueryServiceTest {
     @SuppressWarnings("unused")
     void setUp() {
         when(chatClientBuilder.build()).thenReturn(chatClient);
-        aiQueryService = new AiQueryService(chatClientBuilder, sqlSanitizer, connectionFactory,
-                configRepository, permissionService);
+        meterRegistry = new SimpleMeterRegistry();
+        sqlGenerationCache = new SqlGenerationCache(100, 600, meterRegistry);
+        LlmClient llmClient = new LlmClient(chatClientBuilder, Runnable::run, meterRegistry,
+                new LlmClient.Policy(30000, 60000, 1, 10, 10, false, 0, 5, 30000, 4, 1000));
+        aiQueryService = new AiQueryService(llmClient, sqlSanitizer, statementExecutor, queryCostGate,
+                configRepository, permissionService, sqlGenerationCache, new SchemaSelector(true, 8, 8000),
+                schemaStore, new QueryResultCache(16, meterRegistry), resultPager, queryExporter,
+                new RunningQueries(meterRegistry), new QueryMetrics(meterRegistry), Runnable::run);
     }
 
     @Test
@@ -74,24 +102,24 @@ class AiQueryServiceTest {
         QueryRequest request = new QueryRequest(connectionId, "Show all users");
 
         DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
-                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted", "CREATE TABLE users (id INT, name VARCHAR(255));");
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
 
         String aiResponse = "{\"sql\": \"SELECT * FROM users\"}";
         String sanitizedSql = "SELECT * FROM users LIMIT 100";
-        List<Map<String, Object>> queryResult = List.of(
-                Map.of("id", 1, "name", "Alice"),
-                Map.of("id", 2, "name", "Bob")
+        ResultTable queryResult = table(List.of("id", "name"),
+                new Object[]{1, "Alice"},
+                new Object[]{2, "Bob"}
         );
 
         // Mock the chain
         doNothing().when(permissionService).validateAccess(userId, connectionId);
         when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
         when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
-        when(chatClientRequestSpec.call()).thenReturn(callResponseSpec);
-        when(callResponseSpec.content()).thenReturn(aiResponse);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just(aiResponse.substring(0, 9), aiResponse.substring(9)));
         when(sqlSanitizer.sanitize("SELECT * FROM users")).thenReturn(sanitizedSql);
-        when(connectionFactory.getJdbcTemplate(connectionId)).thenReturn(jdbcTemplate);
-        when(jdbcTemplate.queryForList(sanitizedSql)).thenReturn(queryResult);
+        givenRows(connectionId, sanitizedSql, queryResult);
 
         QueryResponse response = aiQueryService.processQuery(userId, request);
 
@@ -102,6 +130,38 @@ class AiQueryServiceTest {
 
         verify(permissionService).validateAccess(userId, connectionId);
         verify(sqlSanitizer).sanitize("SELECT * FROM users");
+        verify(queryExporter).register(userId, response.getQueryId(), connectionId, "SELECT * FROM users");
+
+        for (String stage : List.of("permission", "config", "generate", "sanitize", "execute")) {
+            assertEquals(1, meterRegistry.get(QueryMetrics.STAGE_TIMER)
+                    .tag("stage", stage).tag("outcome", "success").timer().count(), stage);
+        }
+        assertEquals(1, meterRegistry.get(QueryMetrics.STAGE_TIMER)
+                .tag("stage", "execute").tag("db.type", "MYSQL").tag("connection", "5").timer().count());
+    }
+
+    @Test
+    @DisplayName("Rejected SQL is counted and tagged on the sanitize stage")
+    void testSanitizerRejectionRecorded() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.H2,
+                "jdbc:h2:mem:test", "sa", "encrypted");
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just("{\"sql\": \"DELETE FROM users\"}"));
+        when(sqlSanitizer.sanitize("DELETE FROM users")).thenThrow(new SqlSafetyException("Only SELECT allowed"));
+
+        assertThrows(SqlSafetyException.class,
+                () -> aiQueryService.processQuery(userId, new QueryRequest(connectionId, "Remove all users")));
+
+        assertEquals(1, meterRegistry.get(QueryMetrics.STAGE_TIMER)
+                .tag("stage", "sanitize").tag("outcome", "rejected").timer().count());
+        assertEquals(1, meterRegistry.get("qp.sanitizer.rejections").counter().count());
     }
 
     @Test
@@ -133,4 +193,191 @@ class AiQueryServiceTest {
                 () -> aiQueryService.processQuery(userId, request));
         assertTrue(ex.getMessage().contains("Connection not found"));
     }
+
+    @Test
+    @DisplayName("Repeated question is answered from the SQL cache without calling the AI")
+    void testRepeatedQuestionUsesCache() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just("{\"sql\": \"SELECT * FROM users\"}"));
+        when(sqlSanitizer.sanitize("SELECT * FROM users")).thenReturn("SELECT * FROM users LIMIT 100");
+        givenRows(connectionId, "SELECT * FROM users LIMIT 100", table(List.of("id")));
+
+        aiQueryService.processQuery(userId, new QueryRequest(connectionId, "Show all users"));
+        aiQueryService.processQuery(userId, new QueryRequest(connectionId, "  show ALL users? "));
+
+        verify(chatClient, times(1)).prompt(any(Prompt.class));
+        verify(permissionService, times(2)).validateAccess(userId, connectionId);
+        assertEquals(1, sqlGenerationCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Results are served from the result cache when the connection has a TTL")
+    void testResultCacheHit() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
+        config.setResultCacheTtlSeconds(60);
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just("{\"sql\": \"SELECT COUNT(*) FROM users\"}"));
+        when(sqlSanitizer.sanitize("SELECT COUNT(*) FROM users")).thenReturn("SELECT COUNT(*) FROM users LIMIT 100");
+        givenRows(connectionId, "SELECT COUNT(*) FROM users LIMIT 100", table(List.of("COUNT(*)"), new Object[]{2L}));
+
+        QueryResponse first = aiQueryService.processQuery(userId, new QueryRequest(connectionId, "How many users?"));
+        QueryResponse second = aiQueryService.processQuery(userId, new QueryRequest(connectionId, "How many users?"));
+
+        assertEquals(first.getResult(), second.getResult());
+        verify(statementExecutor, times(1)).queryForTable(eq(connectionId), eq("SELECT COUNT(*) FROM users LIMIT 100"),
+                anyInt(), any(QueryHandle.class));
+    }
+
+    @Test
+    @DisplayName("SQL is reported as it streams in and the rest of the completion is not awaited")
+    void testStreamedSqlProgress() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
+
+        // Anything after the closing quote of the "sql" field must not be needed
+        Flux<String> completion = Flux.concat(
+                Flux.just("```json\n{\"sq", "l\": \"SELECT name ", "FROM users\"", ", \"explanation\": "),
+                Flux.error(new IllegalStateException("stream should have been cancelled")));
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(completion);
+        when(sqlSanitizer.sanitize("SELECT name FROM users")).thenReturn("SELECT name FROM users LIMIT 100");
+        givenRows(connectionId, "SELECT name FROM users LIMIT 100", table(List.of("name")));
+
+        List<String> deltas = new ArrayList<>();
+        List<String> sanitized = new ArrayList<>();
+        QueryProgressListener listener = new QueryProgressListener() {
+            @Override
+            public void onSqlDelta(String delta) {
+                deltas.add(delta);
+            }
+
+            @Override
+            public void onSql(String sanitizedSql) {
+                sanitized.add(sanitizedSql);
+            }
+        };
+
+        QueryResponse response = aiQueryService.processQuery(userId,
+                new QueryRequest(connectionId, "Names of all users"), listener);
+
+        assertEquals("SELECT name FROM users LIMIT 100", response.getSql());
+        assertEquals(List.of("SELECT name ", "FROM users"), deltas);
+        assertEquals(List.of("SELECT name FROM users LIMIT 100"), sanitized);
+    }
+
+    @Test
+    @DisplayName("A query cancelled while its SQL is generated never reaches the database")
+    void testCancelledBeforeExecution() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
+        QueryRequest request = new QueryRequest(connectionId, "Show all users");
+        request.setQueryId("q-1");
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just("{\"sql\": \"SELECT * FROM users\"}"));
+        when(sqlSanitizer.sanitize("SELECT * FROM users")).thenAnswer(inv -> {
+            assertTrue(aiQueryService.cancelQuery(userId, "q-1"));
+            assertFalse(aiQueryService.cancelQuery(2L, "q-1"));
+            return "SELECT * FROM users LIMIT 100";
+        });
+
+        QueryCancelledException ex = assertThrows(QueryCancelledException.class,
+                () -> aiQueryService.processQuery(userId, request));
+
+        assertEquals("q-1", ex.getQueryId());
+        verifyNoInteractions(statementExecutor);
+        // Finished queries are unregistered, so the ID can be used again
+        assertFalse(aiQueryService.cancelQuery(userId, "q-1"));
+    }
+
+    @Test
+    @DisplayName("Response carries the query ID and the requested timeout reaches execution")
+    void testQueryIdAndTimeout() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
+        QueryRequest request = new QueryRequest(connectionId, "Show all users");
+        request.setTimeoutSeconds(5);
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just("{\"sql\": \"SELECT * FROM users\"}"));
+        when(sqlSanitizer.sanitize("SELECT * FROM users")).thenReturn("SELECT * FROM users LIMIT 100");
+        when(statementExecutor.timeoutSeconds(config, 5)).thenReturn(5);
+        when(statementExecutor.queryForTable(eq(connectionId), eq("SELECT * FROM users LIMIT 100"), eq(5),
+                any(QueryHandle.class))).thenReturn(table(List.of("id")));
+
+        QueryResponse response = aiQueryService.processQuery(userId, request);
+
+        assertNotNull(response.getQueryId());
+        assertFalse(aiQueryService.cancelQuery(userId, response.getQueryId()));
+    }
+
+    @Test
+    @DisplayName("A query over the connection's cost limits is rejected before it runs")
+    void testCostGateRejection() {
+        Long userId = 1L;
+        Long connectionId = 5L;
+
+        DataSourceConfig config = new DataSourceConfig(connectionId, "Test DB", DatabaseType.MYSQL,
+                "jdbc:mysql://localhost:3306/test", "testuser", "encrypted");
+
+        when(configRepository.findById(connectionId)).thenReturn(Optional.of(config));
+        when(schemaStore.getSchemaDdl(config)).thenReturn(SCHEMA_DDL);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(chatClientRequestSpec);
+        when(chatClientRequestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.content()).thenReturn(Flux.just("{\"sql\": \"SELECT * FROM users, users u2\"}"));
+        when(sqlSanitizer.sanitize("SELECT * FROM users, users u2")).thenReturn("SELECT * FROM users, users u2 LIMIT 100");
+        when(queryCostGate.check(config, "SELECT * FROM users, users u2 LIMIT 100"))
+                .thenThrow(new QueryTooExpensiveException("Too many rows"));
+
+        assertThrows(QueryTooExpensiveException.class,
+                () -> aiQueryService.processQuery(userId, new QueryRequest(connectionId, "Every pair of users")));
+
+        verify(statementExecutor, never()).queryForTable(any(), any(), anyInt(), any(QueryHandle.class));
+    }
+
+    private void givenRows(Long connectionId, String sql, ResultTable rows) {
+        when(statementExecutor.queryForTable(eq(connectionId), eq(sql), anyInt(), any(QueryHandle.class)))
+                .thenReturn(rows);
+    }
+
+    private static ResultTable table(List<String> columns, Object[]... rows) {
+        return new ResultTable(columns.stream().map(name -> new ResultTable.Column(name, "OTHER")).toList(),
+                List.of(rows));
+    }
 }
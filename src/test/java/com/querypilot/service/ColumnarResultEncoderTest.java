@@ -0,0 +1,120 @@
+package com.querypilot.service;
+
+import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarResultEncoderTest {
+
+    @Test
+    @DisplayName("Columns are written column-major in an encoding that matches their values")
+    void testEncodesColumns() throws IOException {
+        ResultTable table = new ResultTable(List.of(
+                new ResultTable.Column("id", "BIGINT"),
+                new ResultTable.Column("price", "DECIMAL"),
+                new ResultTable.Column("ratio", "DOUBLE"),
+                new ResultTable.Column("name", "VARCHAR"),
+                new ResultTable.Column("born", "DATE"),
+                new ResultTable.Column("seen", "TIMESTAMP")),
+                List.of(
+                        new Object[]{1L, new BigDecimal("9.90"), 0.5, "Alice", java.sql.Date.valueOf("1990-01-02"),
+                                Timestamp.valueOf("1970-01-01 00:00:01")},
+                        new Object[]{-300L, null, null, "Zoë", null, null}));
+        QueryResponse response = new QueryResponse("SELECT 1", table, "PASSED", null, "q-1", null);
+
+        Reader in = new Reader(ColumnarResultEncoder.encode(response));
+
+        assertEquals("QPC1", new String(in.data.readNBytes(4), StandardCharsets.US_ASCII));
+        assertEquals(List.of("SELECT 1", "PASSED"), List.of(in.string(), in.string()));
+        assertNull(in.string());
+        assertEquals("q-1", in.string());
+        assertNull(in.string());
+
+        assertEquals(6, in.varint());
+        List<Byte> encodings = new ArrayList<>();
+        for (int c = 0; c < 6; c++) {
+            assertEquals(table.getColumns().get(c).name(), in.string());
+            assertEquals(table.getColumns().get(c).type(), in.string());
+            encodings.add(in.data.readByte());
+        }
+        assertEquals(List.of(ColumnarResultEncoder.INT64, ColumnarResultEncoder.STRING, ColumnarResultEncoder.FLOAT64,
+                ColumnarResultEncoder.STRING, ColumnarResultEncoder.DATE, ColumnarResultEncoder.TIMESTAMP), encodings);
+        assertEquals(2, in.varint());
+
+        assertEquals(0, in.data.readByte());
+        assertEquals(List.of(1L, -300L), List.of(in.zigzag(), in.zigzag()));
+        assertEquals(0b10, in.data.readByte());
+        assertEquals("9.90", in.string());
+        assertEquals(0b10, in.data.readByte());
+        assertEquals(0.5, in.data.readDouble());
+        assertEquals(0, in.data.readByte());
+        assertEquals(List.of("Alice", "Zoë"), List.of(in.string(), in.string()));
+        assertEquals(0b10, in.data.readByte());
+        assertEquals(LocalDate.of(1990, 1, 2).toEpochDay(), in.zigzag());
+        assertEquals(0b10, in.data.readByte());
+        assertEquals(1_000_000L, in.zigzag());
+        assertEquals(-1, in.data.read());
+    }
+
+    @Test
+    @DisplayName("A column whose values differ in type falls back to strings")
+    void testMixedColumn() throws IOException {
+        ResultTable table = new ResultTable(List.of(new ResultTable.Column("value", "JAVA_OBJECT")),
+                List.of(new Object[]{42}, new Object[]{LocalDateTime.of(2024, 5, 1, 12, 0)}));
+
+        Reader in = new Reader(ColumnarResultEncoder.encode(new QueryResponse(null, table, null, null, null, null)));
+        in.data.skipNBytes(4 + 5);
+        in.varint();
+        in.string();
+        in.string();
+
+        assertEquals(ColumnarResultEncoder.STRING, in.data.readByte());
+        assertEquals(2, in.varint());
+        assertEquals(0, in.data.readByte());
+        assertEquals(List.of("42", "2024-05-01T12:00"), List.of(in.string(), in.string()));
+    }
+
+    private static final class Reader {
+
+        private final DataInputStream data;
+
+        Reader(byte[] bytes) {
+            this.data = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = data.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        long zigzag() throws IOException {
+            long value = varint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String string() throws IOException {
+            long length = varint();
+            return length == 0 ? null : new String(data.readNBytes((int) length - 1), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.ConnectionBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionLimiterTest {
+
+    private final ConnectionLimiter limiter = new ConnectionLimiter(100);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Callers beyond the pool size time out with ConnectionBusyException")
+    void testSaturatedConnectionRejects() throws Exception {
+        limiter.resize(5L, 1);
+        limiter.resize(6L, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> holder = executor.submit(() -> limiter.call(5L, () -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ConnectionBusyException.class, () -> limiter.call(5L, () -> "second"));
+        // Other connections have their own permits
+        assertEquals("other", limiter.call(6L, () -> "other"));
+
+        release.countDown();
+        assertEquals("first", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("third", limiter.call(5L, () -> "third"));
+    }
+
+    @Test
+    @DisplayName("Permits are released when the work fails")
+    void testPermitReleasedOnFailure() {
+        limiter.resize(5L, 2);
+        assertThrows(IllegalStateException.class, () -> limiter.call(5L, () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(2, limiter.availablePermits(5L));
+    }
+
+    @Test
+    @DisplayName("Resizing adds or removes permits, and unknown connections get the default size")
+    void testResize() {
+        limiter.run(5L, () -> { });
+        assertEquals(PoolSettings.DEFAULT_MAX_SIZE, limiter.availablePermits(5L));
+
+        limiter.resize(5L, 8);
+        assertEquals(8, limiter.availablePermits(5L));
+        limiter.resize(5L, 2);
+        assertEquals(2, limiter.availablePermits(5L));
+
+        limiter.invalidate(5L);
+        assertEquals(-1, limiter.availablePermits(5L));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
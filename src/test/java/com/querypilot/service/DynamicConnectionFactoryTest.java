@@ -0,0 +1,214 @@
+package com.querypilot.service;
+
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.DatabaseType;
+import com.querypilot.repository.DataSourceConfigRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbc.JdbcConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class DynamicConnectionFactoryTest {
+
+    private final DataSourceConfigRepository configRepository = mock(DataSourceConfigRepository.class);
+    private final EncryptionService encryptionService = mock(EncryptionService.class);
+    private final List<Long> created = new ArrayList<>();
+    private final Set<Long> warmUp = new HashSet<>();
+    private final ConnectionLimiter connectionLimiter = new ConnectionLimiter(100);
+
+    private DynamicConnectionFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        when(encryptionService.decrypt(any())).thenReturn("");
+        when(configRepository.findById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            created.add(id);
+            DataSourceConfig config = new DataSourceConfig(id, "DB " + id, DatabaseType.H2,
+                    "jdbc:h2:mem:pool" + id + ";DB_CLOSE_DELAY=-1", "sa", "encrypted");
+            config.setPoolMinIdle(2);
+            config.setPoolWarmUp(warmUp.contains(id));
+            return Optional.of(config);
+        });
+        factory = new DynamicConnectionFactory(configRepository, encryptionService,
+                new SimpleMeterRegistry(), connectionLimiter, 2, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (long id = 1; id <= 3; id++) {
+            factory.evict(id);
+        }
+    }
+
+    @Test
+    @DisplayName("Opening more pools than the cap closes the least recently used one")
+    void testMaxOpenPools() {
+        JdbcTemplate first = factory.getJdbcTemplate(1L);
+        factory.getJdbcTemplate(2L);
+        factory.getJdbcTemplate(2L);
+        factory.getJdbcTemplate(3L);
+
+        assertEquals(2, factory.openPoolCount());
+        assertTrue(((HikariDataSource) first.getDataSource()).isClosed());
+
+        // The evicted pool is recreated on its next use
+        assertEquals(1, factory.getJdbcTemplate(1L).queryForObject("SELECT 1", Integer.class));
+        assertEquals(List.of(1L, 2L, 3L, 1L), created);
+    }
+
+    @Test
+    @DisplayName("A leased pool is not closed over the cap, even before it has a connection in use")
+    void testLeasedPoolKeptOpen() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch leased = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Future<Integer> query = executor.submit(() -> factory.withJdbcTemplate(1L, jdbc -> {
+            // Like a query still waiting for its connection permit
+            leased.countDown();
+            awaitQuietly(done);
+            return jdbc.queryForObject("SELECT 1", Integer.class);
+        }));
+        assertTrue(leased.await(5, TimeUnit.SECONDS));
+
+        JdbcTemplate second = factory.getJdbcTemplate(2L);
+        factory.getJdbcTemplate(3L);
+        done.countDown();
+
+        assertEquals(1, query.get(5, TimeUnit.SECONDS));
+        assertTrue(((HikariDataSource) second.getDataSource()).isClosed());
+        assertEquals(List.of(1L, 2L, 3L), created);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Warm-up pools are primed with validated connections and kept open past the cap")
+    void testWarmUpPool() {
+        warmUp.add(1L);
+
+        assertEquals(2, factory.prime(1L));
+        HikariDataSource primed = (HikariDataSource) factory.getJdbcTemplate(1L).getDataSource();
+        assertEquals(2, primed.getHikariPoolMXBean().getTotalConnections());
+
+        JdbcTemplate second = factory.getJdbcTemplate(2L);
+        factory.getJdbcTemplate(3L);
+
+        assertFalse(primed.isClosed());
+        assertTrue(((HikariDataSource) second.getDataSource()).isClosed());
+    }
+
+    @Test
+    @DisplayName("New settings apply to the open pool in place, also while a query holds a permit")
+    void testReconfigure() {
+        JdbcTemplate before = factory.getJdbcTemplate(1L);
+        HikariDataSource dataSource = (HikariDataSource) before.getDataSource();
+        PoolSettings settings = new PoolSettings(8, 3, 2000, 7, 500, 4000, false, false);
+
+        connectionLimiter.run(1L, () -> {
+            factory.reconfigure(1L, settings);
+            // 8 permits with this query's one still held
+            assertEquals(7, connectionLimiter.availablePermits(1L));
+        });
+
+        assertFalse(dataSource.isClosed());
+        assertEquals(8, dataSource.getHikariConfigMXBean().getMaximumPoolSize());
+        assertEquals(3, dataSource.getHikariConfigMXBean().getMinimumIdle());
+        assertEquals(2000, dataSource.getHikariConfigMXBean().getConnectionTimeout());
+        assertEquals(4000, dataSource.getHikariConfigMXBean().getLeakDetectionThreshold());
+        assertEquals(8, connectionLimiter.availablePermits(1L));
+
+        JdbcTemplate after = factory.getJdbcTemplate(1L);
+        assertSame(dataSource, after.getDataSource());
+        assertEquals(7, after.getQueryTimeout());
+        assertEquals(500, after.getFetchSize());
+        assertEquals(List.of(1L), created);
+    }
+
+    @Test
+    @DisplayName("Concurrent first requests for a connection create a single pool")
+    void testConcurrentCreation() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<JdbcTemplate>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> {
+                start.await(5, TimeUnit.SECONDS);
+                return factory.getJdbcTemplate(1L);
+            }));
+        }
+        start.countDown();
+
+        JdbcTemplate template = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<JdbcTemplate> result : results) {
+            assertSame(template, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(1L), created);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Temporary connections are shared by all work and closed afterwards, also on failure")
+    void testTempConnectionClosed() throws Exception {
+        // The physical connection; the proxies handed out suppress close() and hide it from isClosed()
+        List<Connection> used = new ArrayList<>();
+        String url = "jdbc:h2:mem:temp;DB_CLOSE_DELAY=-1";
+
+        List<Integer> sessions = factory.withTempJdbcTemplate(url, "sa", "", DatabaseType.H2, jdbc -> {
+            used.add(jdbc.execute((ConnectionCallback<Connection>) connection -> connection.unwrap(JdbcConnection.class)));
+            return List.of(jdbc.queryForObject("SELECT SESSION_ID()", Integer.class),
+                    jdbc.queryForObject("SELECT SESSION_ID()", Integer.class));
+        });
+        assertEquals(sessions.get(0), sessions.get(1));
+        assertTrue(used.get(0).isClosed());
+
+        used.clear();
+        assertThrows(IllegalStateException.class, () -> factory.withTempJdbcTemplate(url, "sa", "", DatabaseType.H2,
+                jdbc -> {
+                    used.add(jdbc.execute((ConnectionCallback<Connection>) connection -> connection.unwrap(JdbcConnection.class)));
+                    throw new IllegalStateException("boom");
+                }));
+        assertTrue(used.get(0).isClosed());
+        assertEquals(0, factory.openPoolCount());
+    }
+
+    @Test
+    @DisplayName("A failed pool creation is not cached")
+    void testFailureNotCached() {
+        when(configRepository.findById(9L)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> factory.getJdbcTemplate(9L));
+        assertThrows(RuntimeException.class, () -> factory.getJdbcTemplate(9L));
+        assertEquals(0, factory.openPoolCount());
+        verify(configRepository, times(2)).findById(9L);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
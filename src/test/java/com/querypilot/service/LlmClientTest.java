@@ -0,0 +1,157 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.LlmUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LlmClientTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private LlmClient client(long timeoutMs, int maxAttempts, boolean hedge, int failureThreshold, long openMs) {
+        return new LlmClient(mock(ChatClient.Builder.class), executor, meterRegistry,
+                new LlmClient.Policy(timeoutMs, 10000, maxAttempts, 1, 5, hedge, 10, failureThreshold, openMs, 4, 100));
+    }
+
+    @Test
+    @DisplayName("Transient failures are retried until an attempt succeeds")
+    void testRetryTransientFailure() {
+        LlmClient client = client(1000, 3, false, 10, 1000);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = client.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new TransientAiException("503 Service Unavailable");
+            }
+            return "SELECT 1";
+        });
+
+        assertEquals("SELECT 1", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, meterRegistry.get("qp.llm.retries").counter().count());
+    }
+
+    @Test
+    @DisplayName("Non-transient failures are not retried")
+    void testNonTransientFailure() {
+        LlmClient client = client(1000, 3, false, 10, 1000);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(NonTransientAiException.class, () -> client.execute(() -> {
+            attempts.incrementAndGet();
+            throw new NonTransientAiException("400 Bad Request");
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("An attempt that exceeds its timeout is abandoned and the call fails once retries run out")
+    void testAttemptTimeout() {
+        LlmClient client = client(50, 2, false, 10, 1000);
+        CountDownLatch interrupted = new CountDownLatch(2);
+
+        LlmUnavailableException e = assertThrows(LlmUnavailableException.class, () -> client.execute(() -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+                throw ex;
+            }
+            return "late";
+        }));
+
+        assertTrue(e.getMessage().contains("2 attempt(s)"));
+        assertEquals(2, meterRegistry.get("qp.llm.timeouts").counter().count());
+        assertDoesNotThrow(() -> assertTrue(interrupted.await(1, TimeUnit.SECONDS)), "timed out attempts are cancelled");
+    }
+
+    @Test
+    @DisplayName("The circuit opens after consecutive failures, fails fast, and closes after a successful trial")
+    void testCircuitBreaker() throws InterruptedException {
+        LlmClient client = client(1000, 1, false, 2, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(LlmUnavailableException.class, () -> client.execute(() -> {
+                attempts.incrementAndGet();
+                throw new IOException("Connection reset");
+            }));
+        }
+        assertThrows(LlmUnavailableException.class, () -> client.execute(() -> {
+            attempts.incrementAndGet();
+            return "never sent";
+        }));
+        assertEquals(2, attempts.get());
+        assertEquals(1, meterRegistry.get("qp.llm.circuit.open").gauge().value());
+
+        Thread.sleep(150);
+        assertEquals("SELECT 1", client.execute(() -> "SELECT 1"));
+        assertEquals(0, meterRegistry.get("qp.llm.circuit.open").gauge().value());
+    }
+
+    @Test
+    @DisplayName("A slow attempt is hedged after the recent p95 latency and the faster response wins")
+    void testHedgedRequest() {
+        LlmClient client = client(5000, 1, true, 10, 1000);
+        for (int i = 0; i < 20; i++) {
+            client.execute(() -> "warm-up");
+        }
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.nanoTime();
+        String result = client.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                Thread.sleep(5000);
+                return "slow";
+            }
+            return "hedged";
+        });
+
+        assertEquals("hedged", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals(1, meterRegistry.get("qp.llm.hedges").counter().count());
+    }
+
+    @Test
+    @DisplayName("Calls beyond the concurrency limit are rejected once the acquire timeout passes")
+    void testConcurrencyLimit() throws InterruptedException {
+        LlmClient client = new LlmClient(mock(ChatClient.Builder.class), executor, meterRegistry,
+                new LlmClient.Policy(5000, 10000, 1, 1, 5, false, 10, 10, 1000, 1, 50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> client.execute(() -> {
+            started.countDown();
+            release.await();
+            return "first";
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        try {
+            assertThrows(LlmUnavailableException.class, () -> client.execute(() -> "second"));
+            assertEquals(1, meterRegistry.get("qp.llm.rejections").tag("reason", "saturated").counter().count());
+        } finally {
+            release.countDown();
+        }
+    }
+}
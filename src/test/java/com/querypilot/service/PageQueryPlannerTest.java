@@ -0,0 +1,103 @@
+package com.querypilot.service;
+
+import com.querypilot.model.enums.DatabaseType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageQueryPlannerTest {
+
+    private final SqlSanitizer sqlSanitizer = new SqlSanitizer();
+
+    private PageQueryPlanner.PagePlan plan(String sql) {
+        return plan(sql, DatabaseType.H2);
+    }
+
+    private PageQueryPlanner.PagePlan plan(String sql, DatabaseType type) {
+        return PageQueryPlanner.plan(sqlSanitizer.parseUncapped(sql), type);
+    }
+
+    @Test
+    @DisplayName("Single sort key seeks past the last key")
+    void testSingleKey() {
+        PageQueryPlanner.PagePlan plan = plan("SELECT id, name FROM users WHERE active = 1 ORDER BY id");
+
+        assertEquals("SELECT id, name, id AS qp_page_key_0 FROM users WHERE active = 1 AND id > ? ORDER BY id LIMIT ?",
+                plan.keysetSql());
+        assertEquals("SELECT id, name, id AS qp_page_key_0 FROM users WHERE active = 1 ORDER BY id LIMIT ? OFFSET ?",
+                plan.offsetSql());
+        assertEquals(List.of(0), plan.parameterKeys());
+    }
+
+    @Test
+    @DisplayName("Composite keys get an index-friendly leading bound, mixed directions and aliases resolved")
+    void testCompositeKey() {
+        PageQueryPlanner.PagePlan plan = plan(
+                "SELECT u.name, o.amount * 2 AS doubled FROM users u JOIN orders o ON u.id = o.user_id "
+                        + "WHERE o.status = 'A' OR o.status = 'B' ORDER BY doubled DESC, 1");
+
+        assertEquals("SELECT u.name, o.amount * 2 AS doubled, o.amount * 2 AS qp_page_key_0, u.name AS qp_page_key_1 "
+                        + "FROM users u JOIN orders o ON u.id = o.user_id "
+                        + "WHERE (o.status = 'A' OR o.status = 'B') AND (o.amount * 2 <= ? OR o.amount * 2 IS NULL) "
+                        + "AND ((o.amount * 2 < ? OR o.amount * 2 IS NULL) OR (o.amount * 2 = ? AND u.name > ?)) "
+                        + "ORDER BY doubled DESC, 1 LIMIT ?",
+                plan.keysetSql());
+        assertEquals(List.of(0, 0, 0, 1), plan.parameterKeys());
+        assertEquals(2, plan.keyCount());
+    }
+
+    @Test
+    @DisplayName("Grouped queries seek in HAVING")
+    void testGroupedQuery() {
+        PageQueryPlanner.PagePlan plan = plan(
+                "SELECT user_id, SUM(amount) AS total FROM orders GROUP BY user_id ORDER BY total DESC",
+                DatabaseType.POSTGRESQL);
+
+        assertTrue(plan.keysetSql().contains("HAVING SUM(amount) < ?"), plan.keysetSql());
+    }
+
+    @Test
+    @DisplayName("Set operations, DISTINCT and unordered queries fall back to offset paging")
+    void testOffsetOnly() {
+        assertNull(plan("SELECT id FROM a UNION SELECT id FROM b ORDER BY id").keysetSql());
+        assertNull(plan("SELECT DISTINCT name FROM users ORDER BY name").keysetSql());
+        assertNull(plan("SELECT name FROM users").keysetSql());
+    }
+
+    @Test
+    @DisplayName("The query's own offset becomes the base offset")
+    void testBaseOffset() {
+        PageQueryPlanner.PagePlan plan = plan("SELECT id FROM users ORDER BY id LIMIT 50 OFFSET 20");
+
+        assertEquals(20, plan.baseOffset());
+        assertEquals(50L, plan.rowLimit());
+        assertFalse(plan.offsetSql().contains("20"));
+    }
+
+    @Test
+    @DisplayName("The query's own row count is kept, whichever clause sets it")
+    void testRowLimit() {
+        assertNull(plan("SELECT id FROM users ORDER BY id").rowLimit());
+        assertNull(plan("SELECT id FROM users ORDER BY id LIMIT ALL").rowLimit());
+        assertEquals(150L, plan("SELECT id FROM users ORDER BY id LIMIT 150").rowLimit());
+        assertEquals(300L, plan("SELECT id FROM users ORDER BY id FETCH FIRST 300 ROWS ONLY").rowLimit());
+
+        PageQueryPlanner.PagePlan top = plan("SELECT TOP 120 id FROM users ORDER BY id");
+        assertEquals(120L, top.rowLimit());
+        assertFalse(top.keysetSql().contains("TOP"), top.keysetSql());
+    }
+
+    @Test
+    @DisplayName("Keys whose NULLs sort after every value let NULL past the seek")
+    void testNullsAfterKey() {
+        assertEquals("SELECT id, name AS qp_page_key_0 FROM users WHERE (name > ? OR name IS NULL) ORDER BY name LIMIT ?",
+                plan("SELECT id FROM users ORDER BY name", DatabaseType.POSTGRESQL).keysetSql());
+        assertEquals("SELECT id, name AS qp_page_key_0 FROM users WHERE name > ? ORDER BY name LIMIT ?",
+                plan("SELECT id FROM users ORDER BY name", DatabaseType.MYSQL).keysetSql());
+        assertEquals("SELECT id, name AS qp_page_key_0 FROM users WHERE name < ? ORDER BY name DESC NULLS FIRST LIMIT ?",
+                plan("SELECT id FROM users ORDER BY name DESC NULLS FIRST", DatabaseType.H2).keysetSql());
+    }
+}
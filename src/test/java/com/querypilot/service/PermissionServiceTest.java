@@ -0,0 +1,134 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.AccessDeniedException;
+import com.querypilot.model.dto.PermissionRequest;
+import com.querypilot.model.entity.Permission;
+import com.querypilot.model.entity.User;
+import com.querypilot.model.enums.UserRole;
+import com.querypilot.repository.DataSourceConfigRepository;
+import com.querypilot.repository.PermissionRepository;
+import com.querypilot.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PermissionServiceTest {
+
+    @Mock
+    private PermissionRepository permissionRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private DataSourceConfigRepository configRepository;
+
+    private PermissionService permissionService;
+
+    @BeforeEach
+    void setUp() {
+        permissionService = new PermissionService(permissionRepository, userRepository, configRepository, 100, 300);
+    }
+
+    @Test
+    @DisplayName("Repeated access checks are answered from memory")
+    void testAccessCheckCached() {
+        when(userRepository.findById(2L)).thenReturn(Optional.of(analyst(2L)));
+        when(permissionRepository.findByUserId(2L)).thenReturn(List.of(
+                new Permission(1L, 2L, 9L), new Permission(2L, 2L, 3L)));
+
+        permissionService.validateAccess(2L, 3L);
+        permissionService.validateAccess(2L, 9L);
+        assertThrows(AccessDeniedException.class, () -> permissionService.validateAccess(2L, 5L));
+
+        verify(userRepository, times(1)).findById(2L);
+        verify(permissionRepository, times(1)).findByUserId(2L);
+        verify(permissionRepository, never()).existsByUserIdAndConnectionId(any(), any());
+    }
+
+    @Test
+    @DisplayName("Admins are allowed every connection")
+    void testAdminAllowed() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(
+                new User(1L, "admin", "hash", UserRole.ADMIN)));
+
+        assertDoesNotThrow(() -> permissionService.validateAccess(1L, 42L));
+        verify(permissionRepository, never()).findByUserId(any());
+    }
+
+    @Test
+    @DisplayName("Granting a permission invalidates the user's cached access")
+    void testGrantInvalidates() {
+        when(userRepository.findById(2L)).thenReturn(Optional.of(analyst(2L)));
+        when(permissionRepository.findByUserId(2L))
+                .thenReturn(List.of())
+                .thenReturn(List.of(new Permission(1L, 2L, 5L)));
+        when(userRepository.existsById(2L)).thenReturn(true);
+        when(configRepository.existsById(5L)).thenReturn(true);
+        when(permissionRepository.save(any(Permission.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        assertThrows(AccessDeniedException.class, () -> permissionService.validateAccess(2L, 5L));
+        permissionService.grantPermission(new PermissionRequest(2L, 5L));
+
+        assertDoesNotThrow(() -> permissionService.validateAccess(2L, 5L));
+    }
+
+    @Test
+    @DisplayName("Revoking a permission invalidates the user's cached access")
+    void testRevokeInvalidates() {
+        Permission permission = new Permission(1L, 2L, 5L);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(analyst(2L)));
+        when(permissionRepository.findByUserId(2L))
+                .thenReturn(List.of(permission))
+                .thenReturn(List.of());
+        when(permissionRepository.findByUserIdAndConnectionId(2L, 5L)).thenReturn(Optional.of(permission));
+
+        permissionService.validateAccess(2L, 5L);
+        permissionService.revokePermission(2L, 5L);
+
+        assertThrows(AccessDeniedException.class, () -> permissionService.validateAccess(2L, 5L));
+    }
+
+    @Test
+    @DisplayName("Inside a transaction the cached access is only dropped after commit")
+    void testRevokeInvalidatesAfterCommit() {
+        Permission permission = new Permission(1L, 2L, 5L);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(analyst(2L)));
+        when(permissionRepository.findByUserId(2L))
+                .thenReturn(List.of(permission))
+                .thenReturn(List.of());
+        when(permissionRepository.findByUserIdAndConnectionId(2L, 5L)).thenReturn(Optional.of(permission));
+
+        permissionService.validateAccess(2L, 5L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            permissionService.revokePermission(2L, 5L);
+            // Not committed yet: a reload now could still see the old row, so the entry stays
+            assertDoesNotThrow(() -> permissionService.validateAccess(2L, 5L));
+            verify(permissionRepository, times(1)).findByUserId(2L);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThrows(AccessDeniedException.class, () -> permissionService.validateAccess(2L, 5L));
+    }
+
+    private static User analyst(Long id) {
+        return new User(id, "analyst", "hash", UserRole.ANALYST);
+    }
+}
@@ -0,0 +1,112 @@
+package com.querypilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querypilot.exception.QueryTooExpensiveException;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.CostGateAction;
+import com.querypilot.model.enums.DatabaseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QueryCostGateTest {
+
+    private static final String URL = "jdbc:h2:mem:cost_gate;DB_CLOSE_DELAY=-1";
+    private static final String CROSS_JOIN = "SELECT a.id FROM items a, items b, items c LIMIT 100";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceConfig config;
+    private QueryCostGate costGate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))");
+        jdbcTemplate.execute("INSERT INTO items SELECT X, 'item' || X FROM SYSTEM_RANGE(1, 300)");
+
+        DynamicConnectionFactory connectionFactory = mock(DynamicConnectionFactory.class);
+        when(connectionFactory.withJdbcTemplate(eq(1L), any()))
+                .thenAnswer(invocation -> invocation.<Function<JdbcTemplate, ?>>getArgument(1).apply(jdbcTemplate));
+        StatementExecutor statementExecutor = new StatementExecutor(connectionFactory, new ConnectionLimiter(1000), 30);
+        costGate = new QueryCostGate(statementExecutor, new QueryMetrics(new SimpleMeterRegistry()), true, 5, 300);
+
+        config = new DataSourceConfig(1L, "Test DB", DatabaseType.H2, URL, "sa", "encrypted");
+        config.setMaxEstimatedRows(1_000_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("Queries within the limits pass, a cross join over them is rejected")
+    void testRejectsAboveRowLimit() {
+        assertNull(costGate.check(config, "SELECT name FROM items WHERE id = 7"));
+        assertNull(costGate.check(config, "SELECT a.name FROM items a JOIN items b ON b.id = a.id LIMIT 100"));
+
+        QueryTooExpensiveException ex = assertThrows(QueryTooExpensiveException.class,
+                () -> costGate.check(config, CROSS_JOIN));
+        assertTrue(ex.getMessage().contains("27,000,000 rows"), ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Connections set to WARN get a warning instead of a rejection")
+    void testWarnAction() {
+        config.setCostGateAction(CostGateAction.WARN);
+
+        String warning = costGate.check(config, CROSS_JOIN);
+
+        assertNotNull(warning);
+        assertTrue(warning.contains("limit 1,000,000"), warning);
+    }
+
+    @Test
+    @DisplayName("Connections without limits are not explained")
+    void testNoLimits() {
+        config.setMaxEstimatedRows(null);
+
+        assertNull(costGate.check(config, "SELECT * FROM no_such_table"));
+    }
+
+    @Test
+    @DisplayName("MySQL estimates take the query cost and the largest join output")
+    void testMySqlEstimate() throws Exception {
+        QueryCostGate.CostEstimate estimate = QueryCostGate.mysqlEstimate(objectMapper.readTree("""
+                {"query_block": {"select_id": 1, "cost_info": {"query_cost": "2025412.50"},
+                  "nested_loop": [
+                    {"table": {"table_name": "a", "access_type": "ALL", "rows_examined_per_scan": 1500,
+                               "rows_produced_per_join": 1500}},
+                    {"table": {"table_name": "b", "access_type": "ALL", "rows_examined_per_scan": 1350,
+                               "rows_produced_per_join": 2025000}}
+                  ]}}
+                """));
+
+        assertEquals(2_025_000L, estimate.rows());
+        assertEquals(2025412.5, estimate.cost());
+    }
+
+    @Test
+    @DisplayName("PostgreSQL estimates look below the LIMIT node for the largest row count and cost")
+    void testPostgresEstimate() throws Exception {
+        QueryCostGate.CostEstimate estimate = QueryCostGate.postgresEstimate(objectMapper.readTree("""
+                [{"Plan": {"Node Type": "Limit", "Total Cost": 183004.12, "Plan Rows": 100,
+                  "Plans": [{"Node Type": "Sort", "Total Cost": 190000.0, "Plan Rows": 4000000,
+                    "Plans": [{"Node Type": "Nested Loop", "Plan Rows": 4000000},
+                              {"Node Type": "Seq Scan", "Plan Rows": 2000}]}]}}]
+                """));
+
+        assertEquals(4_000_000L, estimate.rows());
+        assertEquals(190000.0, estimate.cost());
+    }
+}
@@ -0,0 +1,174 @@
+package com.querypilot.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.querypilot.exception.QueryNotFoundException;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.DatabaseType;
+import com.querypilot.model.enums.ExportCompression;
+import com.querypilot.model.enums.ExportFormat;
+import com.querypilot.repository.DataSourceConfigRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QueryExporterTest {
+
+    private static final String URL = "jdbc:h2:mem:query_exporter;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private QueryExporter queryExporter;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20), price DECIMAL(10, 2))");
+        jdbcTemplate.execute("INSERT INTO items SELECT X, 'item ' || X, X / 4.0 FROM SYSTEM_RANGE(1, 250)");
+        jdbcTemplate.execute("UPDATE items SET name = 'say \"hi\", twice' WHERE id = 2");
+        jdbcTemplate.execute("UPDATE items SET name = NULL WHERE id = 3");
+        jdbcTemplate.execute("UPDATE items SET name = '' WHERE id = 4");
+
+        DynamicConnectionFactory connectionFactory = mock(DynamicConnectionFactory.class);
+        when(connectionFactory.withJdbcTemplate(eq(1L), any()))
+                .thenAnswer(invocation -> invocation.<Function<JdbcTemplate, ?>>getArgument(1).apply(jdbcTemplate));
+        DataSourceConfigRepository configRepository = mock(DataSourceConfigRepository.class);
+        when(configRepository.findById(1L))
+                .thenReturn(Optional.of(new DataSourceConfig(1L, "Test DB", DatabaseType.H2, URL, "sa", "encrypted")));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry);
+        StatementExecutor statementExecutor = new StatementExecutor(connectionFactory, new ConnectionLimiter(1000), 30);
+
+        queryExporter = new QueryExporter(new SqlSanitizer(), statementExecutor,
+                new QueryCostGate(statementExecutor, queryMetrics, true, 5, 300), mock(PermissionService.class),
+                configRepository, new RunningQueries(meterRegistry), queryMetrics, 200, 1024, 100, 600);
+        queryExporter.register(1L, "q-1", 1L, "SELECT id, name, price FROM items ORDER BY id");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("CSV exports hold every row up to the export cap, quoted where needed")
+    void testCsvGzip() throws IOException {
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(
+                export("q-1", ExportFormat.CSV, ExportCompression.GZIP))).readAllBytes(), StandardCharsets.UTF_8);
+
+        List<String> lines = Arrays.asList(csv.split("\r\n"));
+        assertEquals(201, lines.size());
+        assertEquals("ID,NAME,PRICE", lines.get(0));
+        assertEquals("1,item 1,0.25", lines.get(1));
+        assertEquals("2,\"say \"\"hi\"\", twice\",0.50", lines.get(2));
+        assertEquals("3,,0.75", lines.get(3));
+        assertEquals("4,\"\",1.00", lines.get(4));
+        assertEquals("200,item 200,50.00", lines.get(200));
+    }
+
+    @Test
+    @DisplayName("CSV exports can be zstd-compressed")
+    void testCsvZstd() throws IOException {
+        try (InputStream in = new ZstdInputStream(new ByteArrayInputStream(
+                export("q-1", ExportFormat.CSV, ExportCompression.ZSTD)))) {
+            String csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(csv.startsWith("ID,NAME,PRICE\r\n1,item 1,0.25\r\n"), csv);
+        }
+    }
+
+    @Test
+    @DisplayName("Parquet exports read back row by row, across row groups, with NULLs and decimals intact")
+    void testParquet() throws IOException {
+        Path file = tempDir.resolve("export.parquet");
+        Files.write(file, export("q-1", ExportFormat.PARQUET, ExportCompression.GZIP));
+
+        List<Group> rows = new ArrayList<>();
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file),
+                ParquetReadOptions.builder(new PlainParquetConfiguration()).build())) {
+            MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+            assertEquals(LogicalTypeAnnotation.decimalType(2, 10), schema.getType("PRICE").getLogicalTypeAnnotation());
+            assertEquals(LogicalTypeAnnotation.stringType(), schema.getType("NAME").getLogicalTypeAnnotation());
+            assertTrue(reader.getRowGroups().size() > 1, "row groups: " + reader.getRowGroups().size());
+
+            MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
+            PageReadStore rowGroup;
+            while ((rowGroup = reader.readNextRowGroup()) != null) {
+                RecordReader<Group> recordReader =
+                        columnIO.getRecordReader(rowGroup, new GroupRecordConverter(schema));
+                for (long i = 0; i < rowGroup.getRowCount(); i++) {
+                    rows.add(recordReader.read());
+                }
+            }
+        }
+
+        assertEquals(200, rows.size());
+        for (int id = 1; id <= 200; id++) {
+            Group row = rows.get(id - 1);
+            assertEquals(id, row.getLong("ID", 0));
+            String name = switch (id) {
+                case 2 -> "say \"hi\", twice";
+                case 3 -> null;
+                case 4 -> "";
+                default -> "item " + id;
+            };
+            if (name == null) {
+                assertEquals(0, row.getFieldRepetitionCount("NAME"));
+            } else {
+                assertEquals(name, row.getString("NAME", 0));
+            }
+            BigDecimal price = new BigDecimal(new BigInteger(row.getBinary("PRICE", 0).getBytes()), 2);
+            assertEquals(BigDecimal.valueOf(id * 25L, 2), price);
+        }
+    }
+
+    @Test
+    @DisplayName("Unknown queries and other users' queries cannot be exported")
+    void testUnknownQuery() {
+        assertThrows(QueryNotFoundException.class, () -> queryExporter.prepare(1L, "q-2"));
+        assertThrows(QueryNotFoundException.class, () -> queryExporter.prepare(2L, "q-1"));
+    }
+
+    private byte[] export(String queryId, ExportFormat format, ExportCompression compression) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = queryExporter.write(queryExporter.prepare(1L, queryId), format, compression, out);
+        assertEquals(200, rows);
+        return out.toByteArray();
+    }
+}
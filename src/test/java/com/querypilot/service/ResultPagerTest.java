@@ -0,0 +1,196 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.InvalidCursorException;
+import com.querypilot.model.dto.QueryResponse;
+import com.querypilot.model.dto.ResultTable;
+import com.querypilot.model.enums.DatabaseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ResultPagerTest {
+
+    private static final String URL = "jdbc:h2:mem:result_pager;DB_CLOSE_DELAY=-1";
+
+    private final SqlSanitizer sqlSanitizer = new SqlSanitizer();
+    private JdbcTemplate jdbcTemplate;
+    private ResultPager resultPager;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY, category VARCHAR(10), price INT)");
+        jdbcTemplate.execute("CREATE INDEX items_category ON items (category, id)");
+        jdbcTemplate.execute("INSERT INTO items SELECT X, 'c' || MOD(X, 7), MOD(X * 37, 101) FROM SYSTEM_RANGE(1, 250)");
+
+        DynamicConnectionFactory connectionFactory = mock(DynamicConnectionFactory.class);
+        when(connectionFactory.withJdbcTemplate(eq(1L), any()))
+                .thenAnswer(invocation -> invocation.<Function<JdbcTemplate, ?>>getArgument(1).apply(jdbcTemplate));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StatementExecutor statementExecutor = new StatementExecutor(connectionFactory, new ConnectionLimiter(1000), 30);
+        resultPager = new ResultPager(sqlSanitizer, statementExecutor, mock(PermissionService.class),
+                new QueryMetrics(meterRegistry), Runnable::run, 1000, 100, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("Pages after the first continue the result in order, without the sort key columns")
+    void testPagesByKey() {
+        String cursor = open("SELECT id, category FROM items ORDER BY id");
+
+        QueryResponse second = resultPager.nextPage(1L, cursor, 100);
+        QueryResponse third = resultPager.nextPage(1L, second.getCursor(), 100);
+
+        assertEquals(ids(101, 200), idsOf(second));
+        assertEquals(ids(201, 250), idsOf(third));
+        assertNull(third.getCursor());
+        assertEquals(sqlSanitizer.sanitize("SELECT id, category FROM items ORDER BY id"), third.getSql());
+        assertEquals(List.of("ID", "CATEGORY"),
+                third.getResult().getColumns().stream().map(ResultTable.Column::name).toList());
+    }
+
+    @Test
+    @DisplayName("A cursor can be fetched again and returns the same page")
+    void testCursorIsRepeatable() {
+        String second = resultPager.nextPage(1L, open("SELECT id FROM items ORDER BY id"), 100).getCursor();
+
+        assertEquals(idsOf(resultPager.nextPage(1L, second, 50)), idsOf(resultPager.nextPage(1L, second, 50)));
+    }
+
+    @Test
+    @DisplayName("Ties on a non-unique sort key never skip rows")
+    void testTiesFallBackToOffset() {
+        String sql = "SELECT id, category FROM items ORDER BY category DESC";
+
+        // Tied rows may come back in any order, so compare how many rows each category has
+        List<Object> categories = new ArrayList<>(jdbcTemplate.queryForList(sqlSanitizer.sanitize(sql)).stream()
+                .map(row -> row.get("category")).toList());
+        String cursor = open(sql);
+        while (cursor != null) {
+            QueryResponse page = resultPager.nextPage(1L, cursor, 40);
+            for (int row = 0; row < page.getResult().size(); row++) {
+                categories.add(page.getResult().get(row, "category"));
+            }
+            cursor = page.getCursor();
+        }
+
+        assertEquals(jdbcTemplate.queryForList("SELECT category FROM items ORDER BY category DESC", Object.class),
+                categories);
+    }
+
+    @Test
+    @DisplayName("Text keys that tie only under the column's collation never skip rows")
+    void testCollationTiesFallBackToOffset() {
+        jdbcTemplate.execute("CREATE TABLE words (id INT PRIMARY KEY, word VARCHAR_IGNORECASE(10))");
+        jdbcTemplate.execute("INSERT INTO words SELECT X, 'w' || LPAD(X, 3, '0') FROM SYSTEM_RANGE(1, 150)");
+        // Equal to row 110 in SQL but not in Java, and the first row after the second page ends on it
+        jdbcTemplate.execute("UPDATE words SET word = 'W110' WHERE id = 111");
+
+        // Tied rows may come back in any order, so compare the words as the collation sees them
+        List<String> words = new ArrayList<>();
+        String cursor = open("SELECT id, word FROM words ORDER BY word");
+        while (cursor != null) {
+            QueryResponse page = resultPager.nextPage(1L, cursor, 10);
+            for (int row = 0; row < page.getResult().size(); row++) {
+                words.add(page.getResult().get(row, "word").toString().toLowerCase(Locale.ROOT));
+            }
+            cursor = page.getCursor();
+        }
+
+        assertEquals(jdbcTemplate.queryForList("SELECT LOWER(word) FROM words ORDER BY word", String.class)
+                .subList(100, 150), words);
+    }
+
+    @Test
+    @DisplayName("Queries without ORDER BY are paged by offset")
+    void testOffsetFallback() {
+        String sql = "SELECT id FROM items WHERE price > 50 OR id < 10";
+        int total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items WHERE price > 50 OR id < 10", Integer.class);
+
+        String cursor = open(sql);
+        QueryResponse rest = resultPager.nextPage(1L, cursor, 1000);
+
+        assertEquals(total - 100, rest.getResult().size());
+        assertNull(rest.getCursor());
+    }
+
+    @Test
+    @DisplayName("Another user's cursor is rejected like an unknown one")
+    void testCursorBoundToUser() {
+        String cursor = open("SELECT id FROM items ORDER BY id");
+
+        assertThrows(InvalidCursorException.class, () -> resultPager.nextPage(2L, cursor, 100));
+        assertThrows(InvalidCursorException.class, () -> resultPager.nextPage(1L, "no-such-cursor", 100));
+    }
+
+    @Test
+    @DisplayName("Paging stops at the generated query's own LIMIT above the first page")
+    void testOwnLimitKept() {
+        String generated = "SELECT id FROM items ORDER BY id LIMIT 150";
+        String sql = sqlSanitizer.sanitize(generated);
+
+        QueryResponse second = resultPager.nextPage(1L,
+                resultPager.open(1L, 1L, DatabaseType.H2, sql, generated, 100, 30), 100);
+
+        assertEquals(ids(101, 150), idsOf(second));
+        assertNull(second.getCursor());
+        assertNull(resultPager.open(1L, 1L, DatabaseType.H2, sqlSanitizer.sanitize("SELECT id FROM items LIMIT 100"),
+                "SELECT id FROM items LIMIT 100", 100, 30));
+    }
+
+    @Test
+    @DisplayName("Rows with a NULL sort key after the last key are not skipped")
+    void testNullKeysAfterLastKey() {
+        jdbcTemplate.execute("UPDATE items SET price = NULL WHERE MOD(id, 10) = 0");
+        // H2 sorts NULL below every value, so descending keys put them last
+        String sql = "SELECT id FROM items ORDER BY price DESC, id DESC";
+
+        List<Object> ids = new ArrayList<>(jdbcTemplate.queryForList(sqlSanitizer.sanitize(sql), Object.class));
+        String cursor = open(sql);
+        while (cursor != null) {
+            QueryResponse page = resultPager.nextPage(1L, cursor, 40);
+            for (int row = 0; row < page.getResult().size(); row++) {
+                ids.add(page.getResult().get(row, "id"));
+            }
+            cursor = page.getCursor();
+        }
+
+        assertEquals(jdbcTemplate.queryForList(sql, Object.class), ids);
+    }
+
+    private String open(String sql) {
+        return resultPager.open(1L, 1L, DatabaseType.H2, sqlSanitizer.sanitize(sql), sql, 100, 30);
+    }
+
+    private static List<Integer> ids(int from, int to) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Integer> idsOf(QueryResponse response) {
+        List<Integer> ids = new ArrayList<>();
+        for (int row = 0; row < response.getResult().size(); row++) {
+            ids.add((Integer) response.getResult().get(row, "id"));
+        }
+        return ids;
+    }
+}
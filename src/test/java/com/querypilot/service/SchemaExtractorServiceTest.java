@@ -0,0 +1,89 @@
+package com.querypilot.service;
+
+import com.querypilot.model.enums.DatabaseType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaExtractorServiceTest {
+
+    private static final String URL = "jdbc:h2:mem:schema_extractor;DB_CLOSE_DELAY=-1";
+
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void createSchema() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE users (id INT PRIMARY KEY, email VARCHAR(120) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE orders (id INT PRIMARY KEY, user_id INT, amount DECIMAL(10, 2), "
+                + "CONSTRAINT fk_orders_user FOREIGN KEY (user_id) REFERENCES users (id))");
+        jdbcTemplate.execute("CREATE INDEX idx_orders_amount ON orders (amount)");
+        jdbcTemplate.execute("CREATE TABLE order_items (order_id INT, line_no INT, sku VARCHAR(20), "
+                + "PRIMARY KEY (order_id, line_no))");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX idx_users_email ON users (email)");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Tables are read with keys and indexes, ordered by name, in parallel batches")
+    void testExtractTables() {
+        SchemaExtractorService extractor = new SchemaExtractorService(executor, 3, 1);
+
+        List<TableMetadata> tables = extractor.extractTables(jdbcTemplate, DatabaseType.H2, URL, 3);
+
+        assertEquals(List.of("ORDERS", "ORDER_ITEMS", "USERS"), tables.stream().map(TableMetadata::name).toList());
+
+        TableMetadata orders = tables.get(0);
+        assertEquals(List.of("ID"), orders.primaryKey());
+        assertEquals(List.of(new TableMetadata.ForeignKey(List.of("USER_ID"), "USERS", List.of("ID"))),
+                orders.foreignKeys());
+        assertTrue(orders.indexes().stream().anyMatch(index -> index.name().equals("IDX_ORDERS_AMOUNT")));
+
+        assertEquals(List.of("ORDER_ID", "LINE_NO"), tables.get(1).primaryKey());
+
+        TableMetadata users = tables.get(2);
+        assertFalse(users.columns().get(1).nullable());
+        assertTrue(users.indexes().stream().anyMatch(index -> index.unique() && index.columns().equals(List.of("EMAIL"))));
+        assertTrue(users.indexes().stream().noneMatch(index -> index.columns().equals(List.of("ID"))));
+    }
+
+    @Test
+    @DisplayName("DDL carries foreign keys and indexes and stays readable by the schema index")
+    void testDdlParsedBySchemaIndex() {
+        SchemaExtractorService extractor = new SchemaExtractorService(executor, 4, 50);
+
+        String ddl = extractor.extractSchema(jdbcTemplate, DatabaseType.H2, URL, 1);
+
+        assertTrue(ddl.contains("FOREIGN KEY (USER_ID) REFERENCES USERS (ID)"));
+        assertTrue(ddl.contains("PRIMARY KEY (ORDER_ID, LINE_NO)"));
+        assertTrue(ddl.contains("CREATE INDEX IDX_ORDERS_AMOUNT ON ORDERS (AMOUNT);"));
+        assertTrue(ddl.contains("EMAIL CHARACTER VARYING(120) NOT NULL"));
+
+        SchemaIndex index = new SchemaIndex(ddl);
+        SchemaIndex.Table orders = index.getTables().stream()
+                .filter(table -> table.getName().equals("orders")).findFirst().orElseThrow();
+        assertTrue(orders.getReferences().contains("users"));
+    }
+
+    @Test
+    @DisplayName("Empty schema yields a placeholder comment")
+    void testEmptySchema() {
+        SchemaExtractorService extractor = new SchemaExtractorService(executor, 1, 50);
+        assertEquals("-- No tables found", extractor.buildDdl(List.of()));
+    }
+}
@@ -0,0 +1,183 @@
+package com.querypilot.service;
+
+import com.querypilot.model.dto.ColumnSummary;
+import com.querypilot.model.dto.TableSummary;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.entity.SchemaColumn;
+import com.querypilot.model.entity.SchemaTable;
+import com.querypilot.model.enums.DatabaseType;
+import com.querypilot.repository.DataSourceConfigRepository;
+import com.querypilot.repository.SchemaColumnRepository;
+import com.querypilot.repository.SchemaTableRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SchemaRefreshServiceTest {
+
+    private static final String URL = "jdbc:h2:mem:schema_refresh;DB_CLOSE_DELAY=-1";
+
+    private final List<SchemaTable> storedTables = new ArrayList<>();
+    private final List<SchemaColumn> storedColumns = new ArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final SqlGenerationCache sqlGenerationCache = mock(SqlGenerationCache.class);
+    private final QueryResultCache queryResultCache = mock(QueryResultCache.class);
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceConfig config;
+    private SchemaStore schemaStore;
+    private SchemaRefreshService refreshService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE customers (id INT PRIMARY KEY, name VARCHAR(50))");
+        jdbcTemplate.execute("CREATE TABLE invoices (id INT PRIMARY KEY, customer_id INT REFERENCES customers (id))");
+        jdbcTemplate.execute("CREATE TABLE audit_log (id INT PRIMARY KEY, message VARCHAR(200))");
+
+        config = new DataSourceConfig(1L, "Test DB", DatabaseType.H2, URL, "sa", "encrypted");
+
+        DataSourceConfigRepository configRepository = mock(DataSourceConfigRepository.class);
+        when(configRepository.findById(1L)).thenAnswer(inv -> Optional.of(config));
+        when(configRepository.save(any(DataSourceConfig.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // In-memory stand-ins for the schema_table and schema_column tables
+        SchemaTableRepository schemaTableRepository = mock(SchemaTableRepository.class);
+        when(schemaTableRepository.findByConnectionId(1L)).thenAnswer(inv -> new ArrayList<>(storedTables));
+        when(schemaTableRepository.findByConnectionIdAndTableNameIn(eq(1L), anyCollection())).thenAnswer(inv -> {
+            Collection<String> names = inv.getArgument(1);
+            return storedTables.stream().filter(table -> names.contains(table.getTableName())).toList();
+        });
+        when(schemaTableRepository.findHeadersByConnectionId(1L)).thenAnswer(inv -> storedTables.stream()
+                .map(SchemaRefreshServiceTest::header).toList());
+        when(schemaTableRepository.saveAll(anyIterable())).thenAnswer(inv -> {
+            List<SchemaTable> saved = new ArrayList<>();
+            for (SchemaTable table : (Iterable<SchemaTable>) inv.getArgument(0)) {
+                if (table.getId() == null) {
+                    table.setId(ids.incrementAndGet());
+                    storedTables.add(table);
+                }
+                saved.add(table);
+            }
+            return saved;
+        });
+        doAnswer(inv -> storedTables.removeAll((Collection<SchemaTable>) inv.getArgument(0)))
+                .when(schemaTableRepository).deleteAll(anyIterable());
+
+        SchemaColumnRepository schemaColumnRepository = mock(SchemaColumnRepository.class);
+        when(schemaColumnRepository.saveAll(anyIterable())).thenAnswer(inv -> {
+            ((Iterable<SchemaColumn>) inv.getArgument(0)).forEach(storedColumns::add);
+            return List.of();
+        });
+        doAnswer(inv -> storedColumns.removeIf(column -> ((Collection<Long>) inv.getArgument(0)).contains(column.getTableId())))
+                .when(schemaColumnRepository).deleteByTableIdIn(anyList());
+        when(schemaColumnRepository.findByConnectionIdOrderByTableIdAscPositionAsc(1L))
+                .thenAnswer(inv -> new ArrayList<>(storedColumns));
+
+        DynamicConnectionFactory connectionFactory = mock(DynamicConnectionFactory.class);
+        when(connectionFactory.withJdbcTemplate(eq(1L), any()))
+                .thenAnswer(invocation -> invocation.<Function<JdbcTemplate, ?>>getArgument(1).apply(jdbcTemplate));
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(
+                inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+
+        SchemaExtractorService extractor = new SchemaExtractorService(Runnable::run, 1, 50);
+        schemaStore = new SchemaStore(schemaTableRepository, schemaColumnRepository, extractor);
+        refreshService = new SchemaRefreshService(configRepository, schemaStore, extractor, connectionFactory,
+                sqlGenerationCache, queryResultCache, transactionTemplate, Runnable::run, true, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("First refresh stores every table with its columns as version 1")
+    void testFirstRefresh() {
+        DataSourceConfig refreshed = refreshService.refresh(1L, false);
+
+        assertEquals(1L, refreshed.getSchemaVersion());
+        assertEquals(3, storedTables.size());
+        String ddl = schemaStore.getSchemaDdl(refreshed);
+        assertTrue(ddl.startsWith("CREATE TABLE AUDIT_LOG"));
+        assertTrue(ddl.contains("REFERENCES CUSTOMERS (ID)"));
+
+        List<TableSummary> tables = schemaStore.listTables(1L);
+        assertEquals(List.of("AUDIT_LOG", "CUSTOMERS", "INVOICES"), tables.stream().map(TableSummary::getName).toList());
+        assertEquals(List.of("ID", "NAME"), tables.get(1).getColumns().stream().map(ColumnSummary::getName).toList());
+        verify(sqlGenerationCache).invalidateConnection(1L);
+        verify(queryResultCache).invalidateConnection(1L);
+    }
+
+    @Test
+    @DisplayName("Refresh without catalog changes keeps the version and the caches")
+    void testUnchangedRefresh() {
+        String ddl = schemaStore.getSchemaDdl(refreshService.refresh(1L, false));
+        clearInvocations(sqlGenerationCache, queryResultCache);
+
+        DataSourceConfig refreshed = refreshService.refresh(1L, false);
+
+        assertEquals(1L, refreshed.getSchemaVersion());
+        assertSame(ddl, schemaStore.getSchemaDdl(refreshed));
+        verifyNoInteractions(sqlGenerationCache, queryResultCache);
+    }
+
+    @Test
+    @DisplayName("Only altered tables are rewritten, dropped tables are removed, and the version moves on")
+    void testIncrementalRefresh() {
+        schemaStore.getSchemaDdl(refreshService.refresh(1L, false));
+        SchemaTable customers = tableNamed("CUSTOMERS");
+        String customersDdl = customers.getDdl();
+        String invoicesDdl = tableNamed("INVOICES").getDdl();
+
+        jdbcTemplate.execute("ALTER TABLE invoices ADD COLUMN total DECIMAL(10, 2)");
+        jdbcTemplate.execute("DROP TABLE audit_log");
+        DataSourceConfig refreshed = refreshService.refresh(1L, false);
+
+        assertEquals(2L, refreshed.getSchemaVersion());
+        assertEquals(List.of("CUSTOMERS", "INVOICES"), storedTables.stream().map(SchemaTable::getTableName).sorted().toList());
+        assertSame(customers, tableNamed("CUSTOMERS"));
+        assertEquals(customersDdl, customers.getDdl());
+        assertNotEquals(invoicesDdl, tableNamed("INVOICES").getDdl());
+        String ddl = schemaStore.getSchemaDdl(refreshed);
+        assertTrue(ddl.contains("TOTAL DECIMAL"));
+        assertFalse(ddl.contains("AUDIT_LOG"));
+        assertEquals(List.of("ID", "CUSTOMER_ID", "TOTAL"), schemaStore.listTables(1L).get(1).getColumns().stream()
+                .map(ColumnSummary::getName).toList());
+        verify(sqlGenerationCache, times(2)).invalidateConnection(1L);
+    }
+
+    private static SchemaTableRepository.TableHeader header(SchemaTable table) {
+        return new SchemaTableRepository.TableHeader() {
+            public Long getId() { return table.getId(); }
+            public String getTableName() { return table.getTableName(); }
+            public String getFingerprint() { return table.getFingerprint(); }
+        };
+    }
+
+    private SchemaTable tableNamed(String name) {
+        return storedTables.stream().filter(table -> table.getTableName().equals(name)).findFirst().orElseThrow();
+    }
+}
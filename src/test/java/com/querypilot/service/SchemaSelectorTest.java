@@ -0,0 +1,82 @@
+package com.querypilot.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaSelectorTest {
+
+    private static final String DDL = """
+            CREATE TABLE users (
+              id INTEGER NOT NULL PRIMARY KEY,
+              name VARCHAR,
+              email VARCHAR
+            );
+
+            CREATE TABLE orders (
+              id INTEGER NOT NULL PRIMARY KEY,
+              user_id INTEGER,
+              amount DECIMAL,
+              order_date DATE
+            );
+
+            CREATE TABLE products (
+              id INTEGER NOT NULL PRIMARY KEY,
+              title VARCHAR,
+              price DECIMAL
+            );
+
+            CREATE TABLE audit_log (
+              id INTEGER NOT NULL PRIMARY KEY,
+              message VARCHAR
+            );""";
+
+    @Test
+    @DisplayName("Schema within the token budget is passed through unchanged")
+    void testSmallSchemaUnchanged() {
+        SchemaSelector selector = new SchemaSelector(true, 8, 8000);
+        assertSame(DDL, selector.selectSchema(1L, DDL, "total order amount"));
+    }
+
+    @Test
+    @DisplayName("Large schema keeps the matching tables and their foreign-key neighbors")
+    void testPrunesToRelevantTables() {
+        SchemaSelector selector = new SchemaSelector(true, 1, 10);
+
+        String pruned = selector.selectSchema(1L, DDL, "Total order amount per day");
+
+        assertTrue(pruned.contains("CREATE TABLE orders"));
+        assertFalse(pruned.contains("CREATE TABLE products"));
+        assertFalse(pruned.contains("CREATE TABLE audit_log"));
+    }
+
+    @Test
+    @DisplayName("Foreign-key neighbors are added while the budget allows")
+    void testIncludesReferencedTables() {
+        SchemaSelector selector = new SchemaSelector(true, 1, 60);
+
+        String pruned = selector.selectSchema(1L, DDL, "Total order amount per day");
+
+        assertTrue(pruned.contains("CREATE TABLE orders"));
+        assertTrue(pruned.contains("CREATE TABLE users"));
+        assertFalse(pruned.contains("CREATE TABLE products"));
+    }
+
+    @Test
+    @DisplayName("Question matching no identifier falls back to the full schema")
+    void testFallbackToFullSchema() {
+        SchemaSelector selector = new SchemaSelector(true, 1, 10);
+        assertSame(DDL, selector.selectSchema(1L, DDL, "How is the weather?"));
+    }
+
+    @Test
+    @DisplayName("Identifiers are split into singular word tokens")
+    void testTokenize() {
+        assertEquals(List.of("order", "item"), SchemaIndex.tokenize("order_items"));
+        assertEquals(List.of("order", "item"), SchemaIndex.tokenize("orderItems"));
+        assertEquals(List.of("category"), SchemaIndex.tokenize("categories"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.querypilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final CountDownLatch joined = new CountDownLatch(1);
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>(key -> joined.countDown());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Concurrent calls for the same key run the supplier once and share the result")
+    void testConcurrentCallsCoalesce() throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("q", () -> {
+            invocations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "SELECT 1";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<String> follower = executor.submit(() -> singleFlight.execute("q", () -> {
+            invocations.incrementAndGet();
+            return "SELECT 2";
+        }));
+        // Release the leader only once the follower has joined its call
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals("SELECT 1", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("SELECT 1", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, invocations.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("Failures propagate and are not remembered")
+    void testFailureNotCached() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("q", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("ok", singleFlight.execute("q", () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.querypilot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlGenerationCacheTest {
+
+    private static final String DDL = "CREATE TABLE users (\n  id INT\n);";
+
+    private final SqlGenerationCache cache = new SqlGenerationCache(100, 600, new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("Questions differing only in case, punctuation and spacing share a key")
+    void testNormalization() {
+        assertEquals("show all users", SqlGenerationCache.normalizeQuestion("  Show ALL   users?! "));
+        assertEquals("orders above 10%", SqlGenerationCache.normalizeQuestion("Orders above 10%."));
+        assertEquals("订单 总数", SqlGenerationCache.normalizeQuestion("订单，总数？"));
+    }
+
+    @Test
+    @DisplayName("A changed schema DDL misses the cache")
+    void testSchemaChangeMisses() {
+        cache.put(1L, DDL, "Show all users", "SELECT * FROM users");
+
+        assertEquals("SELECT * FROM users", cache.get(1L, DDL, "show all users").orElseThrow());
+        assertTrue(cache.get(1L, DDL + "\nCREATE TABLE orders (\n  id INT\n);", "show all users").isEmpty());
+        assertTrue(cache.get(2L, DDL, "show all users").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Invalidating a connection only drops its own entries")
+    void testInvalidateConnection() {
+        cache.put(1L, DDL, "Show all users", "SELECT * FROM users");
+        cache.put(2L, DDL, "Show all users", "SELECT * FROM users");
+
+        cache.invalidateConnection(1L);
+
+        assertTrue(cache.get(1L, DDL, "Show all users").isEmpty());
+        assertTrue(cache.get(2L, DDL, "Show all users").isPresent());
+    }
+}
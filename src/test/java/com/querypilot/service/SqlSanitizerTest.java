@@ -107,6 +107,67 @@ class SqlSanitizerTest {
         assertFalse(result.contains("LIMIT 100"));
     }
 
+    @Test
+    @DisplayName("LIMIT above the cap is lowered to 100")
+    void testLargeLimitCapped() {
+        String result = sanitizer.sanitize("SELECT * FROM users LIMIT 5000");
+        assertTrue(result.endsWith("LIMIT 100"));
+        assertFalse(result.contains("5000"));
+    }
+
+    @Test
+    @DisplayName("LIMIT ALL is replaced by the cap")
+    void testLimitAllCapped() {
+        String result = sanitizer.sanitize("SELECT * FROM users ORDER BY id LIMIT ALL");
+        assertTrue(result.endsWith("LIMIT 100"));
+    }
+
+    @Test
+    @DisplayName("Exports sanitize with their own row cap")
+    void testCustomCap() {
+        assertTrue(sanitizer.sanitize("SELECT * FROM users", 1_000_000).endsWith("LIMIT 1000000"));
+        assertTrue(sanitizer.sanitize("SELECT * FROM users LIMIT 5000", 1_000_000).endsWith("LIMIT 5000"));
+        assertTrue(sanitizer.sanitize("SELECT * FROM users LIMIT 5000", 1000).endsWith("LIMIT 1000"));
+    }
+
+    @Test
+    @DisplayName("OFFSET is kept when the LIMIT is added")
+    void testOffsetKept() {
+        String result = sanitizer.sanitize("SELECT * FROM users LIMIT 500 OFFSET 20");
+        assertTrue(result.contains("LIMIT 100"));
+        assertTrue(result.contains("OFFSET 20"));
+    }
+
+    @Test
+    @DisplayName("LIMIT inside a subquery does not exempt the outer query")
+    void testSubqueryLimitDoesNotCountForOuterQuery() {
+        String result = sanitizer.sanitize("SELECT * FROM (SELECT * FROM orders LIMIT 5) o JOIN users u ON u.id = o.user_id");
+        assertTrue(result.contains("LIMIT 5)"));
+        assertTrue(result.endsWith("LIMIT 100"));
+    }
+
+    @Test
+    @DisplayName("LIMIT inside a string literal does not exempt the query")
+    void testLimitInStringLiteralIgnored() {
+        String result = sanitizer.sanitize("SELECT * FROM logs WHERE message = 'LIMIT 5'");
+        assertTrue(result.endsWith("LIMIT 100"));
+    }
+
+    @Test
+    @DisplayName("UNION gets the LIMIT on the whole set operation")
+    void testUnionLimited() {
+        String result = sanitizer.sanitize("SELECT name FROM users UNION SELECT name FROM admins");
+        assertTrue(result.endsWith("LIMIT 100"));
+    }
+
+    @Test
+    @DisplayName("FETCH FIRST above the cap is lowered instead of adding a LIMIT")
+    void testFetchFirstCapped() {
+        String result = sanitizer.sanitize("SELECT * FROM users FETCH FIRST 500 ROWS ONLY");
+        assertTrue(result.contains("FETCH FIRST 100 ROWS ONLY"));
+        assertFalse(result.contains("LIMIT"));
+    }
+
     @Test
     @DisplayName("LIMIT is appended after removing trailing semicolon")
     void testLimitWithSemicolon() {
@@ -121,7 +182,7 @@ class SqlSanitizerTest {
     @DisplayName("Single-line comments are stripped")
     void testSingleLineCommentStripped() {
         String sql = "SELECT * FROM users -- this is a comment";
-        String cleaned = sanitizer.stripComments(sql);
+        String cleaned = sanitizer.sanitize(sql);
         assertFalse(cleaned.contains("--"));
         assertFalse(cleaned.contains("this is a comment"));
     }
@@ -130,11 +191,18 @@ class SqlSanitizerTest {
     @DisplayName("Multi-line comments are stripped")
     void testMultiLineCommentStripped() {
         String sql = "SELECT * /* hidden */ FROM users";
-        String cleaned = sanitizer.stripComments(sql);
+        String cleaned = sanitizer.sanitize(sql);
         assertFalse(cleaned.contains("/*"));
         assertFalse(cleaned.contains("hidden"));
     }
 
+    @Test
+    @DisplayName("Comment markers inside string literals are preserved")
+    void testCommentMarkersInLiteralPreserved() {
+        String result = sanitizer.sanitize("SELECT * FROM users WHERE note = '-- not a comment'");
+        assertTrue(result.contains("'-- not a comment'"));
+    }
+
     @Test
     @DisplayName("SQL with comment-hidden DROP is caught after stripping")
     void testCommentHiddenAttack() {
@@ -153,6 +221,12 @@ class SqlSanitizerTest {
         assertNotNull(ex.getMessage());
     }
 
+    @Test
+    @DisplayName("Comment-only SQL throws exception")
+    void testCommentOnlySqlThrows() {
+        assertThrows(SqlSafetyException.class, () -> sanitizer.sanitize("-- just a comment"));
+    }
+
     @Test
     @DisplayName("Blank SQL throws exception")
     void testBlankSqlThrows() {
@@ -0,0 +1,62 @@
+package com.querypilot.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStreamExtractorTest {
+
+    @Test
+    @DisplayName("Field name split across chunks is found and the value is streamed")
+    void testSplitFieldName() {
+        SqlStreamExtractor extractor = new SqlStreamExtractor();
+
+        assertEquals("", extractor.feed("{\"s"));
+        assertEquals("", extractor.feed("ql\" :  "));
+        assertEquals("SELECT", extractor.feed("\"SELECT"));
+        assertEquals(" 1", extractor.feed(" 1"));
+        assertFalse(extractor.isComplete());
+        assertEquals("", extractor.feed("\", \"explanation\": \"one\"}"));
+
+        assertTrue(extractor.isComplete());
+        assertEquals("SELECT 1", extractor.sql());
+    }
+
+    @Test
+    @DisplayName("Escapes are decoded even when split across chunks")
+    void testEscapesAcrossChunks() {
+        SqlStreamExtractor extractor = new SqlStreamExtractor();
+
+        extractor.feed("{\"sql\": \"SELECT name\\");
+        extractor.feed("nFROM users WHERE name = \\\"O\\u00");
+        extractor.feed("27Brien\\\" AND path = 'a\\\\b'\"}");
+
+        assertTrue(extractor.isComplete());
+        assertEquals("SELECT name\nFROM users WHERE name = \"O'Brien\" AND path = 'a\\b'", extractor.sql());
+    }
+
+    @Test
+    @DisplayName("Value completes at its closing quote inside a markdown fence")
+    void testFencedCompletion() {
+        SqlStreamExtractor extractor = new SqlStreamExtractor();
+
+        extractor.feed("```json\n{\n  \"sql\": \"SELECT * FROM orders\"");
+
+        assertTrue(extractor.isComplete());
+        assertEquals("SELECT * FROM orders", extractor.sql());
+        assertEquals("", extractor.feed("\n}\n```"));
+        assertEquals("SELECT * FROM orders", extractor.sql());
+    }
+
+    @Test
+    @DisplayName("Completion without a sql field never completes")
+    void testMissingField() {
+        SqlStreamExtractor extractor = new SqlStreamExtractor();
+
+        extractor.feed("SELECT * FROM users");
+
+        assertFalse(extractor.isComplete());
+        assertEquals("", extractor.sql());
+    }
+}
@@ -0,0 +1,116 @@
+package com.querypilot.service;
+
+import com.querypilot.exception.QueryCancelledException;
+import com.querypilot.model.dto.ResultTable;
+import com.querypilot.model.entity.DataSourceConfig;
+import com.querypilot.model.enums.DatabaseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StatementExecutorTest {
+
+    private static final String URL = "jdbc:h2:mem:statement_executor;DB_CLOSE_DELAY=-1";
+    // Runs for minutes unless it is cancelled or times out
+    private static final String ENDLESS_SQL =
+            "SELECT SUM(a.X * b.X) AS total FROM SYSTEM_RANGE(1, 1000000) a, SYSTEM_RANGE(1, 1000000) b";
+
+    private JdbcTemplate jdbcTemplate;
+    private RunningQueries runningQueries;
+    private StatementExecutor statementExecutor;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))");
+        jdbcTemplate.execute("INSERT INTO items VALUES (1, 'one'), (2, 'two')");
+
+        DynamicConnectionFactory connectionFactory = mock(DynamicConnectionFactory.class);
+        when(connectionFactory.withJdbcTemplate(eq(1L), any()))
+                .thenAnswer(invocation -> invocation.<Function<JdbcTemplate, ?>>getArgument(1).apply(jdbcTemplate));
+        runningQueries = new RunningQueries(new SimpleMeterRegistry());
+        statementExecutor = new StatementExecutor(connectionFactory, new ConnectionLimiter(1000), 120);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("Rows come back like JdbcTemplate.queryForList, with arguments bound")
+    void testQueryForList() {
+        List<Map<String, Object>> rows = statementExecutor.queryForList(1L,
+                "SELECT id, name FROM items WHERE id > ? ORDER BY id", 5, QueryHandle.untracked(), 1);
+
+        assertEquals(List.of(Map.of("ID", 2, "NAME", "two")), rows);
+        assertEquals("two", rows.get(0).get("name"));
+    }
+
+    @Test
+    @DisplayName("Tables carry the column header once and each row as an array")
+    void testQueryForTable() {
+        ResultTable table = statementExecutor.queryForTable(1L,
+                "SELECT id, name, CAST(NULL AS INT) AS missing FROM items ORDER BY id", 5, QueryHandle.untracked());
+
+        assertEquals(List.of(new ResultTable.Column("ID", "INTEGER"), new ResultTable.Column("NAME", "VARCHAR"),
+                new ResultTable.Column("MISSING", "INTEGER")), table.getColumns());
+        assertEquals(2, table.size());
+        assertArrayEquals(new Object[]{1, "one", null}, table.getRows().get(0));
+        assertEquals("two", table.get(1, "name"));
+    }
+
+    @Test
+    @DisplayName("A query running past its time limit fails with a query timeout")
+    void testTimeout() {
+        long start = System.nanoTime();
+
+        assertThrows(QueryTimeoutException.class,
+                () -> statementExecutor.queryForList(1L, ENDLESS_SQL, 1, QueryHandle.untracked()));
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+    }
+
+    @Test
+    @DisplayName("Cancelling a query cancels its running statement")
+    void testCancel() throws Exception {
+        QueryHandle handle = runningQueries.start(1L, "q-1");
+        CompletableFuture<List<Map<String, Object>>> running = CompletableFuture.supplyAsync(
+                () -> statementExecutor.queryForList(1L, ENDLESS_SQL, 0, handle));
+        Thread.sleep(200);
+
+        assertFalse(runningQueries.cancel(2L, "q-1"));
+        assertTrue(runningQueries.cancel(1L, "q-1"));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> running.get(30, TimeUnit.SECONDS));
+        assertInstanceOf(QueryCancelledException.class, ex.getCause());
+        runningQueries.finish(handle);
+    }
+
+    @Test
+    @DisplayName("The request can lower the connection's time limit but not raise it")
+    void testTimeoutSeconds() {
+        DataSourceConfig config = new DataSourceConfig(1L, "Test DB", DatabaseType.H2, URL, "sa", "encrypted");
+
+        assertEquals(120, statementExecutor.timeoutSeconds(config, null));
+        assertEquals(10, statementExecutor.timeoutSeconds(config, 10));
+        config.setQueryTimeoutSeconds(30);
+        assertEquals(30, statementExecutor.timeoutSeconds(config, 600));
+        assertEquals(5, statementExecutor.timeoutSeconds(config, 5));
+    }
+}